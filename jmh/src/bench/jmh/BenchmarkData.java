@@ -0,0 +1,93 @@
+package bench.jmh;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Scanner;
+
+import data.Settings;
+import sim.RandomStream;
+import sim.Runner;
+import sim.Track;
+
+/**
+ * The settings, tracks, and runners used by the benchmarks, loaded from the data folder the same way the simulation loads them.
+ * The benchmarks must be run from the folder containing the data folder
+ */
+public final class BenchmarkData{
+	
+	/**
+	 * The tracks the benchmarks run on, the names of files in ./data/tracks
+	 */
+	public static final String[] TRACKS = new String[]{"DefaultTrack.txt", "jagged turns.txt", "wide8.txt"};
+	
+	/**
+	 * Load the settings in ./data/settings.txt. Settings.loadDefaults is not used, because it would replace the settings file
+	 * @return
+	 */
+	public static Settings loadSettings(){
+		Settings settings = new Settings();
+		try{
+			Scanner scan = new Scanner(new File("./data/settings.txt"));
+			settings.load(scan);
+			scan.close();
+		}catch(FileNotFoundException e){
+			throw new IllegalStateException("No settings file, the benchmarks must be run from the folder containing the data folder", e);
+		}
+		return settings;
+	}
+	
+	/**
+	 * Load the track with the given name from ./data/tracks
+	 * @param settings
+	 * @param trackName
+	 * @return
+	 */
+	public static Track loadTrack(Settings settings, String trackName){
+		//Track.load only prints an error for a missing file, which would give an empty track and meaningless results
+		if(!new File("./data/tracks/" + trackName).isFile()){
+			throw new IllegalStateException("No track " + trackName + ", the benchmarks must be run from the folder containing the data folder");
+		}
+		Track track = new Track(settings, new Point2D.Double(0, 0));
+		track.load(trackName);
+		return track;
+	}
+	
+	/**
+	 * Get the hidden layer sizes from a benchmark parameter, the size of each layer separated by x, like 16x16
+	 * @param layout
+	 * @return
+	 */
+	public static int[] parseHiddenNodes(String layout){
+		String[] layers = layout.split("x");
+		int[] nodes = new int[layers.length];
+		for(int i = 0; i < layers.length; i++) nodes[i] = Integer.parseInt(layers[i].trim());
+		return nodes;
+	}
+	
+	/**
+	 * Make runners at the kinds of places runners are while they are tested. Each runner is tested for a random number of ticks,
+	 * then stopped, so some runners are at the start, some are partway around the track, and some have just hit a wall
+	 * @param settings
+	 * @param track
+	 * @param count the number of runners
+	 * @param seed the seed for the brains of the runners and the number of ticks they are tested for
+	 * @return
+	 */
+	public static Runner[] makeTestedRunners(Settings settings, Track track, int count, long seed){
+		RandomStream random = new RandomStream(seed);
+		Runner[] runners = new Runner[count];
+		for(int i = 0; i < count; i++){
+			Runner r = new Runner(settings, track, random.split());
+			track.enterRunner(r);
+			int ticks = (int)(random.nextDouble() * settings.getRunnerTestTime());
+			for(int t = 0; t < ticks && !r.dead(); t++){
+				track.collideWithRunner(r);
+				r.tick();
+			}
+			runners[i] = r;
+		}
+		return runners;
+	}
+	
+}
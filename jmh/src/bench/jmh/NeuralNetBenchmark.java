@@ -0,0 +1,108 @@
+package bench.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import data.Settings;
+import sim.NeuralNet;
+import sim.NeuralNetState;
+import sim.RandomStream;
+
+/**
+ * Measures calculating the outputs of one brain, for each hidden layer layout, and the sigmoid function on its own
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class NeuralNetBenchmark{
+	
+	/**
+	 * The number of values sigmoid is called with in each invocation
+	 */
+	private static final int SIGMOID_VALUES = 1024;
+	
+	@State(Scope.Thread)
+	public static class BrainState{
+		
+		/**
+		 * The sizes of the hidden layers, see BenchmarkData.parseHiddenNodes
+		 */
+		@Param({"6", "16", "16x16"})
+		public String hidden;
+		
+		public NeuralNet brain;
+		public NeuralNetState state;
+		/**
+		 * Sets of inputs, one is used each invocation, so the branch predictor cannot learn the values
+		 */
+		public double[][] inputs;
+		public int next;
+		
+		@Setup
+		public void setup(){
+			Settings settings = BenchmarkData.loadSettings();
+			int[] hiddenNodes = BenchmarkData.parseHiddenNodes(hidden);
+			int[] sizes = new int[2 + hiddenNodes.length];
+			sizes[0] = 10;
+			System.arraycopy(hiddenNodes, 0, sizes, 1, hiddenNodes.length);
+			sizes[sizes.length - 1] = 2;
+			
+			RandomStream random = new RandomStream(1);
+			brain = new NeuralNet(settings, sizes, random);
+			brain.randomWeights(random);
+			state = new NeuralNetState(brain);
+			
+			//vision inputs are between 0 and 1, and the speed input can be negative
+			inputs = new double[256][10];
+			for(double[] in : inputs){
+				for(int i = 0; i < in.length; i++) in[i] = random.nextDouble() * 2 - 1;
+			}
+			next = 0;
+		}
+	}
+	
+	@State(Scope.Thread)
+	public static class SigmoidState{
+		
+		public double[] values;
+		
+		@Setup
+		public void setup(){
+			//spread like the totals of a brain, most are small, some are large
+			RandomStream random = new RandomStream(2);
+			values = new double[SIGMOID_VALUES];
+			for(int i = 0; i < values.length; i++) values[i] = (random.nextDouble() * 2 - 1) * (random.nextDouble() < .9 ? 4 : 40);
+		}
+	}
+	
+	@Benchmark
+	public double calculateOutputs(BrainState s){
+		double[] in = s.inputs[s.next];
+		s.next = (s.next + 1) & (s.inputs.length - 1);
+		s.brain.calculateOutputs(in, s.state);
+		return s.state.getNodeValue(s.brain.getNumLayers() - 1, 0);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(SIGMOID_VALUES)
+	public double sigmoid(SigmoidState s){
+		double total = 0;
+		for(double v : s.values) total += NeuralNet.sigmoid(v);
+		return total;
+	}
+	
+}
@@ -0,0 +1,80 @@
+package bench.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import data.Settings;
+import sim.RandomStream;
+import sim.Runner;
+import sim.Simulation;
+
+/**
+ * Measures sorting the runners of a simulation by fitness, for each population size
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SimulationBenchmark{
+	
+	@State(Scope.Thread)
+	public static class PopulationState{
+		
+		@Param({"100", "1000", "10000"})
+		public int population;
+		
+		public Simulation sim;
+		/**
+		 * Random fitness values, given to the runners before each sort, so each sort starts unsorted
+		 */
+		public double[] fitness;
+		public int offset;
+		
+		@Setup
+		public void setup(){
+			Settings settings = BenchmarkData.loadSettings();
+			settings.setNumRunners(population);
+			//the runners only need to exist, their real fitness is replaced
+			settings.setRunnerTestTime(1);
+			settings.setRandomSeed(5);
+			sim = new Simulation(settings, BenchmarkData.TRACKS[0]);
+			sim.newSimulation();
+			
+			RandomStream random = new RandomStream(6);
+			fitness = new double[population * 2];
+			for(int i = 0; i < fitness.length; i++) fitness[i] = random.nextDouble() * 1000;
+			offset = 0;
+		}
+		
+		@TearDown
+		public void tearDown(){
+			sim.close();
+		}
+	}
+	
+	/**
+	 * Give every runner a new fitness, then sort them. Giving the fitness takes much less time than sorting
+	 */
+	@Benchmark
+	public Runner sortRunners(PopulationState s){
+		Runner[] runners = s.sim.getRunners();
+		for(int i = 0; i < runners.length; i++) runners[i].setStoredFitness(s.fitness[s.offset + i]);
+		s.offset = (s.offset + 1) % s.population;
+		s.sim.sortRunners();
+		return runners[0];
+	}
+	
+}
@@ -0,0 +1,150 @@
+package bench.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import data.Settings;
+import sim.FitnessLine;
+import sim.Runner;
+import sim.Track;
+
+/**
+ * Measures the parts of testing a runner that use the track: colliding a runner with the walls and fitness lines,
+ * checking one move against every fitness line, and ticking a runner, for each track and hidden layer layout
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TrackBenchmark{
+	
+	/**
+	 * The number of runners at different places on the track, one is used each invocation
+	 */
+	private static final int SAMPLES = 1024;
+	
+	@State(Scope.Thread)
+	public static class TrackState{
+		
+		@Param({"DefaultTrack.txt", "jagged turns.txt", "wide8.txt"})
+		public String track;
+		
+		public Settings settings;
+		public Track loaded;
+		public FitnessLine[] lines;
+		/**
+		 * Runners stopped partway through being tested. Colliding a runner that kills runners on walls does not move it,
+		 * so each runner is the same on every use
+		 */
+		public Runner[] samples;
+		public int next;
+		
+		@Setup
+		public void setup(){
+			settings = BenchmarkData.loadSettings();
+			loaded = BenchmarkData.loadTrack(settings, track);
+			lines = loaded.getFitnessLines();
+			samples = BenchmarkData.makeTestedRunners(settings, loaded, SAMPLES, 3);
+			next = 0;
+		}
+		
+		public Runner nextSample(){
+			Runner r = samples[next];
+			next = (next + 1) & (SAMPLES - 1);
+			return r;
+		}
+	}
+	
+	@State(Scope.Thread)
+	public static class RunnerState{
+		
+		@Param({"DefaultTrack.txt", "jagged turns.txt", "wide8.txt"})
+		public String track;
+		
+		/**
+		 * The sizes of the hidden layers, see BenchmarkData.parseHiddenNodes
+		 */
+		@Param({"6", "16", "16x16"})
+		public String hidden;
+		
+		public Settings settings;
+		public Track loaded;
+		public Runner runner;
+		/**
+		 * The number of ticks since the runner entered the track
+		 */
+		public int timer;
+		
+		@Setup
+		public void setup(){
+			settings = BenchmarkData.loadSettings();
+			settings.setRunnerHiddenNodes(BenchmarkData.parseHiddenNodes(hidden));
+			loaded = BenchmarkData.loadTrack(settings, track);
+			runner = BenchmarkData.makeTestedRunners(settings, loaded, 1, 4)[0];
+			loaded.enterRunner(runner);
+			timer = 0;
+		}
+		
+		/**
+		 * Put the runner back at the start once its test would have ended
+		 */
+		public void restartIfDone(){
+			if(runner.dead() || timer >= settings.getRunnerTestTime()){
+				loaded.enterRunner(runner);
+				timer = 0;
+			}
+			timer++;
+		}
+	}
+	
+	@Benchmark
+	public double collideWithRunner(TrackState s){
+		Runner r = s.nextSample();
+		s.loaded.collideWithRunner(r);
+		return r.getFitness();
+	}
+	
+	@Benchmark
+	public int crossedLine(TrackState s){
+		Runner r = s.nextSample();
+		int total = 0;
+		for(FitnessLine l : s.lines){
+			total += l.crossedLine(r.getLastX(), r.getLastY(), r.getX(), r.getY(), s.settings.getRunnerRadius(), true);
+		}
+		return total;
+	}
+	
+	/**
+	 * Only the tick of the runner: finding its vision, calculating its brain, and moving it
+	 */
+	@Benchmark
+	public double tick(RunnerState s){
+		s.restartIfDone();
+		s.runner.tick();
+		return s.runner.getX();
+	}
+	
+	/**
+	 * One tick of a runner test, the same as the loop in Runner.testRunner: colliding with the track, then ticking
+	 */
+	@Benchmark
+	public double testTick(RunnerState s){
+		s.restartIfDone();
+		s.loaded.collideWithRunner(s.runner);
+		s.runner.tick();
+		return s.runner.getX();
+	}
+	
+}
@@ -0,0 +1,99 @@
+package bench;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Random;
+import java.util.Scanner;
+
+import data.Settings;
+import sim.Activation;
+import sim.BrainBatch;
+import sim.NeuralNet;
+import sim.RandomStream;
+
+/**
+ * Measures how far each activation mode is from the exact activation function, how fast each mode is on its own,
+ * and how long calculating the brains of a population for one tick takes with each mode.
+ * Run from the folder containing the data folder, optionally with the number of brains to calculate each tick
+ */
+public class ActivationBenchmark{
+	
+	public static void main(String[] args) throws FileNotFoundException{
+		int numBrains = 10000;
+		if(args.length > 0) numBrains = Integer.parseInt(args[0]);
+		
+		Settings settings = new Settings();
+		Scanner scan = new Scanner(new File("./data/settings.txt"));
+		settings.load(scan);
+		scan.close();
+		
+		int[] modes = new int[]{Activation.EXACT, Activation.EXP, Activation.TABLE, Activation.RATIONAL};
+		
+		System.out.println("Largest difference from exact, checked every 1e-5 from -40 to 40");
+		for(int mode : modes){
+			double maxError = 0;
+			for(long i = -4000000; i <= 4000000; i++){
+				double x = i * 1e-5;
+				maxError = Math.max(maxError, Math.abs(Activation.apply(mode, x) - Activation.exact(x)));
+			}
+			String documented = "";
+			if(mode == Activation.TABLE) documented = " (documented " + Activation.TABLE_MAX_ERROR + ")";
+			else if(mode == Activation.RATIONAL) documented = " (documented " + Activation.RATIONAL_MAX_ERROR + ")";
+			System.out.println("  " + Activation.getName(mode) + ": " + maxError + documented);
+		}
+		
+		//inputs spread like the totals of a brain, most are small, some are large
+		Random rand = new Random(0);
+		double[] inputs = new double[1 << 20];
+		for(int i = 0; i < inputs.length; i++) inputs[i] = rand.nextGaussian() * 3;
+		double[] values = new double[inputs.length];
+		
+		System.out.println();
+		System.out.println("Nanoseconds for one call");
+		double exactCall = 0;
+		for(int mode : modes){
+			long best = Long.MAX_VALUE;
+			for(int rep = 0; rep < 15; rep++){
+				System.arraycopy(inputs, 0, values, 0, inputs.length);
+				long time = System.nanoTime();
+				Activation.applyAll(mode, values, 0, values.length);
+				best = Math.min(best, System.nanoTime() - time);
+			}
+			double perCall = (double)best / values.length;
+			if(mode == Activation.EXACT) exactCall = perCall;
+			System.out.printf("  %-9s %7.2f ns  %5.2fx%n", Activation.getName(mode), perCall, exactCall / perCall);
+		}
+		
+		//a population of brains with the shape given by the settings
+		int[] sizes = new int[2 + settings.getRunnerHiddenNodes().length];
+		sizes[0] = 10;
+		for(int i = 1; i < sizes.length - 1; i++) sizes[i] = settings.getRunnerHiddenNodes()[i - 1];
+		sizes[sizes.length - 1] = 2;
+		NeuralNet[] brains = new NeuralNet[numBrains];
+		RandomStream random = new RandomStream(1);
+		for(int i = 0; i < numBrains; i++){
+			brains[i] = new NeuralNet(settings, sizes, random);
+			brains[i].randomWeights(random);
+		}
+		double[][] brainInputs = new double[numBrains][10];
+		for(double[] in : brainInputs) for(int i = 0; i < in.length; i++) in[i] = rand.nextDouble() * 2 - 1;
+		
+		System.out.println();
+		System.out.println("Microseconds to calculate " + numBrains + " brains for one tick");
+		double exactTick = 0;
+		for(int mode : modes){
+			BrainBatch batch = new BrainBatch(brains, mode);
+			long best = Long.MAX_VALUE;
+			for(int rep = 0; rep < 200; rep++){
+				long time = System.nanoTime();
+				for(int i = 0; i < numBrains; i++) batch.setInputs(i, brainInputs[i]);
+				batch.calculateOutputs(numBrains);
+				best = Math.min(best, System.nanoTime() - time);
+			}
+			double perTick = best / 1000.0;
+			if(mode == Activation.EXACT) exactTick = perTick;
+			System.out.printf("  %-9s %9.1f us  %5.2fx%n", Activation.getName(mode), perTick, exactTick / perTick);
+		}
+	}
+	
+}
@@ -0,0 +1,163 @@
+package bench;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.util.Scanner;
+
+import data.Settings;
+import sim.Activation;
+import sim.Runner;
+import sim.RunnerEvaluator;
+import sim.Simulation;
+
+/**
+ * Checks that testing runners with the lockstep PopulationEngine, EvalMode 1, gives exactly the same fitness as testing each runner on its own with Runner.testRunner, EvalMode 0.
+ * A population is evolved for a few generations, so the runners do more than the random runners of generation 0, then copies of it are tested in both modes,
+ * with and without killing runners, with and without early stop, with every activation mode, and with one and more threads,
+ * and every runner must get a fitness with exactly the same bits.
+ * Run from the folder containing the data folder, exits with status 1 if any runner got a different fitness
+ */
+public class EvalModeCheck{
+	
+	/**
+	 * The settings used for every population, other than the settings this check changes
+	 */
+	public static final String SETTINGS_FILE = "./data/bench/throughputSettings.txt";
+	/**
+	 * The tracks every population is tested on
+	 */
+	public static final String[] TRACKS = new String[]{"DefaultTrack.txt", "fork test.txt"};
+	/**
+	 * The seed used for every population
+	 */
+	public static final int SEED = 1;
+	/**
+	 * The number of runners in each population
+	 */
+	public static final int POPULATION = 200;
+	/**
+	 * The number of generations each population is evolved for before it is checked
+	 */
+	public static final int GENERATIONS = 3;
+	/**
+	 * The early stop windows checked, 0 for no early stop
+	 */
+	public static final int[] EARLY_STOP_WINDOWS = new int[]{0, 100};
+	/**
+	 * The numbers of threads the lockstep engine is checked with
+	 */
+	public static final int[] THREADS = new int[]{1, 3};
+	
+	public static void main(String[] args){
+		//nothing in the simulation should need a display
+		System.setProperty("java.awt.headless", "true");
+		
+		int[] activations = new int[]{Activation.EXACT, Activation.EXP, Activation.TABLE, Activation.RATIONAL};
+		boolean passed = true;
+		for(String track : TRACKS){
+			for(int kill = 0; kill < 2; kill++){
+				//evolve the population with the same settings as it is checked with, so the runners are ones the simulation would really test
+				Settings evolveSettings = loadSettings(kill == 1, 0, 0, Activation.EXACT, 1);
+				evolveSettings.setNumRunners(POPULATION);
+				evolveSettings.setRandomSeed(SEED);
+				Simulation sim = new Simulation(evolveSettings, track);
+				sim.newSimulation();
+				for(int i = 0; i < GENERATIONS; i++) sim.nextGeneration();
+				Runner[] population = sim.getRunners();
+				
+				for(int window : EARLY_STOP_WINDOWS){
+					for(int activation : activations){
+						Runner[] expected = test(population, loadSettings(kill == 1, window, 0, activation, 1));
+						for(int threads : THREADS){
+							Runner[] lockstep = test(population, loadSettings(kill == 1, window, 1, activation, threads));
+							String name = String.format("  %-16s kill %d, early stop %3d, %-8s %d threads: ", track, kill, window, Activation.getName(activation), threads);
+							passed &= compare(name, expected, lockstep);
+						}
+					}
+				}
+				sim.close();
+			}
+		}
+		System.out.println(passed ? "Passed" : "Failed");
+		if(!passed) System.exit(1);
+	}
+	
+	/**
+	 * Test copies of the given runners with the given settings
+	 * @param population
+	 * @param settings
+	 * @return the tested copies, in the same order as the population
+	 */
+	private static Runner[] test(Runner[] population, Settings settings){
+		//runners test themselves with their own settings, so each copy is read back with the settings being checked
+		Runner[] runners = new Runner[population.length];
+		for(int i = 0; i < runners.length; i++){
+			ByteBuffer buffer = ByteBuffer.allocate(population[i].getSaveSize());
+			population[i].save(buffer);
+			buffer.flip();
+			runners[i] = new Runner(settings, population[i].getTrack(), buffer);
+		}
+		RunnerEvaluator evaluator = new RunnerEvaluator(settings);
+		evaluator.testRunners(runners);
+		evaluator.close();
+		return runners;
+	}
+	
+	/**
+	 * Compare the fitness of every runner tested in both modes, printing the result
+	 * @param name
+	 * @param expected the runners tested with Runner.testRunner
+	 * @param lockstep the same runners tested with the lockstep engine
+	 * @return true if every runner got exactly the same fitness
+	 */
+	private static boolean compare(String name, Runner[] expected, Runner[] lockstep){
+		int different = 0;
+		int first = -1;
+		for(int i = 0; i < expected.length; i++){
+			if(Double.doubleToLongBits(expected[i].getStoredFitness()) != Double.doubleToLongBits(lockstep[i].getStoredFitness())){
+				if(first < 0) first = i;
+				different++;
+			}
+		}
+		if(different == 0){
+			System.out.println(name + "ok");
+			return true;
+		}
+		System.out.println(name + "FAILED, " + different + " of " + expected.length + " runners differ, the first is runner " + expected[first].getRunnerID() +
+						   " with fitness " + lockstep[first].getStoredFitness() + " (expected " + expected[first].getStoredFitness() + ")");
+		return false;
+	}
+	
+	/**
+	 * Load the settings used for every population, with the given changes. The evaluation cache and fitness pruning are always off,
+	 * because they skip tests or end them at places that do not depend on the mode
+	 * @param kill
+	 * @param earlyStopWindow
+	 * @param evalMode
+	 * @param activation
+	 * @param threads
+	 * @return
+	 */
+	private static Settings loadSettings(boolean kill, int earlyStopWindow, int evalMode, int activation, int threads){
+		Settings settings = new Settings();
+		try{
+			Scanner scan = new Scanner(new File(SETTINGS_FILE));
+			settings.load(scan);
+			scan.close();
+		}catch(FileNotFoundException e){
+			System.err.println("No settings file at " + SETTINGS_FILE + ", run from the folder containing the data folder");
+			System.exit(1);
+		}
+		settings.setKillRunner(kill);
+		settings.setEarlyStopWindow(earlyStopWindow);
+		settings.setEvalMode(evalMode);
+		settings.setActivationMode(activation);
+		settings.setEvalThreads(threads);
+		settings.setEvalCacheSize(0);
+		settings.setEvalCacheDisk(false);
+		settings.setFitnessPruning(false);
+		return settings;
+	}
+	
+}
@@ -0,0 +1,138 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import sim.RandomStream;
+import sim.Selection;
+
+/**
+ * Measures how long the work between testing generations takes for different population sizes:
+ * sorting the runners by fitness, finding the mutability statistics, picking the runners to die, and finding the runners to test next generation.
+ * The way Simulation used to do this, with selection sorts, removing from a list, and searching the list of runners to die, is measured for comparison,
+ * only for populations up to LEGACY_LIMIT, because it takes O(n^2) time.
+ * Run with no arguments to measure populations from 100 to 1,000,000, or give the population sizes to measure
+ */
+public class SelectionBenchmark{
+	
+	/**
+	 * The largest population measured the old way
+	 */
+	public static final int LEGACY_LIMIT = 20000;
+	
+	public static void main(String[] args){
+		int[] sizes = new int[]{100, 1000, 10000, 20000, 100000, 1000000};
+		if(args.length > 0){
+			sizes = new int[args.length];
+			for(int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+		}
+		
+		System.out.println("Milliseconds for one generation of selection, the best of several runs");
+		System.out.printf("  %9s %12s %12s %9s%n", "Runners", "Selection", "Old way", "Speedup");
+		for(int n : sizes){
+			Random rand = new Random(n);
+			double[] fitness = new double[n];
+			double[] mutability = new double[n];
+			for(int i = 0; i < n; i++){
+				//many runners have the same fitness, like runners that die at the start of the track
+				fitness[i] = rand.nextInt(4) == 0 ? 0 : rand.nextGaussian() * 10 + 20;
+				mutability[i] = rand.nextDouble() * 8 - 4;
+			}
+			
+			int reps = Math.max(3, Math.min(50, 2000000 / n));
+			double fast = time(fitness, mutability, reps, false);
+			double old = n <= LEGACY_LIMIT ? time(fitness, mutability, Math.max(1, reps / 10), true) : Double.NaN;
+			if(Double.isNaN(old)) System.out.printf("  %9d %12.3f %12s %9s%n", n, fast, "skipped", "");
+			else System.out.printf("  %9d %12.3f %12.3f %8.1fx%n", n, fast, old, old / fast);
+		}
+	}
+	
+	/**
+	 * Get the fewest milliseconds one generation of selection took
+	 * @param fitness
+	 * @param mutability
+	 * @param reps the number of times to measure
+	 * @param legacy true to measure the old way, false to measure Selection
+	 * @return
+	 */
+	private static double time(double[] fitness, double[] mutability, int reps, boolean legacy){
+		long best = Long.MAX_VALUE;
+		long check = 0;
+		for(int r = 0; r < reps; r++){
+			long start = System.nanoTime();
+			check += legacy ? legacyGeneration(fitness, mutability) : generation(fitness, mutability);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		//use the result, so none of the work can be skipped
+		if(check == 42) System.out.println();
+		return best / 1e6;
+	}
+	
+	/**
+	 * Do one generation of selection with Selection, the same way Simulation does
+	 * @param fitness
+	 * @param mutability
+	 * @return the number of runners to test next generation
+	 */
+	private static long generation(double[] fitness, double[] mutability){
+		int n = fitness.length;
+		int[] order = Selection.sortDescending(fitness);
+		double[] m = mutability.clone();
+		double[] quantiles = Selection.getQuantiles(m);
+		
+		int[] toDie = Selection.pickRunnersToDie(n, n / 2, new RandomStream(n));
+		boolean[] dying = new boolean[n];
+		for(int i : toDie) dying[i] = true;
+		long toTest = 0;
+		for(int i = 0; i < n; i++) if(dying[i]) toTest++;
+		return toTest + order[0] + (long)quantiles[0];
+	}
+	
+	/**
+	 * Do one generation of selection the way Simulation used to
+	 * @param fitness
+	 * @param mutability
+	 * @return the number of runners to test next generation
+	 */
+	private static long legacyGeneration(double[] fitness, double[] mutability){
+		int n = fitness.length;
+		double[] f = fitness.clone();
+		for(int i = 0; i < n; i++){
+			int high = -1;
+			for(int j = i; j < n; j++){
+				if(high == -1 || f[high] < f[j]) high = j;
+			}
+			double temp = f[i];
+			f[i] = f[high];
+			f[high] = temp;
+		}
+		
+		double[] m = mutability.clone();
+		for(int i = 0; i < n; i++){
+			int high = -1;
+			for(int j = i; j < n; j++){
+				if(high == -1 || m[high] < m[j]) high = j;
+			}
+			double temp = m[i];
+			m[i] = m[high];
+			m[high] = temp;
+		}
+		
+		int[] toDie = new int[n / 2];
+		ArrayList<Integer> indexes = new ArrayList<Integer>();
+		for(int i = 0; i < n; i++) indexes.add(i);
+		for(int i = 0; i < n - toDie.length; i++) indexes.remove((int)(Math.pow(Math.random(), 3) * indexes.size()));
+		for(int i = 0; i < toDie.length; i++) toDie[i] = indexes.get(i);
+		
+		long toTest = 0;
+		for(int i = 0; i < n; i++){
+			boolean found = false;
+			for(int j = 0; j < toDie.length && !found; j++){
+				if(toDie[j] == i) found = true;
+			}
+			if(found) toTest++;
+		}
+		return toTest + (long)f[0] + (long)m[0];
+	}
+	
+}
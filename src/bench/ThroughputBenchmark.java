@@ -0,0 +1,334 @@
+package bench;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Scanner;
+
+import data.Settings;
+import sim.Simulation;
+
+/**
+ * Measures how fast whole generations run, from start to finish, for each population size and number of threads.
+ * Every run uses the same track, settings, and seed, so every run does the same work, and only the time it takes can change.
+ * Reports generations, runners tested, and ticks tested per second, and how much faster each number of threads is than one thread.
+ * Each run is measured REPEATS times, using the fastest.
+ * The results are compared to a baseline file, and the program exits with status 1 if any run is more than TOLERANCE slower than the baseline,
+ * or if the runners got different fitness than the baseline, which means the work changed and the times cannot be compared.
+ * It also fails if a run has no baseline, or if the baseline was made with a different number of processors than this machine has.
+ * Run from the folder containing the data folder, with check (the default) to compare to the baseline, or update to replace the baseline with the new results,
+ * optionally followed by the number of generations to measure. The baseline only means something on the machine it was made on.
+ * Numbers of threads above the number of processors are skipped, because the threads would only take turns on the same processors,
+ * so their times would not show how the threads scale
+ */
+public class ThroughputBenchmark{
+	
+	/**
+	 * The settings used for every run, other than the number of runners, the number of threads, the seed, and the evaluation cache
+	 */
+	public static final String SETTINGS_FILE = "./data/bench/throughputSettings.txt";
+	/**
+	 * The results the runs are compared to
+	 */
+	public static final String BASELINE_FILE = "./data/bench/throughputBaseline.txt";
+	/**
+	 * The track used for every run
+	 */
+	public static final String TRACK = "DefaultTrack.txt";
+	/**
+	 * The seed used for every run
+	 */
+	public static final int SEED = 1;
+	/**
+	 * The number of runners in each run
+	 */
+	public static final int[] POPULATIONS = new int[]{100, 300, 1000};
+	/**
+	 * The number of threads used to test runners in each run
+	 */
+	public static final int[] THREADS = new int[]{1, 2, 4};
+	/**
+	 * The default number of generations measured for each run
+	 */
+	public static final int GENERATIONS = 10;
+	/**
+	 * The number of generations run before measuring, so the code is compiled before it is timed
+	 */
+	public static final int WARMUP_GENERATIONS = 2;
+	/**
+	 * The number of times each run is measured, the fastest time is used, so other programs slowing down one measurement does not fail the check
+	 */
+	public static final int REPEATS = 3;
+	/**
+	 * How much slower than the baseline a run can be before the check fails, as a fraction of the baseline
+	 */
+	public static final double TOLERANCE = .2;
+	
+	public static final String USAGE = "Usage: ThroughputBenchmark [check|update] [generations]\n" +
+									   "  check: compare the results to " + BASELINE_FILE + ", failing if any run is slower than the baseline\n" +
+									   "  update: replace the baseline with the results\n" +
+									   "  generations: the number of generations measured for each run, defaults to " + GENERATIONS;
+	
+	/**
+	 * The result of measuring one population size with one number of threads
+	 */
+	private static class Result{
+		int population;
+		int threads;
+		double gensPerSecond;
+		double runnersPerSecond;
+		double ticksPerSecond;
+		/**
+		 * The number of ticks tested over all of the measured generations, the same for every run with the same work
+		 */
+		long ticks;
+		/**
+		 * The fitness of the best runner after the last generation, the same for every run with the same work
+		 */
+		double bestFitness;
+		
+		/**
+		 * Find the result in the given results with the same population size and number of threads as this result
+		 * @param results
+		 * @return the result, or null if there is none
+		 */
+		Result find(ArrayList<Result> results){
+			for(Result r : results){
+				if(r.population == population && r.threads == threads) return r;
+			}
+			return null;
+		}
+	}
+	
+	public static void main(String[] args){
+		//nothing in the simulation should need a display
+		System.setProperty("java.awt.headless", "true");
+		
+		boolean update = false;
+		int generations = GENERATIONS;
+		try{
+			if(args.length > 2) throw new IllegalArgumentException();
+			if(args.length > 0){
+				if(args[0].equals("update")) update = true;
+				else if(!args[0].equals("check")) throw new IllegalArgumentException();
+			}
+			if(args.length > 1) generations = Integer.parseInt(args[1]);
+			if(generations <= 0) throw new IllegalArgumentException();
+		}catch(IllegalArgumentException e){
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+		
+		int processors = Runtime.getRuntime().availableProcessors();
+		System.out.println("Track: " + TRACK + "\tSettings: " + SETTINGS_FILE + "\tSeed: " + SEED + "\tGenerations: " + generations +
+						   "\tProcessors: " + processors);
+		System.out.printf("  %9s %8s %12s %14s %14s %9s%n", "Runners", "Threads", "Gens/s", "Runners/s", "Ticks/s", "Scaling");
+		ArrayList<Result> results = new ArrayList<Result>();
+		for(int population : POPULATIONS){
+			double oneThread = 0;
+			for(int threads : THREADS){
+				if(threads > processors){
+					System.out.printf("  %9d %8d skipped, more threads than processors (%d)%n", population, threads, processors);
+					continue;
+				}
+				Result r = run(population, threads, generations);
+				if(threads == THREADS[0]) oneThread = r.ticksPerSecond;
+				results.add(r);
+				System.out.printf("  %9d %8d %12.3f %14.1f %14.1f %8.2fx%n",
+								  population, threads, r.gensPerSecond, r.runnersPerSecond, r.ticksPerSecond, r.ticksPerSecond / oneThread);
+			}
+		}
+		
+		if(update){
+			saveBaseline(results, generations);
+			System.out.println("Saved the baseline to " + BASELINE_FILE);
+			return;
+		}
+		if(!check(results, generations)) System.exit(1);
+	}
+	
+	/**
+	 * Measure the given population size and number of threads REPEATS times
+	 * @param population
+	 * @param threads
+	 * @param generations
+	 * @return the fastest result
+	 */
+	private static Result run(int population, int threads, int generations){
+		Result best = null;
+		for(int i = 0; i < REPEATS; i++){
+			Result r = runOnce(population, threads, generations);
+			if(best == null || r.ticksPerSecond > best.ticksPerSecond) best = r;
+		}
+		return best;
+	}
+	
+	/**
+	 * Run a new simulation with the given population size and number of threads, and measure the given number of generations after the warmup generations
+	 * @param population
+	 * @param threads
+	 * @param generations
+	 * @return
+	 */
+	private static Result runOnce(int population, int threads, int generations){
+		Settings settings = loadSettings();
+		settings.setNumRunners(population);
+		settings.setEvalThreads(threads);
+		settings.setRandomSeed(SEED);
+		//the cache skips testing runners, so the work would depend on what was cached
+		settings.setEvalCacheSize(0);
+		settings.setEvalCacheDisk(false);
+		
+		Simulation sim = new Simulation(settings, TRACK);
+		sim.newSimulation();
+		for(int i = 0; i < WARMUP_GENERATIONS; i++) sim.nextGeneration();
+		
+		Result r = new Result();
+		r.population = population;
+		r.threads = threads;
+		long runners = 0;
+		long time = System.nanoTime();
+		for(int i = 0; i < generations; i++){
+			sim.nextGeneration();
+			runners += sim.getRunnersTested();
+			r.ticks += sim.getTicksTested();
+		}
+		double seconds = (System.nanoTime() - time) / 1e9;
+		r.gensPerSecond = generations / seconds;
+		r.runnersPerSecond = runners / seconds;
+		r.ticksPerSecond = r.ticks / seconds;
+		r.bestFitness = sim.getRunners()[0].getStoredFitness();
+		sim.close();
+		return r;
+	}
+	
+	/**
+	 * Compare the given results to the baseline, printing each difference
+	 * @param results
+	 * @param generations
+	 * @return true if no run was slower than the baseline by more than TOLERANCE, and every run did the same work as the baseline
+	 */
+	private static boolean check(ArrayList<Result> results, int generations){
+		ArrayList<Result> baseline = loadBaseline(generations);
+		if(baseline == null) return false;
+		
+		System.out.println("Compared to " + BASELINE_FILE + ", failing below " + Math.round((1 - TOLERANCE) * 100) + "% of the baseline ticks per second");
+		boolean passed = true;
+		for(Result r : results){
+			String name = String.format("  %9d runners %2d threads: ", r.population, r.threads);
+			Result b = r.find(baseline);
+			if(b == null){
+				System.out.println(name + "FAILED, no baseline, update the baseline to measure this run");
+				passed = false;
+				continue;
+			}
+			if(b.ticks != r.ticks || Double.doubleToLongBits(b.bestFitness) != Double.doubleToLongBits(r.bestFitness)){
+				System.out.println(name + "FAILED, the work changed, ticks " + r.ticks + " (baseline " + b.ticks + "), best fitness " + r.bestFitness +
+								   " (baseline " + b.bestFitness + "), update the baseline if this is expected");
+				passed = false;
+				continue;
+			}
+			double ratio = r.ticksPerSecond / b.ticksPerSecond;
+			boolean slow = ratio < 1 - TOLERANCE;
+			System.out.printf("%s%s %.1f ticks/s, baseline %.1f, %+.1f%%%n", name, slow ? "FAILED" : "ok", r.ticksPerSecond, b.ticksPerSecond, (ratio - 1) * 100);
+			if(slow) passed = false;
+		}
+		System.out.println(passed ? "Passed" : "Failed");
+		return passed;
+	}
+	
+	/**
+	 * Load the settings used for every run
+	 * @return
+	 */
+	private static Settings loadSettings(){
+		Settings settings = new Settings();
+		try{
+			Scanner scan = new Scanner(new File(SETTINGS_FILE));
+			settings.load(scan);
+			scan.close();
+		}catch(FileNotFoundException e){
+			System.err.println("No settings file at " + SETTINGS_FILE + ", run from the folder containing the data folder");
+			System.exit(1);
+		}
+		return settings;
+	}
+	
+	/**
+	 * Load the results in the baseline file
+	 * @param generations the number of generations measured, the baseline must have measured the same number
+	 * @return the results, or null if there is no baseline for this number of generations and the number of processors of this machine
+	 */
+	private static ArrayList<Result> loadBaseline(int generations){
+		ArrayList<Result> baseline = new ArrayList<Result>();
+		try{
+			Scanner scan = new Scanner(new File(BASELINE_FILE));
+			scan.next();
+			int baselineGens = scan.nextInt();
+			if(baselineGens != generations){
+				System.err.println("The baseline measured " + baselineGens + " generations, not " + generations);
+				scan.close();
+				return null;
+			}
+			//the times depend on the number of processors, so a baseline from a machine with a different number cannot be compared
+			int processors = Runtime.getRuntime().availableProcessors();
+			Scanner header = new Scanner(scan.nextLine());
+			int baselineProcessors = -1;
+			if(header.hasNext("Processors:")){
+				header.next();
+				baselineProcessors = header.nextInt();
+			}
+			header.close();
+			if(baselineProcessors != processors){
+				if(baselineProcessors < 0) System.err.println("The baseline does not say how many processors it was made with, run with update to make a new one");
+				else System.err.println("The baseline was made with " + baselineProcessors + " processors, not " + processors + ", run with update to make a baseline for this machine");
+				scan.close();
+				return null;
+			}
+			while(scan.hasNextLine()){
+				String line = scan.nextLine().trim();
+				if(line.isEmpty() || line.startsWith("#")) continue;
+				Scanner values = new Scanner(line);
+				Result r = new Result();
+				r.population = values.nextInt();
+				r.threads = values.nextInt();
+				r.gensPerSecond = Double.parseDouble(values.next());
+				r.runnersPerSecond = Double.parseDouble(values.next());
+				r.ticksPerSecond = Double.parseDouble(values.next());
+				r.ticks = values.nextLong();
+				r.bestFitness = Double.parseDouble(values.next());
+				values.close();
+				baseline.add(r);
+			}
+			scan.close();
+		}catch(FileNotFoundException e){
+			System.err.println("No baseline at " + BASELINE_FILE + ", run with update to make one");
+			return null;
+		}
+		return baseline;
+	}
+	
+	/**
+	 * Replace the baseline file with the given results
+	 * @param results
+	 * @param generations
+	 */
+	private static void saveBaseline(ArrayList<Result> results, int generations){
+		try{
+			PrintWriter write = new PrintWriter(new File(BASELINE_FILE));
+			write.println("Generations: " + generations + "\tProcessors: " + Runtime.getRuntime().availableProcessors());
+			write.println("# runners threads gens/s runners/s ticks/s ticks bestFitness");
+			for(Result r : results){
+				write.println(r.population + " " + r.threads + " " + r.gensPerSecond + " " + r.runnersPerSecond + " " + r.ticksPerSecond + " " +
+							  r.ticks + " " + r.bestFitness);
+			}
+			write.close();
+		}catch(FileNotFoundException e){
+			System.err.println("Failed to save the baseline to " + BASELINE_FILE);
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+	
+}
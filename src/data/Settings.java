@@ -209,6 +209,80 @@ public class Settings{
 	private int graphMinZoom;
 	public static final int DEFAULT_GRAPH_MIN_ZOOM = -10;
 	
+	//performance settings
+	/**
+	 * The number of threads used to test the runners of a generation. 0 uses one thread for each available processor, 
+	 * 1 tests every runner on the thread that is running the simulation. The results of testing are the same for any number of threads
+	 */
+	private int evalThreads;
+	public static final int DEFAULT_EVAL_THREADS = 0;
+	
+	/**
+	 * The way runners are tested. 0 tests each runner on its own from start to finish, 
+	 * 1 tests groups of runners together, one tick at a time, with their positions stored in arrays. Both give the same fitness
+	 */
+	private int evalMode;
+	public static final int DEFAULT_EVAL_MODE = 0;
+	
+	/**
+	 * The way the activation function of the neural nets is calculated, one of the modes in sim.Activation. 
+	 * 0 is exact, 1 uses Math.exp, 2 uses a lookup table, 3 uses a rational approximation. Modes other than 0 are faster, but change the fitness slightly
+	 */
+	private int activationMode;
+	public static final int DEFAULT_ACTIVATION_MODE = 0;
+	
+	/**
+	 * The number of ticks in each window used to decide if a runner has settled and its test can end early, see sim.EarlyStop. 
+	 * A runner that has not moved further than its radius in a window, and gained almost the same fitness as in the window before, stops being tested. 
+	 * 0 never ends tests early, which keeps the fitness exact
+	 */
+	private int earlyStopWindow;
+	public static final int DEFAULT_EARLY_STOP_WINDOW = 0;
+	
+	/**
+	 * The largest difference between the fitness a runner gained in one window and the window before, for the runner to count as settled
+	 */
+	private double earlyStopEpsilon;
+	public static final double DEFAULT_EARLY_STOP_EPSILON = 0.001;
+	
+	/**
+	 * true if runners should stop being tested once their fitness can no longer change their place in the order of runners, see FitnessPruning
+	 */
+	private boolean fitnessPruning;
+	public static final boolean DEFAULT_FITNESS_PRUNING = false;
+	
+	/**
+	 * The most fitness results kept in memory by the evaluation cache, see EvaluationCache, 0 to never use the cache
+	 */
+	private int evalCacheSize;
+	public static final int DEFAULT_EVAL_CACHE_SIZE = 10000;
+	
+	/**
+	 * true if fitness results should also be kept in a file in the data folder, so they are remembered between runs, see EvaluationCache
+	 */
+	private boolean evalCacheDisk;
+	public static final boolean DEFAULT_EVAL_CACHE_DISK = false;
+	
+	/**
+	 * The seed for the random numbers of new simulations, see RandomStream. A simulation with the same seed and settings always evolves the same way, 0 to use a different seed each time
+	 */
+	private int randomSeed;
+	public static final int DEFAULT_RANDOM_SEED = 0;
+	
+	/**
+	 * The most times per second the window is redrawn, 0 for no limit.
+	 * The window is only redrawn when the selected menu has changed, see Menu.markDirty
+	 */
+	private int maxFrameRate;
+	public static final int DEFAULT_MAX_FRAME_RATE = 60;
+	
+	/**
+	 * The most megabytes of memory used to keep drawn tiles of track images, shared by every track.
+	 * Tiles that have not been drawn for the longest are forgotten first, and drawn again when needed
+	 */
+	private int trackTileCacheSize;
+	public static final int DEFAULT_TRACK_TILE_CACHE_SIZE = 64;
+	
 	public Settings(){}
 	
 	/**
@@ -255,6 +329,18 @@ public class Settings{
 		setGraphMaxZoom(DEFAULT_GRAPH_MAX_ZOOM);
 		setGraphMinZoom(DEFAULT_GRAPH_MIN_ZOOM);
 		
+		setEvalThreads(DEFAULT_EVAL_THREADS);
+		setEvalMode(DEFAULT_EVAL_MODE);
+		setActivationMode(DEFAULT_ACTIVATION_MODE);
+		setEarlyStopWindow(DEFAULT_EARLY_STOP_WINDOW);
+		setEarlyStopEpsilon(DEFAULT_EARLY_STOP_EPSILON);
+		setFitnessPruning(DEFAULT_FITNESS_PRUNING);
+		setEvalCacheSize(DEFAULT_EVAL_CACHE_SIZE);
+		setEvalCacheDisk(DEFAULT_EVAL_CACHE_DISK);
+		setRandomSeed(DEFAULT_RANDOM_SEED);
+		setMaxFrameRate(DEFAULT_MAX_FRAME_RATE);
+		setTrackTileCacheSize(DEFAULT_TRACK_TILE_CACHE_SIZE);
+		
 		try{
 			PrintWriter write = new PrintWriter(new File("./data/settings.txt"));
 			save(write);
@@ -312,6 +398,18 @@ public class Settings{
 		write.println();
 		write.println("GraphMaxZoom: " + getGraphMaxZoom());
 		write.println("GraphMinZoom: " + getGraphMinZoom());
+		write.println();
+		write.println("EvalThreads: " + getEvalThreads());
+		write.println("EvalMode: " + getEvalMode());
+		write.println("ActivationMode: " + getActivationMode());
+		write.println("EarlyStopWindow: " + getEarlyStopWindow());
+		write.println("EarlyStopEpsilon: " + getEarlyStopEpsilon());
+		write.println("FitnessPruning: " + boolToInt(getFitnessPruning()));
+		write.println("EvalCacheSize: " + getEvalCacheSize());
+		write.println("EvalCacheDisk: " + boolToInt(getEvalCacheDisk()));
+		write.println("RandomSeed: " + getRandomSeed());
+		write.println("MaxFrameRate: " + getMaxFrameRate());
+		write.println("TrackTileCacheSize: " + getTrackTileCacheSize());
 	}
 	
 	/**
@@ -362,6 +460,52 @@ public class Settings{
 			
 			scan.next(); setGraphMaxZoom(scan.nextInt());
 			scan.next(); setGraphMinZoom(scan.nextInt());
+			
+			//performance settings were added after the other settings, so files saved before them will not have them
+			if(scan.hasNext("EvalThreads:")){
+				scan.next(); setEvalThreads(scan.nextInt());
+			}
+			else setEvalThreads(DEFAULT_EVAL_THREADS);
+			if(scan.hasNext("EvalMode:")){
+				scan.next(); setEvalMode(scan.nextInt());
+			}
+			else setEvalMode(DEFAULT_EVAL_MODE);
+			if(scan.hasNext("ActivationMode:")){
+				scan.next(); setActivationMode(scan.nextInt());
+			}
+			else setActivationMode(DEFAULT_ACTIVATION_MODE);
+			if(scan.hasNext("EarlyStopWindow:")){
+				scan.next(); setEarlyStopWindow(scan.nextInt());
+			}
+			else setEarlyStopWindow(DEFAULT_EARLY_STOP_WINDOW);
+			if(scan.hasNext("EarlyStopEpsilon:")){
+				scan.next(); setEarlyStopEpsilon(scan.nextDouble());
+			}
+			else setEarlyStopEpsilon(DEFAULT_EARLY_STOP_EPSILON);
+			if(scan.hasNext("FitnessPruning:")){
+				scan.next(); setFitnessPruning(scan.nextInt() == 1);
+			}
+			else setFitnessPruning(DEFAULT_FITNESS_PRUNING);
+			if(scan.hasNext("EvalCacheSize:")){
+				scan.next(); setEvalCacheSize(scan.nextInt());
+			}
+			else setEvalCacheSize(DEFAULT_EVAL_CACHE_SIZE);
+			if(scan.hasNext("EvalCacheDisk:")){
+				scan.next(); setEvalCacheDisk(scan.nextInt() == 1);
+			}
+			else setEvalCacheDisk(DEFAULT_EVAL_CACHE_DISK);
+			if(scan.hasNext("RandomSeed:")){
+				scan.next(); setRandomSeed(scan.nextInt());
+			}
+			else setRandomSeed(DEFAULT_RANDOM_SEED);
+			if(scan.hasNext("MaxFrameRate:")){
+				scan.next(); setMaxFrameRate(scan.nextInt());
+			}
+			else setMaxFrameRate(DEFAULT_MAX_FRAME_RATE);
+			if(scan.hasNext("TrackTileCacheSize:")){
+				scan.next(); setTrackTileCacheSize(scan.nextInt());
+			}
+			else setTrackTileCacheSize(DEFAULT_TRACK_TILE_CACHE_SIZE);
 		}catch(Exception e){
 			loadDefaults();
 		}
@@ -472,6 +616,39 @@ public class Settings{
 	public int getGraphMinZoom(){
 		return graphMinZoom;
 	}
+	public int getEvalThreads(){
+		return evalThreads;
+	}
+	public int getEvalMode(){
+		return evalMode;
+	}
+	public int getActivationMode(){
+		return activationMode;
+	}
+	public int getEarlyStopWindow(){
+		return earlyStopWindow;
+	}
+	public double getEarlyStopEpsilon(){
+		return earlyStopEpsilon;
+	}
+	public boolean getFitnessPruning(){
+		return fitnessPruning;
+	}
+	public int getEvalCacheSize(){
+		return evalCacheSize;
+	}
+	public boolean getEvalCacheDisk(){
+		return evalCacheDisk;
+	}
+	public int getRandomSeed(){
+		return randomSeed;
+	}
+	public int getMaxFrameRate(){
+		return maxFrameRate;
+	}
+	public int getTrackTileCacheSize(){
+		return trackTileCacheSize;
+	}
 	
 	public void setScreenWidth(int screenWidth){
 		this.screenWidth = screenWidth;
@@ -578,6 +755,39 @@ public class Settings{
 	public void setGraphMinZoom(int graphMinZoom){
 		this.graphMinZoom = graphMinZoom;
 	}
+	public void setEvalThreads(int evalThreads){
+		this.evalThreads = evalThreads;
+	}
+	public void setEvalMode(int evalMode){
+		this.evalMode = evalMode;
+	}
+	public void setActivationMode(int activationMode){
+		this.activationMode = activationMode;
+	}
+	public void setEarlyStopWindow(int earlyStopWindow){
+		this.earlyStopWindow = earlyStopWindow;
+	}
+	public void setEarlyStopEpsilon(double earlyStopEpsilon){
+		this.earlyStopEpsilon = earlyStopEpsilon;
+	}
+	public void setFitnessPruning(boolean fitnessPruning){
+		this.fitnessPruning = fitnessPruning;
+	}
+	public void setEvalCacheSize(int evalCacheSize){
+		this.evalCacheSize = evalCacheSize;
+	}
+	public void setEvalCacheDisk(boolean evalCacheDisk){
+		this.evalCacheDisk = evalCacheDisk;
+	}
+	public void setRandomSeed(int randomSeed){
+		this.randomSeed = randomSeed;
+	}
+	public void setMaxFrameRate(int maxFrameRate){
+		this.maxFrameRate = maxFrameRate;
+	}
+	public void setTrackTileCacheSize(int trackTileCacheSize){
+		this.trackTileCacheSize = trackTileCacheSize;
+	}
 	
 	/**
 	 * if b is true, return 1, if b is false, return 0
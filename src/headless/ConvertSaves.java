@@ -0,0 +1,82 @@
+package headless;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Scanner;
+
+import data.Settings;
+import sim.Checkpoint;
+import sim.Simulation;
+
+/**
+ * Converts text saves, the format saves were written in before checkpoints, into checkpoints. The text saves are kept.
+ * Loading a save tests the runners again, so converting a large save takes about as long as loading it from the main menu
+ */
+public class ConvertSaves{
+	
+	public static final String USAGE = "Usage: ConvertSaves [save files...]\n" +
+									   "  save files: the paths of the text saves to convert, defaults to every .txt save in ./data/saves\n" +
+									   "  each save is written next to the text save, with " + Checkpoint.EXTENSION + " in place of .txt";
+	
+	public static void main(String[] args){
+		System.setProperty("java.awt.headless", "true");
+		
+		ArrayList<File> files = new ArrayList<File>();
+		if(args.length == 0){
+			File[] saves = new File("./data/saves").listFiles();
+			if(saves == null){
+				System.err.println(USAGE);
+				System.exit(1);
+			}
+			for(File f : saves){
+				if(f.isFile() && f.getName().endsWith(".txt")) files.add(f);
+			}
+		}
+		else{
+			for(String s : args) files.add(new File(s));
+		}
+		
+		int failed = 0;
+		for(File f : files){
+			if(!convert(f)) failed++;
+		}
+		System.out.println("Converted " + (files.size() - failed) + " of " + files.size() + " saves");
+		if(failed > 0) System.exit(1);
+	}
+	
+	/**
+	 * Convert the given text save into a checkpoint in the same folder
+	 * @param file
+	 * @return true if the save was converted, false otherwise
+	 */
+	public static boolean convert(File file){
+		if(Checkpoint.isCheckpoint(file)){
+			System.err.println(file.getPath() + " is already a checkpoint");
+			return false;
+		}
+		String name = file.getName();
+		if(name.endsWith(".txt")) name = name.substring(0, name.length() - 4);
+		File checkpoint = new File(file.getParentFile(), name + Checkpoint.EXTENSION);
+		
+		Simulation sim = new Simulation(new Settings(), null);
+		try{
+			Scanner scan = new Scanner(file);
+			sim.load(scan);
+			scan.close();
+			sim.saveCheckpoint(checkpoint);
+			System.out.println("Converted " + file.getPath() + " to " + checkpoint.getPath());
+			return true;
+		}catch(FileNotFoundException e){
+			System.err.println("No save at " + file.getPath());
+		}catch(IOException | RuntimeException e){
+			System.err.println("Failed to convert " + file.getPath());
+			e.printStackTrace();
+		}finally{
+			sim.close();
+		}
+		return false;
+	}
+	
+}
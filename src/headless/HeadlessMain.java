@@ -0,0 +1,130 @@
+package headless;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Scanner;
+
+import data.Settings;
+import sim.Checkpoint;
+import sim.Simulation;
+
+/**
+ * Runs a simulation from the command line without ever creating a window, for running evolution on machines with no display.
+ * Saves are written to the saves folder as checkpoints, the same format as saves from the main program, so they can be loaded from the main menu
+ */
+public class HeadlessMain{
+	
+	public static final String USAGE = "Usage: HeadlessMain <track file> <settings file> <generations> <checkpoint interval> [save name]\n" +
+									   "  track file: the name of a track in ./data/tracks, including .txt\n" +
+									   "  settings file: the path to a settings file, like ./data/settings.txt\n" +
+									   "  generations: the number of generations to run after generation 0\n" +
+									   "  checkpoint interval: save every this many generations, 0 to only save at the end\n" +
+									   "  save name: the name of the save in ./data/saves, without " + Checkpoint.EXTENSION + ", defaults to the track name";
+	
+	public static void main(String[] args){
+		//nothing in the simulation should need a display, this ensures nothing tries to find one
+		System.setProperty("java.awt.headless", "true");
+		
+		if(args.length < 4 || args.length > 5){
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+		
+		String trackName = args[0];
+		String settingsFile = args[1];
+		int generations;
+		int checkpointInterval;
+		try{
+			generations = Integer.parseInt(args[2]);
+			checkpointInterval = Integer.parseInt(args[3]);
+		}catch(NumberFormatException e){
+			System.err.println(USAGE);
+			System.exit(1);
+			return;
+		}
+		String saveName;
+		if(args.length == 5) saveName = args[4];
+		else if(trackName.endsWith(".txt")) saveName = trackName.substring(0, trackName.length() - 4);
+		else saveName = trackName;
+		
+		if(!new File("./data/tracks/" + trackName).isFile()){
+			System.err.println("No track named " + trackName + " in ./data/tracks");
+			System.exit(1);
+		}
+		
+		Settings settings = new Settings();
+		try{
+			Scanner scan = new Scanner(new File(settingsFile));
+			settings.load(scan);
+			scan.close();
+		}catch(FileNotFoundException e){
+			System.err.println("No settings file at " + settingsFile);
+			System.exit(1);
+		}
+		
+		runSimulation(settings, trackName, generations, checkpointInterval, saveName);
+	}
+	
+	/**
+	 * Create generation 0 on the given track, then run the given number of generations, saving every checkpointInterval generations and at the end
+	 * @param settings
+	 * @param trackName
+	 * @param generations
+	 * @param checkpointInterval
+	 * @param saveName
+	 */
+	public static void runSimulation(Settings settings, String trackName, int generations, int checkpointInterval, String saveName){
+		Simulation sim = new Simulation(settings, trackName);
+		
+		long time = System.currentTimeMillis();
+		sim.newSimulation();
+		System.out.println("Seed: " + sim.getSeed());
+		printGen(sim, System.currentTimeMillis() - time);
+		
+		for(int i = 0; i < generations; i++){
+			time = System.currentTimeMillis();
+			sim.nextGeneration();
+			printGen(sim, System.currentTimeMillis() - time);
+			
+			if(checkpointInterval > 0 && (i + 1) % checkpointInterval == 0 && i + 1 < generations) save(sim, saveName);
+		}
+		save(sim, saveName);
+		sim.close();
+	}
+	
+	/**
+	 * Print out the fitness of the most recently finished generation, the number of line tests the track skipped, the ticks saved by ending tests early,
+	 * and how many runners were found in the evaluation cache
+	 * @param sim
+	 * @param millis the time the generation took
+	 */
+	private static void printGen(Simulation sim, long millis){
+		double[] fitness = sim.getFitnessData().get(sim.getFitnessData().size() - 1);
+		System.out.println("Gen " + (sim.getFitnessData().size() - 1) +
+						   "\tBest: " + fitness[0] + "\tMedian: " + fitness[5] + "\tWorst: " + fitness[10] + "\t" + millis + "ms" +
+						   "\tSkipped line tests: " + sim.getSkippedLineTests() + "\tEarly stop ticks saved: " + sim.getEarlyStopTicksSaved() +
+						   "\tPruned ticks saved: " + sim.getPrunedTicksSaved() +
+						   "\tCache hits: " + sim.getCacheHits() + " (disk " + sim.getCacheDiskHits() + ")\tCache misses: " + sim.getCacheMisses());
+	}
+	
+	/**
+	 * Save the simulation to the saves folder as a checkpoint with the given name. The checkpoint is written to a temporary file first,
+	 * so stopping the program while saving never leaves a broken save behind
+	 * @param sim
+	 * @param saveName
+	 */
+	public static void save(Simulation sim, String saveName){
+		File saves = new File("./data/saves");
+		saves.mkdirs();
+		File file = new File(saves, saveName + Checkpoint.EXTENSION);
+		try{
+			sim.saveCheckpoint(file);
+			System.out.println("Saved gen " + sim.getCurrentGen() + " to " + file.getPath());
+		}catch(IOException e){
+			System.err.println("Failed to save " + file.getPath());
+			e.printStackTrace();
+		}
+	}
+	
+}
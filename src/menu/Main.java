@@ -2,15 +2,21 @@ package menu;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.PrintWriter;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Scanner;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.swing.JFrame;
 
@@ -25,17 +31,37 @@ import menu.types.MenuRunner;
 import menu.types.MenuTrackSelect;
 import menu.types.TrackEditor;
 import menu.types.MenuRunStats;
+import sim.Checkpoint;
+import sim.EvolutionWorker;
 import sim.Runner;
 import sim.Simulation;
 
 public class Main implements Runnable{
 	
+	/**
+	 * The number of times per second the selected menu is ticked
+	 */
+	public static final int TICKS_PER_SECOND = 100;
+	/**
+	 * The length of one tick, in nanoseconds
+	 */
+	public static final long TICK_NANOS = 1000000000L / TICKS_PER_SECOND;
+	/**
+	 * The most ticks the main thread can fall behind before it skips the ticks it missed, rather than running them all at once to catch up
+	 */
+	public static final int MAX_LATE_TICKS = 10;
+	/**
+	 * How long before a tick or frame is due that the main thread stops parking, and yields until it is due instead,
+	 * because parking can wake up later than it was asked to
+	 */
+	public static final long SPIN_NANOS = 100000L;
+	
 	private static Main instance;
 	
 	/**
 	 * True if the program is currently running, false otherwise
 	 */
-	private boolean running;
+	private volatile boolean running;
 	/**
 	 * The screen for the main menu of the simulation
 	 */
@@ -70,12 +96,38 @@ public class Main implements Runnable{
 	 * The main simulation that is being run with this program
 	 */
 	private Simulation mainSim;
+	/**
+	 * The worker running the generations of mainSim, null when there is no simulation
+	 */
+	private EvolutionWorker evolution;
 	
 	/**
 	 * The main settings of the current simulation
 	 */
 	private Settings mainSettings;
 	
+	/**
+	 * How often and how long ticks of the selected menu take, and how late they start
+	 */
+	private TimingStats tickStats;
+	/**
+	 * How often and how long drawing the window takes, and how long after it was asked for that it starts
+	 */
+	private TimingStats frameStats;
+	/**
+	 * The time from System.nanoTime when the window was last asked to be drawn, 0 if it has been drawn since
+	 */
+	private volatile long repaintRequested;
+	
+	/**
+	 * Marks the selected menu as dirty on any mouse input, and wakes up the main thread so it is drawn right away
+	 */
+	private MouseAdapter dirtyMouse;
+	/**
+	 * Marks the selected menu as dirty on any key input, and wakes up the main thread so it is drawn right away
+	 */
+	private KeyAdapter dirtyKeys;
+	
 	/**
 	 * Constructor for main class
 	 */
@@ -94,6 +146,50 @@ public class Main implements Runnable{
 				if(old != getScreenHeight()) updateFrame();
 			}
 		};
+		tickStats = new TimingStats();
+		frameStats = new TimingStats();
+		
+		dirtyMouse = new MouseAdapter(){
+			@Override
+			public void mousePressed(MouseEvent e){
+				markDirty();
+			}
+			@Override
+			public void mouseReleased(MouseEvent e){
+				markDirty();
+			}
+			@Override
+			public void mouseMoved(MouseEvent e){
+				markDirty();
+			}
+			@Override
+			public void mouseDragged(MouseEvent e){
+				markDirty();
+			}
+			@Override
+			public void mouseWheelMoved(MouseWheelEvent e){
+				markDirty();
+			}
+		};
+		dirtyKeys = new KeyAdapter(){
+			@Override
+			public void keyPressed(KeyEvent e){
+				markDirty();
+			}
+			@Override
+			public void keyReleased(KeyEvent e){
+				markDirty();
+			}
+		};
+	}
+	
+	/**
+	 * Mark the selected menu as needing to be drawn again, and wake up the main thread so it is drawn without waiting for the next tick
+	 */
+	public void markDirty(){
+		Menu m = selectedMenu;
+		if(m != null) m.markDirty();
+		if(mainThread != null) LockSupport.unpark(mainThread);
 	}
 	
 	/**
@@ -104,6 +200,7 @@ public class Main implements Runnable{
 			frame.setSize(mainSettings.getScreenWidth(), mainSettings.getScreenHeight());
 			for(Menu m : menus) m.resetMenu();
 			frame.setLocationRelativeTo(null);
+			markDirty();
 		}
 	}
 	
@@ -124,16 +221,22 @@ public class Main implements Runnable{
 	}
 	
 	/**
-	 * Save the current settings and simulation in a new file with the given name. Do not include .txt, it is added automatically
+	 * Save the current settings and simulation in a new checkpoint file with the given name. Do not include the extension, it is added automatically
 	 * @param name
 	 */
-	public void save(String name){
+	public void save(final String name){
 		SavesLoader.scanFiles();
-		try{
-			PrintWriter write = new PrintWriter(new File("./data/saves/" + name + ".txt"));
-			mainSim.save(write);
-			write.close();
-		}catch(FileNotFoundException e){}
+		runPaused(new Runnable(){
+			@Override
+			public void run(){
+				try{
+					mainSim.saveCheckpoint(new File("./data/saves/" + name + Checkpoint.EXTENSION));
+				}catch(IOException e){
+					System.err.println("Failed to save sim");
+					e.printStackTrace();
+				}
+			}
+		});
 	}
 	
 	/**
@@ -142,16 +245,25 @@ public class Main implements Runnable{
 	 * @param trackName
 	 */
 	public void load(String fileName, String trackName){
+		closeSimulation();
 		mainSim = new Simulation(mainSettings, trackName);
-		runStastMenu.resetMenu();
 		
 		try{
-			Scanner scan = new Scanner(new File("./data/saves/" + fileName));
-			mainSim.load(scan);
-			scan.close();
+			//saves can either be checkpoints or older text saves
+			File file = new File("./data/saves/" + fileName);
+			if(Checkpoint.isCheckpoint(file)) mainSim.loadCheckpoint(file);
+			else{
+				Scanner scan = new Scanner(file);
+				mainSim.load(scan);
+				scan.close();
+			}
+			evolution = new EvolutionWorker(mainSim);
+			runStastMenu.resetMenu();
+			runStastMenu.showLoaded(mainSim.wasLoadedWithoutTesting());
 			changeSettingsMenu.resetMenu();
 			
-		}catch(FileNotFoundException e){
+		}catch(IOException | RuntimeException e){
+			//a broken save can fail to load in many ways, and the old simulation is already closed, so there must always be a new one
 			System.err.println("Failed to load sim, creating new simulation instead");
 			e.printStackTrace();
 			newSimulation(trackName);
@@ -162,11 +274,33 @@ public class Main implements Runnable{
 	 * Start a new simulation, creating and testing an initial generation 0
 	 */
 	public void newSimulation(String trackName){
+		closeSimulation();
 		mainSim = new Simulation(mainSettings, trackName);
 		mainSim.newSimulation();
+		evolution = new EvolutionWorker(mainSim);
 		runStastMenu.resetMenu();
 	}
 	
+	/**
+	 * Stop evolving the current simulation, waiting for the current generation to finish, then close the simulation
+	 */
+	private void closeSimulation(){
+		if(evolution != null) evolution.close();
+		evolution = null;
+		if(mainSim != null) mainSim.close();
+		mainSim = null;
+	}
+	
+	/**
+	 * Run the given task on this thread while no generation of the current simulation is running.
+	 * Anything that changes the simulation, its track, or the settings, must be done this way, so it never happens in the middle of a generation
+	 * @param task
+	 */
+	public void runPaused(Runnable task){
+		if(evolution != null) evolution.runPaused(task);
+		else task.run();
+	}
+	
 	public MenuMain getMainMenu(){
 		return mainMenu;
 	}
@@ -201,7 +335,12 @@ public class Main implements Runnable{
 		for(MouseWheelListener l : frame.getMouseWheelListeners()) frame.removeMouseWheelListener(l);
 		
 		m.linkToComponent(frame);
+		frame.addMouseListener(dirtyMouse);
+		frame.addMouseMotionListener(dirtyMouse);
+		frame.addMouseWheelListener(dirtyMouse);
+		frame.addKeyListener(dirtyKeys);
 		selectedMenu = m;
+		markDirty();
 	}
 	public Menu getSelectedMenu(){
 		return selectedMenu;
@@ -227,9 +366,30 @@ public class Main implements Runnable{
 	public Simulation getMainSim(){
 		return mainSim;
 	}
+	/**
+	 * Get the worker running the generations of the current simulation
+	 * @return the worker, or null if there is no simulation
+	 */
+	public EvolutionWorker getEvolution(){
+		return evolution;
+	}
 	public Settings getMainSettings(){
 		return mainSettings;
 	}
+	/**
+	 * Get the timing of the ticks of the selected menu over the last second
+	 * @return
+	 */
+	public TimingStats getTickStats(){
+		return tickStats;
+	}
+	/**
+	 * Get the timing of drawing the window over the last second, the lateness of a frame is how long after it was asked for that it was drawn
+	 * @return
+	 */
+	public TimingStats getFrameStats(){
+		return frameStats;
+	}
 	
 	/**
 	 * Initialize the main program to its default state
@@ -254,8 +414,12 @@ public class Main implements Runnable{
 			private static final long serialVersionUID = 1L;
 			@Override
 			public void paint(Graphics g){
+				long start = System.nanoTime();
+				long requested = repaintRequested;
+				repaintRequested = 0;
 				mainScreen.updateScreen();
 				mainScreen.render(g);
+				frameStats.add(requested == 0 ? 0 : start - requested, System.nanoTime() - start);
 			}
 		};
 		frame.setVisible(false);
@@ -316,67 +480,59 @@ public class Main implements Runnable{
 	 * To modify the rendering, go to the initialization of mainScreen, located in the init() method
 	 */
 	private void render(){
+		repaintRequested = System.nanoTime();
 		frame.repaint();
 	}
 	
 	/**
-	 * Responsible for rendering and updating the main program
+	 * Responsible for rendering and updating the main program.
+	 * The selected menu is ticked TICKS_PER_SECOND times per second, and the window is drawn after a tick only if the selected menu is dirty,
+	 * at most the MaxFrameRate setting times per second. Between ticks and frames, the main thread parks, so it does not use a core while waiting
 	 */
 	@Override
 	public void run(){
 		init();
-		long lastTime = System.nanoTime();
-		final double numTicks = 100;
-		final int nanoSecond = 1000000000;
-		final double nanoTicks = nanoSecond / numTicks;
-		double nanoTime = 0;
-		int frames = 0;
-		int ticks = 0;
-		long timer = System.currentTimeMillis();
-
-		long currentTime;
-		
-		long lastRenderTime = 0;
-		boolean shouldRender = true;
+		long nextTick = System.nanoTime();
+		long nextFrame = nextTick;
 		
 		while(running){
-			//general update
-			currentTime = System.nanoTime();
-			nanoTime += (currentTime - lastTime) / nanoTicks;
-			lastTime = currentTime;
+			long now = System.nanoTime();
 			
 			//tick statements
-			if(nanoTime >= 1){
+			if(now - nextTick >= 0){
+				//if the ticks fell too far behind, skip the missed ticks rather than running them all at once
+				if(now - nextTick > MAX_LATE_TICKS * TICK_NANOS) nextTick = now;
 				tick();
-				ticks++;
-				nanoTime--;
-			}
-			
-			if(ticks > 101){
-				nanoTime = 0;
+				tickStats.add(now - nextTick, System.nanoTime() - now);
+				nextTick += TICK_NANOS;
+				now = System.nanoTime();
 			}
 			
 			//render statements
-			lastRenderTime = lastTime;
-			if(shouldRender){
+			if(now - nextFrame >= 0 && selectedMenu != null && selectedMenu.takeDirty()){
 				render();
-				frames++;
+				int maxFrameRate = mainSettings.getMaxFrameRate();
+				nextFrame = maxFrameRate > 0 ? now + 1000000000L / maxFrameRate : now;
 			}
-			lastRenderTime = System.nanoTime() - lastRenderTime;
-			shouldRender = lastRenderTime < nanoTicks;
 			
-			//console output
-			if(System.currentTimeMillis() - timer > 1000){
-				timer += 1000;
-				System.out.println(ticks + " Ticks\tFPS: " + frames);
-				ticks = 0;
-				frames = 0;
-				shouldRender = true;
-			}
+			//wait for the next tick, or the next frame if the menu is waiting to be drawn
+			long deadline = nextTick;
+			if(selectedMenu != null && selectedMenu.isDirty() && nextFrame - deadline < 0) deadline = nextFrame;
+			waitUntil(deadline);
 		}
 		stop();
 	}
 	
+	/**
+	 * Wait until System.nanoTime reaches the given time, or until the main thread is unparked, for example by markDirty
+	 * @param deadline
+	 */
+	private void waitUntil(long deadline){
+		long wait = deadline - System.nanoTime();
+		if(wait > SPIN_NANOS) LockSupport.parkNanos(this, wait - SPIN_NANOS);
+		else if(wait > 0) Thread.yield();
+	}
+	
 
 	public synchronized void stop(){
 		if(!running) return;
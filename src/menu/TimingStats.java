@@ -0,0 +1,127 @@
+package menu;
+
+/**
+ * Keeps track of how often something happened, how long it took, and how late it started, over the last second.
+ * Used by Main for ticks and frames. Samples can be added and read from any thread
+ */
+public class TimingStats{
+	
+	/**
+	 * The length of time samples are kept for, in nanoseconds
+	 */
+	public static final long WINDOW = 1000000000L;
+	/**
+	 * The most samples kept, a sample older than this many samples is forgotten even if it is still in the window
+	 */
+	public static final int MAX_SAMPLES = 1024;
+	
+	/**
+	 * The time each sample was added, from System.nanoTime, stored in a ring starting at first
+	 */
+	private long[] times;
+	/**
+	 * For each sample, how long after it should have started that it started, in nanoseconds
+	 */
+	private long[] late;
+	/**
+	 * For each sample, how long it took, in nanoseconds
+	 */
+	private long[] durations;
+	/**
+	 * The index of the oldest sample
+	 */
+	private int first;
+	/**
+	 * The number of samples kept
+	 */
+	private int size;
+	
+	public TimingStats(){
+		times = new long[MAX_SAMPLES];
+		late = new long[MAX_SAMPLES];
+		durations = new long[MAX_SAMPLES];
+		first = 0;
+		size = 0;
+	}
+	
+	/**
+	 * Add a sample that finished now
+	 * @param lateNanos how long after it should have started that it started, in nanoseconds, 0 if it was not late
+	 * @param durationNanos how long it took, in nanoseconds
+	 */
+	public synchronized void add(long lateNanos, long durationNanos){
+		long now = System.nanoTime();
+		forgetOld(now);
+		if(size == MAX_SAMPLES){
+			first = (first + 1) % MAX_SAMPLES;
+			size--;
+		}
+		int i = (first + size) % MAX_SAMPLES;
+		times[i] = now;
+		late[i] = Math.max(0, lateNanos);
+		durations[i] = Math.max(0, durationNanos);
+		size++;
+	}
+	
+	/**
+	 * Get the number of samples added in the last second
+	 * @return
+	 */
+	public synchronized int getRate(){
+		forgetOld(System.nanoTime());
+		return size;
+	}
+	
+	/**
+	 * Get the average time the samples of the last second took, in milliseconds, 0 if there were none
+	 * @return
+	 */
+	public synchronized double getAverageMillis(){
+		forgetOld(System.nanoTime());
+		if(size == 0) return 0;
+		long total = 0;
+		for(int i = 0; i < size; i++) total += durations[(first + i) % MAX_SAMPLES];
+		return total / 1e6 / size;
+	}
+	
+	/**
+	 * Get the longest time any sample of the last second took, in milliseconds, 0 if there were none
+	 * @return
+	 */
+	public synchronized double getMaxMillis(){
+		forgetOld(System.nanoTime());
+		return max(durations) / 1e6;
+	}
+	
+	/**
+	 * Get the latest any sample of the last second started, in milliseconds, 0 if there were none
+	 * @return
+	 */
+	public synchronized double getMaxLateMillis(){
+		forgetOld(System.nanoTime());
+		return max(late) / 1e6;
+	}
+	
+	/**
+	 * Get the highest value of the kept samples in the given array
+	 * @param values
+	 * @return
+	 */
+	private long max(long[] values){
+		long m = 0;
+		for(int i = 0; i < size; i++) m = Math.max(m, values[(first + i) % MAX_SAMPLES]);
+		return m;
+	}
+	
+	/**
+	 * Forget every sample that was added more than WINDOW before the given time
+	 * @param now
+	 */
+	private void forgetOld(long now){
+		while(size > 0 && now - times[first] > WINDOW){
+			first = (first + 1) % MAX_SAMPLES;
+			size--;
+		}
+	}
+	
+}
@@ -14,6 +14,7 @@ import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.List;
 
 import data.Settings;
 import menu.component.MenuComponent;
@@ -50,7 +51,7 @@ public class LineGraph extends MenuComponent implements InputControl{
 	/**
 	 * The data that was last put into the graph
 	 */
-	private ArrayList<double[]> lastData;
+	private List<double[]> lastData;
 	
 	/**
 	 * Object that keeps track of this graphs mouse input
@@ -105,7 +106,7 @@ public class LineGraph extends MenuComponent implements InputControl{
 		return currentSize;
 	}
 	
-	public void updateGraphImage(ArrayList<double[]> data){
+	public void updateGraphImage(List<double[]> data){
 		lastData = data;
 		
 		//update current size
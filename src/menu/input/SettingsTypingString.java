@@ -23,12 +23,21 @@ public class SettingsTypingString extends TypingStringInput{
 	
 	private int outputState;
 	private int outputStateTimer;
+	/**
+	 * The menu the buttons were last added to, marked dirty when the output message goes away
+	 */
+	private Menu menu;
 	
 	private String[] settingsStrings;
 	
 	private MenuButton[] buttons;
 	
 	private Settings settings;
+	
+	/**
+	 * The y coordinate just below the last settings button, used to place the help info
+	 */
+	private int listBottom;
 
 	private final String[] LABEL_NAMES = new String[]{
 			"Window Width: ",
@@ -69,7 +78,19 @@ public class SettingsTypingString extends TypingStringInput{
 			"Node disp space X: ",
 			"",
 			"Graph max zoom: ",
-			"Graph min zoom: "
+			"Graph min zoom: ",
+			"",
+			"Evaluation threads: ",
+			"Evaluation mode: ",
+			"Activation mode: ",
+			"Early stop window: ",
+			"Early stop epsilon: ",
+			"Fitness pruning: ",
+			"Eval cache size: ",
+			"Eval cache on disk: ",
+			"Random seed: ",
+			"Max frame rate: ",
+			"Track tile cache MB: "
 	};
 	private final String[] LABEL_DESCRIPTIONS = new String[]{
 			"Width of the main window, must restart to take full effect (int)",
@@ -110,7 +131,19 @@ public class SettingsTypingString extends TypingStringInput{
 			"The space between each node layer of a displayed neural net when viewing a runner (int)",
 			"",
 			"The max number of times a graph can zoom in (int)",
-			"The min number of times a graph can zoom in (int)"
+			"The min number of times a graph can zoom in (int)",
+			"",
+			"Threads used to test runners, 0 for one per processor, 1 to only use the main thread (int)",
+			"0 to test each runner on its own, 1 to test groups of runners one tick at a time (int)",
+			"Neural net activation, 0 exact, 1 Math.exp, 2 lookup table, 3 rational approximation (int)",
+			"Ticks a runner must stay in place, gaining the same fitness, before its test ends early, 0 to never end early (int)",
+			"How close the fitness gained in two early stop windows in a row must be to end early (double)",
+			"Stop testing runners once their place in the order is certain, the order stays exact (true/false)",
+			"Fitness results remembered so the same brain is not tested twice, 0 to turn the cache off (int)",
+			"Also remember fitness results in ./data/evalCache.bin, between runs of the program (true/false)",
+			"Seed for the random numbers of new simulations, the same seed evolves the same way, 0 for a new seed each time (int)",
+			"The most times per second the window is redrawn, 0 for no limit. The window is only redrawn when something on it changes (int)",
+			"Megabytes kept of drawn track image tiles, shared by all tracks, at least one tile is always kept (int)"
 	};
 	
 	/**
@@ -128,6 +161,8 @@ public class SettingsTypingString extends TypingStringInput{
 		
 		settingsIndex = -1;
 		
+		listBottom = y + 15 * LABEL_NAMES.length;
+		
 		buttons = new MenuButton[LABEL_NAMES.length];
 		for(int i = 0; i < buttons.length; i++){
 			final int ii = i;
@@ -172,7 +207,10 @@ public class SettingsTypingString extends TypingStringInput{
 						if(outputState != 0){
 							if(outputStateTimer > 0){
 								outputStateTimer--;
-								if(outputStateTimer <= 0) outputState = 0;
+								if(outputStateTimer <= 0){
+									outputState = 0;
+									if(menu != null) menu.markDirty();
+								}
 							}
 						}
 					}
@@ -193,6 +231,7 @@ public class SettingsTypingString extends TypingStringInput{
 	 * @param m
 	 */
 	public void addToMenu(Menu m){
+		menu = m;
 		for(MenuButton b : buttons){
 			m.addComponent(b);
 			m.addControled(b);
@@ -239,7 +278,20 @@ public class SettingsTypingString extends TypingStringInput{
 				"" + settings.getNodeDispMaxHeight(), "" + settings.getNodeDispSpacing(), 
 				"", 
 				
-				"" + settings.getGraphMaxZoom(), "" + settings.getGraphMinZoom()
+				"" + settings.getGraphMaxZoom(), "" + settings.getGraphMinZoom(),
+				"", 
+				
+				"" + settings.getEvalThreads(),
+				"" + settings.getEvalMode(),
+				"" + settings.getActivationMode(),
+				"" + settings.getEarlyStopWindow(),
+				"" + settings.getEarlyStopEpsilon(),
+				"" + Settings.boolToInt(settings.getFitnessPruning()),
+				"" + settings.getEvalCacheSize(),
+				"" + Settings.boolToInt(settings.getEvalCacheDisk()),
+				"" + settings.getRandomSeed(),
+				"" + settings.getMaxFrameRate(),
+				"" + settings.getTrackTileCacheSize()
 			};
 		return s;
 	}
@@ -329,6 +381,18 @@ public class SettingsTypingString extends TypingStringInput{
 			settings.setGraphMaxZoom(Integer.parseInt(settingsStrings[37]));
 			settings.setGraphMinZoom(Integer.parseInt(settingsStrings[38]));
 			
+			settings.setEvalThreads(Integer.parseInt(settingsStrings[40]));
+			settings.setEvalMode(Integer.parseInt(settingsStrings[41]));
+			settings.setActivationMode(Integer.parseInt(settingsStrings[42]));
+			settings.setEarlyStopWindow(Integer.parseInt(settingsStrings[43]));
+			settings.setEarlyStopEpsilon(Double.parseDouble(settingsStrings[44]));
+			settings.setFitnessPruning(settingsStrings[45].equals("1"));
+			settings.setEvalCacheSize(Integer.parseInt(settingsStrings[46]));
+			settings.setEvalCacheDisk(settingsStrings[47].equals("1"));
+			settings.setRandomSeed(Integer.parseInt(settingsStrings[48]));
+			settings.setMaxFrameRate(Integer.parseInt(settingsStrings[49]));
+			settings.setTrackTileCacheSize(Integer.parseInt(settingsStrings[50]));
+			
 			try{
 				PrintWriter write = new PrintWriter(new File("./data/settings.txt"));
 				settings.save(write);
@@ -359,19 +423,19 @@ public class SettingsTypingString extends TypingStringInput{
 		g.setFont(new Font(fontName, Font.BOLD, 20));
 		g.drawString("Settings:", x, y);
 		g.setFont(new Font(fontName, Font.BOLD, 16));
-		g.drawString("Click a setting to type and change it.", x, 755);
-		g.drawString("Press enter to apply changes.", x, 775);
-		g.drawString("If all settings are valid, they will be changed and the text", x, 795);
-		g.drawString("\"Settings changed successfully\" will be displayed.", x, 815);
-		g.drawString("If any setting is invalid, then the text", x, 835);
-		g.drawString("\"Invalid settings\" will be displayed.", x, 855);
-		g.drawString("For true or false values, type a 1 for true, and a 0 for false.", x, 875);
-		g.drawString("Hover over a setting to get a more detailed description of it", x, 895);
+		g.drawString("Click a setting to type and change it.", x, listBottom + 70);
+		g.drawString("Press enter to apply changes.", x, listBottom + 90);
+		g.drawString("If all settings are valid, they will be changed and the text", x, listBottom + 110);
+		g.drawString("\"Settings changed successfully\" will be displayed.", x, listBottom + 130);
+		g.drawString("If any setting is invalid, then the text", x, listBottom + 150);
+		g.drawString("\"Invalid settings\" will be displayed.", x, listBottom + 170);
+		g.drawString("For true or false values, type a 1 for true, and a 0 for false.", x, listBottom + 190);
+		g.drawString("Hover over a setting to get a more detailed description of it", x, listBottom + 210);
 		
 		g.setFont(new Font(fontName, Font.BOLD, 30));
 		int outputState = getOutputState();
-		if(outputState == 1) g.drawString("Settings changed successfully", x, 685);
-		else if(outputState == 2) g.drawString("Invalid settings", x, 685);
+		if(outputState == 1) g.drawString("Settings changed successfully", x, listBottom + 35);
+		else if(outputState == 2) g.drawString("Invalid settings", x, listBottom + 35);
 	}
 	
 }
@@ -21,6 +21,11 @@ public abstract class Menu{
 	 */
 	private ArrayList<InputControl> inputControlled;
 	
+	/**
+	 * True if something drawn by this menu has changed since it was last drawn. Set by any thread, the window is only redrawn while this is true
+	 */
+	private volatile boolean dirty;
+	
 	public Menu(Main instance){
 		this.instance = instance;
 		resetMenu();
@@ -31,8 +36,35 @@ public abstract class Menu{
 	 */
 	public void resetMenu(){
 		removeAllComponents();
+		markDirty();
 	};
 	
+	/**
+	 * Mark this menu as needing to be drawn again. Call this whenever something this menu draws changes, other than from mouse or keyboard input,
+	 * which always marks the selected menu
+	 */
+	public void markDirty(){
+		dirty = true;
+	}
+	
+	/**
+	 * Determine if this menu needs to be drawn again
+	 * @return
+	 */
+	public boolean isDirty(){
+		return dirty;
+	}
+	
+	/**
+	 * Determine if this menu needs to be drawn again, and mark it as drawn
+	 * @return
+	 */
+	public boolean takeDirty(){
+		boolean d = dirty;
+		dirty = false;
+		return d;
+	}
+	
 	public void addComponent(MenuComponent m){
 		components.add(m);
 	}
@@ -29,8 +29,17 @@ public class MenuChangeSettings extends Menu{
 		settingsTyping = new SettingsTypingString(instance.getMainSettings(), 700, 70){
 			@Override
 			public void enter(){
+				//the settings are used while testing runners, so they can only change between generations
+				instance.runPaused(new Runnable(){
+					@Override
+					public void run(){
+						applySettings();
+						instance.getMainSim().nextGenReTest();
+					}
+				});
+			}
+			private void applySettings(){
 				super.enter();
-				instance.getMainSim().nextGenReTest();
 			}
 		};
 		settingsTyping.setOn(true);
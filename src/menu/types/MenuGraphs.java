@@ -7,6 +7,7 @@ import java.awt.Graphics;
 import menu.Main;
 import menu.component.graph.LineGraph;
 import menu.component.graph.LineGraphDetail;
+import sim.SimulationSnapshot;
 
 public class MenuGraphs extends Menu{
 	
@@ -49,8 +50,15 @@ public class MenuGraphs extends Menu{
 	@Override
 	public void tick(){
 		super.tick();
-		if(instance.getMainSim().getCurrentGen() + 1 != fitnessGraph.getCurrentSize()) fitnessGraph.updateGraphImage(instance.getMainSim().getFitnessData());
-		if(instance.getMainSim().getCurrentGen() + 1 != mutabilityGraph.getCurrentSize()) mutabilityGraph.updateGraphImage(instance.getMainSim().getMutabilityData());
+		SimulationSnapshot snapshot = instance.getEvolution().getSnapshot();
+		if(snapshot.getFitnessData().size() != fitnessGraph.getCurrentSize()){
+			fitnessGraph.updateGraphImage(snapshot.getFitnessData());
+			markDirty();
+		}
+		if(snapshot.getMutabilityData().size() != mutabilityGraph.getCurrentSize()){
+			mutabilityGraph.updateGraphImage(snapshot.getMutabilityData());
+			markDirty();
+		}
 	}
 	
 	@Override
@@ -112,11 +112,17 @@ public class MenuMain extends Menu{
 			@Override
 			public void press(MouseEvent e){
 				super.press(e);
-				try{
-					Scanner scan = new Scanner(new File("./data/settings.txt"));
-					instance.getMainSettings().load(scan);
-					scan.close();
-				}catch(FileNotFoundException e1){}
+				//the last simulation may still be finishing a generation with these settings
+				instance.runPaused(new Runnable(){
+					@Override
+					public void run(){
+						try{
+							Scanner scan = new Scanner(new File("./data/settings.txt"));
+							instance.getMainSettings().load(scan);
+							scan.close();
+						}catch(FileNotFoundException e1){}
+					}
+				});
 				resetMenu();
 				instance.setSelectedMenu(instance.getMainMenu());
 			}
@@ -137,7 +143,12 @@ public class MenuMain extends Menu{
 			@Override
 			public void press(MouseEvent e){
 				super.press(e);
-				instance.getMainSettings().loadDefaults();
+				instance.runPaused(new Runnable(){
+					@Override
+					public void run(){
+						instance.getMainSettings().loadDefaults();
+					}
+				});
 				resetMenu();
 				instance.setSelectedMenu(instance.getMainMenu());
 			}
@@ -11,19 +11,51 @@ import java.text.DecimalFormat;
 import data.SavesLoader;
 import data.Settings;
 import menu.Main;
+import menu.TimingStats;
 import menu.component.HorizontalScroller;
 import menu.component.MenuButton;
 import menu.input.InputControl;
 import menu.input.TypingStringInput;
-import sim.NeuralNet;
+import sim.EvolutionWorker;
 import sim.Runner;
+import sim.SimulationSnapshot;
 
 public class MenuRunStats extends Menu{
 	
 	public static final int GRID_X = 10;
 	public static final int GRID_Y = 90;
 	
-	private boolean loopingGens;
+	/**
+	 * The number of generations run when the next gen button is right clicked
+	 */
+	public static final int STEP_GENS = 10;
+	
+	/**
+	 * The snapshot of the simulation shown by this menu, replaced each tick by the newest snapshot from the evolution worker,
+	 * so everything drawn in one frame comes from the same generation
+	 */
+	private volatile SimulationSnapshot snapshot;
+	
+	/**
+	 * The state of the evolution worker shown after the current generation, updated each tick
+	 */
+	private String status;
+	/**
+	 * How the generation that was loaded got its fitness, shown after the status until a new generation is made, null if the simulation was not loaded
+	 */
+	private String loadStatus;
+	/**
+	 * The generation that was loaded
+	 */
+	private int loadedGen;
+	/**
+	 * The tick and frame timing of the program, updated once per second
+	 */
+	private String timing;
+	/**
+	 * The number of ticks until timing is updated again
+	 */
+	private int timingTimer;
 	
 	/**
 	 * The index in the runner array that is selected to view, this number is -1 if no runner is selected. 
@@ -51,8 +83,9 @@ public class MenuRunStats extends Menu{
 		super.resetMenu();
 		
 		selectedHistoryGen = 0;
+		loadStatus = null;
 		
-		loopingGens = false;
+		if(instance.getEvolution() != null) snapshot = instance.getEvolution().getSnapshot();
 		
 		addTabButtons(this, instance);
 		
@@ -69,25 +102,12 @@ public class MenuRunStats extends Menu{
 			public void press(MouseEvent e){
 				super.press(e);
 				if(selectedRunner >= -4 && selectedRunner != -1){
-					//ensure that no other runners have mouse controls the runner menu
-					for(int i = 0; i < instance.getMainSettings().getNumRunners(); i++){
-						NeuralNet n = instance.getMainSim().getRunner(i).getBrain();
-						n.eraseNetLines();
-					}
-					for(int i = 0; i < instance.getMainSim().getRunnerHistory().size(); i++){
-						for(int j = 0; j < 3; j++){
-							NeuralNet n = instance.getMainSim().getRunnerHistory().get(i)[j].getBrain();
-							n.eraseNetLines();
-						}
-					}
-					
 					instance.getRunnnerMenu().setTrack(instance.getMainSim().getTrack());
+					//watch a copy, so moving the runner around the track does not change the snapshot or the history
 					Runner r;
-					if(selectedRunner >= 0) r = instance.getMainSim().getRunner(selectedRunner);
-					else r = instance.getMainSim().getRunnerHistory().get(selectedHistoryGen)[-selectedRunner - 2];
-					r.getBrain().drawNetLines();
+					if(selectedRunner >= 0) r = snapshot.getRunner(selectedRunner);
+					else r = snapshot.getHistory(selectedHistoryGen)[-selectedRunner - 2].copy();
 					instance.watchRunner(r);
-					loopingGens = false;
 				}
 			}
 		};
@@ -107,23 +127,9 @@ public class MenuRunStats extends Menu{
 			@Override
 			public void press(MouseEvent e){
 			super.press(e);
-				//ensure that no other runners have mouse controls the runner menu
-				for(int i = 0; i < instance.getMainSettings().getNumRunners(); i++){
-					NeuralNet n = instance.getMainSim().getRunner(i).getBrain();
-					n.eraseNetLines();
-				}
-				for(int i = 0; i < instance.getMainSim().getRunnerHistory().size(); i++){
-					for(int j = 0; j < 3; j++){
-						NeuralNet n = instance.getMainSim().getRunnerHistory().get(i)[j].getBrain();
-						n.eraseNetLines();
-					}
-				}
-				
 				selectedRunner = 0;
 				instance.getRunnnerMenu().setTrack(instance.getMainSim().getTrack());
-				instance.watchRunners(instance.getMainSim().getRunners());
-				
-				loopingGens = false;
+				instance.watchRunners(snapshot.getRunners());
 			}
 		};
 		addComponent(viewAllRunnersB);
@@ -136,15 +142,16 @@ public class MenuRunStats extends Menu{
 				g.setColor(Color.BLACK);
 				g.setFont(new Font(instance.getMainSettings().getFontName(), Font.PLAIN, 20));
 				g.drawString("Next Gen", getX() + 10, getY() + 22);
+				g.setFont(new Font(instance.getMainSettings().getFontName(), Font.PLAIN, 10));
+				g.drawString("Right click: " + STEP_GENS, getX() + 95, getY() + 12);
 			}
 			
 			@Override
 			public void press(MouseEvent e){
 				super.press(e);
-				loopingGens = false;
-				instance.getMainSim().nextGeneration();
-				selectedHistoryGen = instance.getMainSim().getCurrentGen();
-				historySelector.setScrollPerc(1);
+				//the generations run on the evolution worker, the menu shows them as they finish
+				if(e.getButton() == MouseEvent.BUTTON3) instance.getEvolution().step(STEP_GENS);
+				else instance.getEvolution().step(1);
 			}
 		};
 		
@@ -161,10 +168,9 @@ public class MenuRunStats extends Menu{
 				public void render(Graphics g){
 					super.render(g);
 					try{
-						boolean bornNow = instance.getMainSim().getRunner(ii).getBirthGen() == instance.getMainSim().getCurrentGen();
-						boolean dieNext = false;
-						int[] die = instance.getMainSim().getRunnersToDie();
-						for(int i = 0; i < die.length && !dieNext; i++) if(die[i] == ii) dieNext = true;
+						SimulationSnapshot s = snapshot;
+						boolean bornNow = s.getBirthGen(ii) == s.getCurrentGen();
+						boolean dieNext = s.isToDie(ii);
 						if(bornNow){
 							g.setColor(new Color(0, 255, 0, 50));
 							g.fillRect(getX(), getY(), getWidth(), getHeight());
@@ -178,15 +184,15 @@ public class MenuRunStats extends Menu{
 							g.setColor(new Color(0, 0, 255, 80));
 							g.fillRect(getX() + 1, getY() + 1, getWidth() - 2, getHeight() - 2);
 							
-							instance.getMainSim().getRunner(ii).renderAdvancedInfo(g, 350, Settings.DEFAULT_SCREEN_HEIGHT - 108);
+							s.renderAdvancedInfo(ii, g, 350, Settings.DEFAULT_SCREEN_HEIGHT - 108);
 						}
 						g.setColor(Color.BLACK);
 						g.setFont(new Font(instance.getMainSettings().getFontName(), Font.PLAIN, 10));
 						DecimalFormat df = new DecimalFormat("#");
 						df.setMaximumFractionDigits(15);
-						g.drawString("Id: " + instance.getMainSim().getRunner(ii).getRunnerID(), getX() + 4, getY() + 13);
-						g.drawString("Fit: " + df.format(instance.getMainSim().getRunner(ii).getStoredFitness()), getX() + 4, getY() + 24);
-						g.drawString("Mut: " + df.format(instance.getMainSim().getRunner(ii).getMutability()), getX() + 4, getY() + 35);
+						g.drawString("Id: " + s.getRunnerID(ii), getX() + 4, getY() + 13);
+						g.drawString("Fit: " + df.format(s.getStoredFitness(ii)), getX() + 4, getY() + 24);
+						g.drawString("Mut: " + df.format(s.getMutability(ii)), getX() + 4, getY() + 35);
 					}catch(Exception e){}
 				}
 				@Override
@@ -208,19 +214,21 @@ public class MenuRunStats extends Menu{
 				@Override
 				public void render(Graphics g){
 					super.render(g);
+					//the history loads the generation from its file the first time it is shown, then keeps it in its cache
+					Runner r = snapshot.getHistory(selectedHistoryGen)[ii];
 					if(selectedRunner == -2 - ii){
 						g.setColor(new Color(0, 0, 255, 80));
 						g.fillRect(getX() + 1, getY() + 1, getWidth() - 2, getHeight() - 2);
 						
-						instance.getMainSim().getRunnerHistory().get(selectedHistoryGen)[ii].renderAdvancedInfo(g, 350, Settings.DEFAULT_SCREEN_HEIGHT - 108);
+						r.renderAdvancedInfo(g, 350, Settings.DEFAULT_SCREEN_HEIGHT - 108);
 					}
 					g.setColor(Color.BLACK);
 					g.setFont(new Font(instance.getMainSettings().getFontName(), Font.PLAIN, 10));
 					DecimalFormat df = new DecimalFormat("#");
 					df.setMaximumFractionDigits(15);
-					g.drawString("Id: " + instance.getMainSim().getRunnerHistory().get(selectedHistoryGen)[ii].getRunnerID(), getX() + 4, getY() + 13);
-					g.drawString("Fit: " + df.format(instance.getMainSim().getRunnerHistory().get(selectedHistoryGen)[ii].getStoredFitness()), getX() + 4, getY() + 24);
-					g.drawString("Mut: " + df.format(instance.getMainSim().getRunnerHistory().get(selectedHistoryGen)[ii].getMutability()), getX() + 4, getY() + 35);
+					g.drawString("Id: " + r.getRunnerID(), getX() + 4, getY() + 13);
+					g.drawString("Fit: " + df.format(r.getStoredFitness()), getX() + 4, getY() + 24);
+					g.drawString("Mut: " + df.format(r.getMutability()), getX() + 4, getY() + 35);
 					g.setFont(new Font(instance.getMainSettings().getFontName(), Font.PLAIN, 15));
 					if(ii == 0) g.drawString("Worst", getX(), getY() - 2);
 					else if(ii == 1) g.drawString("Median", getX(), getY() - 2);
@@ -243,12 +251,12 @@ public class MenuRunStats extends Menu{
 			@Override
 			public void pressLeftButton(){
 				selectedHistoryGen = Math.max(0, selectedHistoryGen - 1);
-				setPerc((double)selectedHistoryGen / instance.getMainSim().getCurrentGen(), false);
+				setPerc((double)selectedHistoryGen / snapshot.getCurrentGen(), false);
 			}
 			@Override
 			public void pressRightButton(){
-				selectedHistoryGen = Math.min(selectedHistoryGen + 1, instance.getMainSim().getCurrentGen());
-				setPerc((double)selectedHistoryGen / instance.getMainSim().getCurrentGen(), false);
+				selectedHistoryGen = Math.min(selectedHistoryGen + 1, snapshot.getCurrentGen());
+				setPerc((double)selectedHistoryGen / snapshot.getCurrentGen(), false);
 			}
 			@Override
 			public void setScrollPerc(double perc){
@@ -256,23 +264,25 @@ public class MenuRunStats extends Menu{
 			}
 			private void setPerc(double perc, boolean update){
 				super.setScrollPerc(perc);
-				if(update) selectedHistoryGen = (int)Math.round(instance.getMainSim().getCurrentGen() * scrollPerc);
+				if(update) selectedHistoryGen = (int)Math.round(snapshot.getCurrentGen() * scrollPerc);
 			}
 		};
 		addComponent(historySelector);
 		addControled(historySelector);
 		
-		//click this button to loop gens
+		//click this button to loop gens, pause them, or resume them, right click anywhere to stop
 		MenuButton loopGensButton = new MenuButton(165, Settings.DEFAULT_SCREEN_HEIGHT - 70, 150, 60){
 			@Override
 			public void render(Graphics g){
 				super.render(g);
+				EvolutionWorker evolution = instance.getEvolution();
 				g.setColor(Color.BLACK);
 				g.setFont(new Font(instance.getMainSettings().getFontName(), Font.PLAIN, 20));
-				if(!loopingGens) g.drawString("Loops Gens", getX() + 10, getY() + 22);
+				if(evolution.getRemaining() == 0) g.drawString("Loops Gens", getX() + 10, getY() + 22);
 				else{
-					g.drawString("Right click to", getX() + 10, getY() + 22);
-					g.drawString("stop looping", getX() + 10, getY() + 44);
+					g.drawString(evolution.isPaused() ? "Resume" : "Pause", getX() + 10, getY() + 22);
+					g.setFont(new Font(instance.getMainSettings().getFontName(), Font.PLAIN, 15));
+					g.drawString("Right click to stop", getX() + 10, getY() + 44);
 				}
 			}
 			
@@ -280,7 +290,10 @@ public class MenuRunStats extends Menu{
 			public void press(MouseEvent e){
 				super.press(e);
 				if(e.getButton() == MouseEvent.BUTTON1){
-					loopingGens = true;
+					EvolutionWorker evolution = instance.getEvolution();
+					if(evolution.getRemaining() == 0) evolution.loop();
+					else if(evolution.isPaused()) evolution.resume();
+					else evolution.pause();
 				}
 			}
 		};
@@ -312,7 +325,7 @@ public class MenuRunStats extends Menu{
 					@Override
 					public void mousePressed(MouseEvent e){
 						super.mousePressed(e);
-						if(e.getButton() == MouseEvent.BUTTON3) loopingGens = false;
+						if(e.getButton() == MouseEvent.BUTTON3 && instance.getEvolution().isLooping()) instance.getEvolution().cancel();
 					}
 				};
 			}
@@ -325,11 +338,70 @@ public class MenuRunStats extends Menu{
 	@Override
 	public void tick(){
 		super.tick();
-		if(loopingGens){
-			instance.getMainSim().nextGeneration();
-			selectedHistoryGen = instance.getMainSim().getCurrentGen();
-			historySelector.setScrollPerc(1);
+		//show the newest generation once it is published
+		SimulationSnapshot newest = instance.getEvolution().getSnapshot();
+		if(newest != snapshot){
+			boolean newGen = snapshot == null || newest.getCurrentGen() != snapshot.getCurrentGen();
+			snapshot = newest;
+			if(newGen){
+				selectedHistoryGen = snapshot.getCurrentGen();
+				historySelector.setScrollPerc(1);
+			}
+			markDirty();
+		}
+		
+		String newStatus = getStatus();
+		if(!newStatus.equals(status)){
+			status = newStatus;
+			markDirty();
 		}
+		
+		//the timing changes with every frame, so only update it once per second, or drawing it would keep the menu dirty
+		timingTimer--;
+		if(timingTimer <= 0){
+			timingTimer = Main.TICKS_PER_SECOND;
+			String newTiming = getTiming();
+			if(!newTiming.equals(timing)){
+				timing = newTiming;
+				markDirty();
+			}
+		}
+	}
+	
+	/**
+	 * Show how the generation that was just loaded got its fitness, until a new generation is made. Call after resetMenu
+	 * @param storedFitness true if the loaded generation used the fitness stored in the save, false if every runner was tested again
+	 */
+	public void showLoaded(boolean storedFitness){
+		loadStatus = storedFitness ? "   (loaded, stored fitness)" : "   (loaded, tested again)";
+		loadedGen = snapshot.getCurrentGen();
+		status = null;
+		markDirty();
+	}
+	
+	/**
+	 * Get the text describing what the evolution worker is doing
+	 * @return
+	 */
+	private String getStatus(){
+		EvolutionWorker evolution = instance.getEvolution();
+		if(evolution.isPaused()) return "   (paused)";
+		else if(evolution.isLooping()) return "   (looping)";
+		else if(evolution.isRunning()) return "   (" + Math.max(1, evolution.getRemaining()) + " to go)";
+		else if(loadStatus != null && snapshot.getCurrentGen() == loadedGen) return loadStatus;
+		return "";
+	}
+	
+	/**
+	 * Get the text describing how fast the program is ticking and drawing
+	 * @return
+	 */
+	private String getTiming(){
+		TimingStats ticks = instance.getTickStats();
+		TimingStats frames = instance.getFrameStats();
+		DecimalFormat format = new DecimalFormat("0.0");
+		return "Ticks: " + ticks.getRate() + "/s (" + format.format(ticks.getAverageMillis()) + " ms, " + format.format(ticks.getMaxLateMillis()) + " ms late)" +
+			   "   Frames: " + frames.getRate() + "/s (" + format.format(frames.getAverageMillis()) + " ms)";
 	}
 	
 	@Override
@@ -339,10 +411,12 @@ public class MenuRunStats extends Menu{
 		super.render(g);
 		g.setColor(Color.BLACK);
 		g.setFont(new Font(instance.getMainSettings().getFontName(), Font.PLAIN, 20));
-		g.drawString("Current Gen: " + instance.getMainSim().getCurrentGen(), 10, Settings.DEFAULT_SCREEN_HEIGHT - 10);
+		if(status == null) status = getStatus();
+		g.drawString("Current Gen: " + snapshot.getCurrentGen() + status, 10, Settings.DEFAULT_SCREEN_HEIGHT - 10);
 		g.setFont(new Font(instance.getMainSettings().getFontName(), Font.PLAIN, 15));
 		g.drawString("History for gen " + selectedHistoryGen, Settings.DEFAULT_SCREEN_WIDTH - 220, Settings.DEFAULT_SCREEN_HEIGHT - 80);
 		g.drawString("Click a runner, then the \"View Runner\" button to  watch the runner", 600, Settings.DEFAULT_SCREEN_HEIGHT - 80);
+		if(timing != null) g.drawString(timing, 600, Settings.DEFAULT_SCREEN_HEIGHT - 60);
 	}
 	
 	/**
@@ -486,6 +560,8 @@ public class MenuRunStats extends Menu{
 			@Override
 			public void press(MouseEvent e){
 				super.press(e);
+				//leaving the simulation stops its evolution
+				if(instance.getEvolution() != null) instance.getEvolution().cancel();
 				SavesLoader.scanFiles();
 				instance.getMainMenu().resetMenu();
 				instance.setSelectedMenu(instance.getMainMenu());
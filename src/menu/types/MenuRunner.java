@@ -4,6 +4,7 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.Font;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -15,7 +16,7 @@ import data.Settings;
 import menu.Main;
 import menu.component.MenuButton;
 import menu.input.InputControl;
-import sim.NeuralNet;
+import sim.NeuralNetDisplay;
 import sim.Runner;
 import sim.Track;
 
@@ -25,6 +26,10 @@ public class MenuRunner extends Menu{
 	 * The runner to display and update in this menu
 	 */
 	private Runner currentRunner;
+	/**
+	 * The display of the brain of currentRunner
+	 */
+	private NeuralNetDisplay brainDisplay;
 	/**
 	 * The runners to display and update in this menu
 	 */
@@ -336,6 +341,7 @@ public class MenuRunner extends Menu{
 		useOneRunner = true;
 		
 		currentRunner = r;
+		brainDisplay = new NeuralNetDisplay(instance.getMainSettings(), r.getBrain());
 		
 		resetMenu();
 		neuralNetDetection = new InputControl(){
@@ -360,32 +366,33 @@ public class MenuRunner extends Menu{
 					public void mouseClicked(MouseEvent e){
 						super.mouseClicked(e);
 						if(on(e)){
-							currentRunner.getBrain().setDisplayAllLines(!currentRunner.getBrain().getDisplayAllLines());
-							currentRunner.getBrain().drawNetLines(e.getX(), e.getY()); 
+							brainDisplay.setDisplayAllLines(!brainDisplay.getDisplayAllLines());
+							brainDisplay.updateMouse(e.getX(), e.getY());
 						}
 					}
 					@Override
 					public void mouseMoved(MouseEvent e){
 						super.mouseMoved(e);
-						if(on(e)) currentRunner.getBrain().drawNetLines(e.getX(), e.getY()); 
+						if(on(e)) brainDisplay.updateMouse(e.getX(), e.getY());
 					}
 					@Override
 					public void mouseDragged(MouseEvent e){
 						super.mouseDragged(e);
-						if(on(e)) currentRunner.getBrain().drawNetLines(e.getX(), e.getY()); 
+						if(on(e)) brainDisplay.updateMouse(e.getX(), e.getY());
 					}
 				};
 			}
 			public boolean on(MouseEvent e){
+				//the net is not drawn when watching many runners
+				if(!useOneRunner) return false;
 				return new Rectangle(
-						currentRunner.getBrain().getDisplayDrawPoint().x,
-						currentRunner.getBrain().getDisplayDrawPoint().y, currentRunner.getBrain().getNetLines().getWidth(),
-						currentRunner.getBrain().getNetLines().getHeight()).contains(e.getX(), e.getY());
+						brainDisplay.getDisplayDrawPoint().x,
+						brainDisplay.getDisplayDrawPoint().y, brainDisplay.getWidth(),
+						brainDisplay.getHeight()).contains(e.getX(), e.getY());
 			}
 		};
 		neuralNetDetection.createControl();
 		addControled(neuralNetDetection);
-		currentRunner.getBrain().drawNetLines();
 		
 		zoomPos = new Point2D.Double(Settings.DEFAULT_SCREEN_WIDTH / 2, Settings.DEFAULT_SCREEN_HEIGHT / 2);
 		cameraScale = 0;
@@ -399,7 +406,7 @@ public class MenuRunner extends Menu{
 		
 		loadedTrack.drawImage();
 		loadedTrack.enterRunner(currentRunner);
-		currentRunner.getBrain().setDisplayAllLines(true);
+		brainDisplay.setDisplayAllLines(true);
 		
 		cameraPos = currentRunner.getPos();
 		alignCamera();
@@ -423,10 +430,7 @@ public class MenuRunner extends Menu{
 		
 		focusOnRunner = false;
 
-		for(Runner rr : r){
-			loadedTrack.enterRunner(rr);
-			rr.getBrain().eraseNetLines();
-		}
+		for(Runner rr : r) loadedTrack.enterRunner(rr);
 		
 		useOneRunner = false;
 	}
@@ -466,6 +470,7 @@ public class MenuRunner extends Menu{
 	 * This is the code that ticks the simulation outside of the menu ticks
 	 */
 	private void update(){
+		markDirty();
 		timer++;
 		if(currentRunner != null){
 			
@@ -491,26 +496,16 @@ public class MenuRunner extends Menu{
 	public void render(Graphics g){
 		double scale = getScale();
 		
-		BufferedImage trackImg;
-
-		if(useOneRunner) trackImg = loadedTrack.getTrackImageWithRunner(currentRunner);
-		else trackImg = loadedTrack.getTrackImageWithRunners(currentRunnerSet);
-		
-		int imgW = trackImg.getWidth();
-		int imgH = trackImg.getHeight();
-		
-		g.drawImage(trackImg,
-				(int)Math.round(cameraPos.x),
-				(int)Math.round(cameraPos.y),
-				(int)Math.round(imgW * scale),
-				(int)Math.round(imgH * scale), null);
+		//draws only the part of the track on screen, and the runners straight to the screen
+		if(useOneRunner) loadedTrack.render((Graphics2D)g, currentRunner == null ? null : new Runner[]{currentRunner}, true, cameraPos.x, cameraPos.y, scale);
+		else loadedTrack.render((Graphics2D)g, currentRunnerSet, false, cameraPos.x, cameraPos.y, scale);
 		
 		if(currentRunner != null && useOneRunner){
-			BufferedImage img = currentRunner.getBrain().getDisplay();
+			BufferedImage img = brainDisplay.getDisplay();
 			g.setColor(Color.WHITE);
 			int x = instance.getMainSettings().getNodeDispBaseX();
 			int y = instance.getMainSettings().getNodeDispBaseY();
-			currentRunner.getBrain().setDisplayDrawPoint(x, y);
+			brainDisplay.setDisplayDrawPoint(x, y);
 			g.fillRect(x, y, img.getWidth(), img.getHeight());
 			g.drawImage(img, x, y, null);
 			
@@ -519,7 +514,7 @@ public class MenuRunner extends Menu{
 			g.setColor(Color.BLACK);
 			g.setFont(new Font(instance.getMainSettings().getFontName(), Font.PLAIN, 20));
 			int i;
-			double height = (img.getHeight() - NeuralNet.NET_LOC + instance.getMainSettings().getNodeDispRadius() * 2) / 11.0;
+			double height = (img.getHeight() - NeuralNetDisplay.NET_LOC + instance.getMainSettings().getNodeDispRadius() * 2) / 11.0;
 			for(i = 0; i < 8; i++) g.drawString("Vision: " + (i + 1), x + 2, y + 10 + (int)Math.round(i * height));
 			g.drawString("Speed", x + 2, y + 10 + (int)Math.round(i * height));
 			g.drawString("Angle", x + 2, y + 10 + (int)Math.round((i + 1) * height));
@@ -573,8 +568,8 @@ public class MenuRunner extends Menu{
 	 * Ensures that the camera does not go too far from view of the track
 	 */
 	private void keepCameraInBounds(){
-		double w = loadedTrack.getTrackImage().getWidth() * getScale();
-		double h = loadedTrack.getTrackImage().getHeight() * getScale();
+		double w = loadedTrack.getImageWidth() * getScale();
+		double h = loadedTrack.getImageHeight() * getScale();
 		cameraPos.x = Math.max(-w + Settings.DEFAULT_SCREEN_WIDTH * .1, cameraPos.x);
 		cameraPos.x = Math.min(Settings.DEFAULT_SCREEN_WIDTH * .9, cameraPos.x);
 		cameraPos.y = Math.max(-h + Settings.DEFAULT_SCREEN_HEIGHT * .1, cameraPos.y);
@@ -3,8 +3,8 @@ package menu.types;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.event.MouseEvent;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.Scanner;
 
@@ -56,13 +56,19 @@ public class MenuTrackSelect extends Menu{
 			public void press(MouseEvent e){
 				super.press(e);
 				if(selectedTrackIndex >= 0){
-					try{
-						Scanner scan = new Scanner(new File("./data/tracks/" + SavesLoader.getTrackNames()[selectedTrackIndex]));
-						selectedTrack.load(scan);
-						selectedTrack.drawImageStartPoint();
-						scan.close();
-						instance.getMainSim().nextGenReTest();
-					}catch(Exception e1){}
+					//the track is used while testing runners, so it can only change between generations
+					instance.runPaused(new Runnable(){
+						@Override
+						public void run(){
+							try{
+								Scanner scan = new Scanner(new File("./data/tracks/" + SavesLoader.getTrackNames()[selectedTrackIndex]));
+								selectedTrack.load(scan);
+								selectedTrack.drawImageStartPoint();
+								scan.close();
+								instance.getMainSim().nextGenReTest();
+							}catch(Exception e1){}
+						}
+					});
 				}
 			}
 		};
@@ -116,8 +122,8 @@ public class MenuTrackSelect extends Menu{
 		g.drawString("Note: selecting a track here will make the selected track be used", 10, 80);
 		g.drawString("for tesing in future generations unless the track is changed again", 10, 97);
 		
-		//get the image
-		BufferedImage img = instance.getMainSim().getTrack().getTrackImage();
+		//get the track
+		Track track = instance.getMainSim().getTrack();
 		
 		//variables for the width and height of the image
 		double outlineStroke = 8;
@@ -132,7 +138,7 @@ public class MenuTrackSelect extends Menu{
 				   (int)Math.round(maxW + outlineStroke * 2), (int)Math.round(maxH + outlineStroke * 2));
 		
 		//find the ratio of the width and height to draw the preview image at, then the new height and width
-		double iRatio = (double)img.getWidth() / img.getHeight();
+		double iRatio = (double)track.getImageWidth() / track.getImageHeight();
 		
 		double imgW;
 		double imgH;
@@ -148,8 +154,7 @@ public class MenuTrackSelect extends Menu{
 			imgH = maxH;
 		}
 		
-		//draw the image
-		g.drawImage(img, (int)Math.round(drawX + Math.abs(maxW - imgW) / 2), (int)Math.round(drawY + Math.abs(maxH - imgH) / 2),
-						 (int)Math.round(imgW), (int)Math.round(imgH), null);
+		//draw the image, from the smaller tiles when the track is shrunk to fit
+		track.render((Graphics2D)g, null, false, drawX + Math.abs(maxW - imgW) / 2, drawY + Math.abs(maxH - imgH) / 2, imgW / track.getImageWidth());
 	}
 }
@@ -13,7 +13,6 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.PrintWriter;
 
@@ -524,8 +523,8 @@ public class TrackEditor extends Menu{
 		editedTrack.setStartingPoint(new Point2D.Double(p.x + editedTrack.getXOffset(), p.y + editedTrack.getYOffset()));
 		editedTrack.drawImage();
 		cameraPos = new Point2D.Double(
-				-editedTrack.getTrackImage().getWidth() * .5,
-				-editedTrack.getTrackImage().getHeight() * .5);
+				-editedTrack.getImageWidth() * .5,
+				-editedTrack.getImageHeight() * .5);
 	}
 	
 	@Override
@@ -533,13 +532,9 @@ public class TrackEditor extends Menu{
 		double x = cameraPos.x + editedTrack.getXOffset();
 		double y = cameraPos.y + editedTrack.getYOffset();
 		
-		//draw track
-		BufferedImage img = editedTrack.getTrackImage();
+		//draw track, only the tiles on screen
 		double s = getScale();
-		g.drawImage(img, (int)Math.round(x),
-						 (int)Math.round(y),
-						 (int)Math.round(img.getWidth() * s),
-						 (int)Math.round(img.getHeight() * s), null);
+		editedTrack.render((Graphics2D)g, null, false, x, y, s);
 		
 		//draw runner position
 		g.setColor(Color.BLACK);
@@ -643,8 +638,8 @@ public class TrackEditor extends Menu{
 	 * keeps the camera in range of the screen
 	 */
 	public void keepInRange(){
-		double w = editedTrack.getTrackImage().getWidth() * getScale();
-		double h = editedTrack.getTrackImage().getHeight() * getScale();
+		double w = editedTrack.getImageWidth() * getScale();
+		double h = editedTrack.getImageHeight() * getScale();
 		cameraPos.x = Math.max(-w * .9 - editedTrack.getXOffset(), cameraPos.x);
 		cameraPos.x = Math.min(Settings.DEFAULT_SCREEN_WIDTH - w * .1 - editedTrack.getXOffset(), cameraPos.x);
 		cameraPos.y = Math.max(-h * .9 - editedTrack.getYOffset(), cameraPos.y);
@@ -0,0 +1,161 @@
+package sim;
+
+/**
+ * The different ways the activation function of a NeuralNet can be calculated.
+ * Every mode calculates the same scaled logistic function, (1 / (1 + e^-x) - .5) * 2, which goes from -1 to 1 and is equal to tanh(x / 2).
+ * The modes other than EXACT trade a small amount of accuracy for speed, so runners will not get exactly the same fitness in every mode
+ */
+public class Activation{
+	
+	/**
+	 * The original calculation, using Math.pow(Math.E, -x)
+	 */
+	public static final int EXACT = 0;
+	/**
+	 * The same calculation using Math.exp(-x), within 2 ulps of EXACT, so the largest difference is about 4.5e-16
+	 */
+	public static final int EXP = 1;
+	/**
+	 * Linear interpolation between precalculated values, the largest difference from EXACT is TABLE_MAX_ERROR
+	 */
+	public static final int TABLE = 2;
+	/**
+	 * A rational function approximation of tanh, the largest difference from EXACT is RATIONAL_MAX_ERROR
+	 */
+	public static final int RATIONAL = 3;
+	
+	/**
+	 * The largest difference between TABLE and EXACT for any input. Interpolating a function with a step size of h has an error of at most
+	 * h^2 / 8 times the largest second derivative, which is about 0.1925 for this function, and 1/64^2 / 8 * 0.1925 = 5.9e-6.
+	 * Outside of the table the value of the end of the table is used, which is off by at most 2.3e-7
+	 */
+	public static final double TABLE_MAX_ERROR = 5.9e-6;
+	/**
+	 * The largest difference between RATIONAL and EXACT for any input, the error is largest just before the approximation reaches 1
+	 */
+	public static final double RATIONAL_MAX_ERROR = 9.7e-5;
+	
+	/**
+	 * The table is made for inputs from -TABLE_RANGE to TABLE_RANGE
+	 */
+	public static final int TABLE_RANGE = 16;
+	/**
+	 * The number of table entries for each unit of input
+	 */
+	public static final int TABLE_STEPS = 64;
+	/**
+	 * The values of the function at each step from -TABLE_RANGE to TABLE_RANGE
+	 */
+	private static final double[] VALUES = new double[TABLE_RANGE * 2 * TABLE_STEPS + 1];
+	static{
+		for(int i = 0; i < VALUES.length; i++) VALUES[i] = exact((double)i / TABLE_STEPS - TABLE_RANGE);
+	}
+	
+	/**
+	 * The input, divided by 2, where the rational approximation reaches 1 and stops being accurate
+	 */
+	private static final double RATIONAL_LIMIT = 4.97;
+	
+	/**
+	 * Get the name of the given mode
+	 * @param mode
+	 * @return
+	 */
+	public static String getName(int mode){
+		switch(mode){
+			case EXACT: return "Exact";
+			case EXP: return "Math.exp";
+			case TABLE: return "Table";
+			case RATIONAL: return "Rational";
+			default: return "Unknown";
+		}
+	}
+	
+	/**
+	 * Calculate the activation function of x with the given mode, any mode that does not exist uses EXACT
+	 * @param mode
+	 * @param x
+	 * @return
+	 */
+	public static double apply(int mode, double x){
+		switch(mode){
+			case EXP: return exp(x);
+			case TABLE: return table(x);
+			case RATIONAL: return rational(x);
+			default: return exact(x);
+		}
+	}
+	
+	/**
+	 * Replace each value in the given array, from index start, inclusive, to index end, exclusive, with the activation function of that value.
+	 * The mode is only checked once, so each mode is a simple loop
+	 * @param mode
+	 * @param values
+	 * @param start
+	 * @param end
+	 */
+	public static void applyAll(int mode, double[] values, int start, int end){
+		switch(mode){
+			case EXP:
+				for(int i = start; i < end; i++) values[i] = exp(values[i]);
+				break;
+			case TABLE:
+				for(int i = start; i < end; i++) values[i] = table(values[i]);
+				break;
+			case RATIONAL:
+				for(int i = start; i < end; i++) values[i] = rational(values[i]);
+				break;
+			default:
+				for(int i = start; i < end; i++) values[i] = exact(values[i]);
+				break;
+		}
+	}
+	
+	/**
+	 * Return a number between -1 and 1, calculated the same way the simulation always has
+	 * @param x
+	 * @return
+	 */
+	public static double exact(double x){
+		return (1.0 / (1.0 + Math.pow(Math.E, -x)) - .5) * 2;
+	}
+	
+	/**
+	 * Return a number between -1 and 1, using Math.exp rather than Math.pow
+	 * @param x
+	 * @return
+	 */
+	public static double exp(double x){
+		return (1.0 / (1.0 + Math.exp(-x)) - .5) * 2;
+	}
+	
+	/**
+	 * Return a number between -1 and 1, interpolated from the table
+	 * @param x
+	 * @return
+	 */
+	public static double table(double x){
+		if(x >= TABLE_RANGE) return VALUES[VALUES.length - 1];
+		if(x <= -TABLE_RANGE) return VALUES[0];
+		double pos = (x + TABLE_RANGE) * TABLE_STEPS;
+		int i = (int)pos;
+		//inputs just under TABLE_RANGE can round up to the last entry
+		if(i >= VALUES.length - 1) i = VALUES.length - 2;
+		double t = pos - i;
+		return VALUES[i] + (VALUES[i + 1] - VALUES[i]) * t;
+	}
+	
+	/**
+	 * Return a number between -1 and 1, using the 7th order continued fraction approximation of tanh(x / 2)
+	 * @param x
+	 * @return
+	 */
+	public static double rational(double x){
+		double y = x * .5;
+		if(y >= RATIONAL_LIMIT) return 1;
+		if(y <= -RATIONAL_LIMIT) return -1;
+		double y2 = y * y;
+		return y * (135135 + y2 * (17325 + y2 * (378 + y2))) / (135135 + y2 * (62370 + y2 * (3150 + y2 * 28)));
+	}
+	
+}
@@ -0,0 +1,171 @@
+package sim;
+
+/**
+ * The weights and node values of many neural nets with the same shape, stacked together so that all of them can be calculated at once.
+ * Each brain in the batch has a slot. For every weight and node, the values of every slot are stored next to each other,
+ * so calculating a layer is a few long loops over contiguous arrays, rather than many short loops over separate objects.
+ * Every slot adds up its totals in exactly the same order as NeuralNet.calculateOutputs, so the outputs are exactly the same
+ */
+public class BrainBatch{
+	
+	/**
+	 * The number of slots that are calculated together before moving on to the next group of slots.
+	 * Small enough that the node values of a group stay in the cache while every weight of a layer is applied
+	 */
+	public static final int BLOCK_SIZE = 256;
+	
+	/**
+	 * The number of nodes in each layer, including the constant nodes
+	 */
+	private int[] sizes;
+	
+	/**
+	 * The weights of every slot. weights[layer index][(j * number of nodes in the next layer + h) * capacity + slot]
+	 * is the weight between node j in that layer and node h in the next layer
+	 */
+	private double[][] weights;
+	
+	/**
+	 * The node values of every slot. values[layer index][j * capacity + slot] is the value of node j in that layer
+	 */
+	private double[][] values;
+	
+	/**
+	 * The number of slots
+	 */
+	private int capacity;
+	
+	/**
+	 * The way the activation function is calculated, one of the modes in Activation
+	 */
+	private int activationMode;
+	
+	/**
+	 * Create a batch holding the given brains, brain i is put in slot i. Every brain must have the same shape
+	 * @param brains
+	 * @param activationMode the way the activation function is calculated, one of the modes in Activation
+	 */
+	public BrainBatch(NeuralNet[] brains, int activationMode){
+		capacity = brains.length;
+		this.activationMode = activationMode;
+		
+		int[] s = brains[0].getSizes();
+		sizes = new int[s.length];
+		for(int i = 0; i < s.length; i++){
+			//every layer except the output layer has a constant node
+			if(i < s.length - 1) sizes[i] = s[i] + 1;
+			else sizes[i] = s[i];
+		}
+		
+		values = new double[sizes.length][0];
+		for(int i = 0; i < values.length; i++) values[i] = new double[sizes[i] * capacity];
+		
+		weights = new double[sizes.length - 1][0];
+		for(int i = 0; i < weights.length; i++){
+			int out = sizes[i + 1];
+			weights[i] = new double[sizes[i] * out * capacity];
+			for(int b = 0; b < capacity; b++){
+				for(int j = 0; j < sizes[i]; j++){
+					for(int h = 0; h < out; h++) weights[i][(j * out + h) * capacity + b] = brains[b].getWeight(i, j, h);
+				}
+			}
+		}
+		
+		//the constant node of the input layer is always 1
+		int constant = (sizes[0] - 1) * capacity;
+		for(int b = 0; b < capacity; b++) values[0][constant + b] = 1;
+	}
+	
+	/**
+	 * Determine if all of the given brains can be put in one batch
+	 * @param brains
+	 * @return true if there is at least one brain and every brain has the same shape
+	 */
+	public static boolean canBatch(NeuralNet[] brains){
+		if(brains.length == 0) return false;
+		int[] s = brains[0].getSizes();
+		for(NeuralNet n : brains){
+			int[] ns = n.getSizes();
+			if(ns.length != s.length) return false;
+			for(int i = 0; i < s.length; i++) if(ns[i] != s[i]) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Set the inputs of the brain in the given slot, inputs must be the same size as the input layer, excluding the constant node
+	 * @param slot
+	 * @param inputs
+	 */
+	public void setInputs(int slot, double[] inputs){
+		double[] in = values[0];
+		for(int j = 0; j < inputs.length; j++) in[j * capacity + slot] = inputs[j];
+	}
+	
+	/**
+	 * Calculate the outputs of the brains in the first numSlots slots
+	 * @param numSlots
+	 */
+	public void calculateOutputs(int numSlots){
+		for(int start = 0; start < numSlots; start += BLOCK_SIZE){
+			int end = Math.min(start + BLOCK_SIZE, numSlots);
+			for(int i = 1; i < sizes.length; i++) calculateLayer(i, start, end);
+		}
+	}
+	
+	/**
+	 * Calculate the node values of the given layer, for the slots from start, inclusive, to end, exclusive
+	 * @param layer
+	 * @param start
+	 * @param end
+	 */
+	private void calculateLayer(int layer, int start, int end){
+		double[] in = values[layer - 1];
+		double[] out = values[layer];
+		double[] w = weights[layer - 1];
+		int numIn = sizes[layer - 1];
+		int numOut = sizes[layer];
+		
+		for(int h = 0; h < numOut; h++){
+			int row = h * capacity;
+			for(int b = start; b < end; b++) out[row + b] = 0;
+		}
+		
+		//add each input node in order, the same order as a single neural net uses
+		for(int j = 0; j < numIn; j++){
+			int inRow = j * capacity;
+			for(int h = 0; h < numOut; h++){
+				int wRow = (j * numOut + h) * capacity;
+				int outRow = h * capacity;
+				for(int b = start; b < end; b++) out[outRow + b] += w[wRow + b] * in[inRow + b];
+			}
+		}
+		
+		for(int h = 0; h < numOut; h++) Activation.applyAll(activationMode, out, h * capacity + start, h * capacity + end);
+	}
+	
+	/**
+	 * Get the value of the given output node of the brain in the given slot
+	 * @param slot
+	 * @param node
+	 * @return
+	 */
+	public double getOutput(int slot, int node){
+		return values[values.length - 1][node * capacity + slot];
+	}
+	
+	/**
+	 * Move the brain in slot from to slot to, replacing the brain that was in slot to
+	 * @param from
+	 * @param to
+	 */
+	public void moveBrain(int from, int to){
+		for(double[] w : weights){
+			for(int k = 0; k < w.length; k += capacity) w[k + to] = w[k + from];
+		}
+		for(double[] v : values){
+			for(int k = 0; k < v.length; k += capacity) v[k + to] = v[k + from];
+		}
+	}
+	
+}
@@ -0,0 +1,523 @@
+package sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import data.Settings;
+
+/**
+ * A binary save file, split into sections which can each be read on their own.
+ * The file starts with a header: MAGIC, the VERSION the file was written with, and the number of sections.
+ * After the header is the section table, holding the id, the offset from the start of the file, and the length in bytes of each section,
+ * then the data of each section. All numbers are big endian.
+ * Files are written and read through a FileChannel, so a single section can be read without reading the rest of the file,
+ * and sections held in other files, like the runner history, are copied into the checkpoint without being loaded into memory
+ */
+public class Checkpoint{
+	
+	/**
+	 * The first 8 bytes of every checkpoint file, the characters EVOSIMCK
+	 */
+	public static final long MAGIC = 0x45564F53494D434BL;
+	/**
+	 * The version of the format written by this class. Versions up to this one can be read, newer versions cannot.
+	 * Version 1 stored the runner history as rows of runners, version 2 stores it in the format of RunnerHistory
+	 */
+	public static final int VERSION = 2;
+	/**
+	 * The file extension used for checkpoint files
+	 */
+	public static final String EXTENSION = ".ckpt";
+	
+	/**
+	 * The id of the section holding the settings, in the same text format as settings.txt
+	 */
+	public static final int SETTINGS = 1;
+	/**
+	 * The id of the section holding the track, see Track.save(ByteBuffer)
+	 */
+	public static final int TRACK = 2;
+	/**
+	 * The id of the section holding the generation, the next runner ID, the fitness data, and the mutability data
+	 */
+	public static final int STATS = 3;
+	/**
+	 * The id of the section holding the runner history, see RunnerHistory
+	 */
+	public static final int HISTORY = 4;
+	/**
+	 * The id of the section holding the current runners and the runners to die
+	 */
+	public static final int POPULATION = 5;
+	/**
+	 * The id of the section holding the fingerprint of the settings and track the runners were tested with, see Fingerprint.
+	 * Checkpoints without this section still load, but every runner is tested again
+	 */
+	public static final int EVALUATION = 6;
+	/**
+	 * The id of the section holding the seed and state of the random numbers of the simulation, then the state of the random numbers of each runner, see RandomStream.
+	 * Checkpoints without this section still load, but continue with new random numbers
+	 */
+	public static final int RANDOM = 7;
+	
+	/**
+	 * The most runners in each chunk of runners, each chunk is saved and loaded on its own thread
+	 */
+	public static final int CHUNK_SIZE = 4096;
+	
+	/**
+	 * The number of bytes before the section table
+	 */
+	private static final int HEADER_SIZE = 8 + 4 + 4;
+	/**
+	 * The number of bytes of each entry in the section table
+	 */
+	private static final int ENTRY_SIZE = 4 + 8 + 8;
+	
+	/**
+	 * The data of each section, by section id, in the order they are written
+	 */
+	private LinkedHashMap<Integer, Section> sections;
+	/**
+	 * The version of the format this checkpoint was read from, or VERSION if it was not read from a file
+	 */
+	private int version;
+	
+	public Checkpoint(){
+		sections = new LinkedHashMap<Integer, Section>();
+		version = VERSION;
+	}
+	
+	public int getVersion(){
+		return version;
+	}
+	
+	/**
+	 * Set the data of the section with the given id, replacing any data already in that section.
+	 * The data from the position to the limit of the buffer is used
+	 * @param id
+	 * @param data
+	 */
+	public void setSection(int id, ByteBuffer data){
+		sections.put(id, new Section(data, null, 0, data.remaining()));
+	}
+	
+	/**
+	 * Set the data of the section with the given id to the first length bytes of the given file, replacing any data already in that section.
+	 * The file is not read until the checkpoint is written, and is then copied straight into the checkpoint, so the data never has to fit in memory
+	 * @param id
+	 * @param file
+	 * @param length
+	 */
+	public void setSection(int id, File file, long length){
+		sections.put(id, new Section(null, file, 0, length));
+	}
+	
+	/**
+	 * Get the data of the section with the given id, from the start of the section.
+	 * For a checkpoint that was read from a file, the section is read from the file each time this is called
+	 * @param id
+	 * @return the data, or null if this checkpoint has no section with the given id
+	 * @throws IOException if the section cannot be read from its file
+	 */
+	public ByteBuffer getSection(int id) throws IOException{
+		Section section = sections.get(id);
+		if(section == null) return null;
+		if(section.data != null) return section.data.duplicate();
+		
+		FileChannel channel = FileChannel.open(section.file.toPath(), StandardOpenOption.READ);
+		try{
+			return readFully(channel, section.offset, section.length);
+		}finally{
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Get the number of bytes in the section with the given id
+	 * @param id
+	 * @return the length, or -1 if this checkpoint has no section with the given id
+	 */
+	public long getSectionLength(int id){
+		Section section = sections.get(id);
+		if(section == null) return -1;
+		return section.length;
+	}
+	
+	/**
+	 * Write the data of the section with the given id to the given channel, at the current position of the channel,
+	 * without holding the whole section in memory
+	 * @param id
+	 * @param target
+	 * @return the number of bytes written, or -1 if this checkpoint has no section with the given id
+	 * @throws IOException
+	 */
+	public long transferSection(int id, FileChannel target) throws IOException{
+		Section section = sections.get(id);
+		if(section == null) return -1;
+		section.writeTo(target);
+		return section.length;
+	}
+	
+	/**
+	 * Determine if this checkpoint has a section with the given id
+	 * @param id
+	 * @return
+	 */
+	public boolean hasSection(int id){
+		return sections.containsKey(id);
+	}
+	
+	/**
+	 * Write this checkpoint to the given file. The checkpoint is written to a temporary file first, then moved over the given file,
+	 * so stopping the program while saving never leaves a broken save behind
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException{
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + ENTRY_SIZE * sections.size());
+		header.putLong(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(sections.size());
+		
+		long offset = header.capacity();
+		for(Map.Entry<Integer, Section> e : sections.entrySet()){
+			header.putInt(e.getKey());
+			header.putLong(offset);
+			header.putLong(e.getValue().length);
+			offset += e.getValue().length;
+		}
+		header.flip();
+		
+		File temp = new File(file.getPath() + ".tmp");
+		FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try{
+			//the header and the sections held in buffers are written together with gathering writes, sections held in files are copied between them
+			ArrayList<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+			buffers.add(header);
+			for(Section s : sections.values()){
+				if(s.data != null) buffers.add(s.data.duplicate());
+				else{
+					writeAll(channel, buffers);
+					s.writeTo(channel);
+				}
+			}
+			writeAll(channel, buffers);
+			channel.force(true);
+		}finally{
+			channel.close();
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Write all of the given buffers to the given channel with gathering writes, then remove them from the list
+	 * @param channel
+	 * @param buffers
+	 * @throws IOException
+	 */
+	private static void writeAll(FileChannel channel, ArrayList<ByteBuffer> buffers) throws IOException{
+		if(buffers.isEmpty()) return;
+		ByteBuffer[] all = buffers.toArray(new ByteBuffer[buffers.size()]);
+		long left = 0;
+		for(ByteBuffer b : all) left += b.remaining();
+		while(left > 0) left -= channel.write(all);
+		buffers.clear();
+	}
+	
+	/**
+	 * Read the header and section table of the checkpoint in the given file.
+	 * The sections themselves are not read until they are used, so any one section can be read without reading the others
+	 * @param file
+	 * @return
+	 * @throws IOException if the file cannot be read, or is not a checkpoint this version can read
+	 */
+	public static Checkpoint read(File file) throws IOException{
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try{
+			Checkpoint checkpoint = new Checkpoint();
+			long[][] table = readTable(channel, checkpoint);
+			for(long[] entry : table) checkpoint.sections.put((int)entry[0], new Section(null, file, entry[1], entry[2]));
+			return checkpoint;
+		}finally{
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Read only the section with the given id from the checkpoint in the given file, skipping over every other section
+	 * @param file
+	 * @param id
+	 * @return the data of the section, or null if the checkpoint has no section with the given id
+	 * @throws IOException if the file cannot be read, or is not a checkpoint this version can read
+	 */
+	public static ByteBuffer readSection(File file, int id) throws IOException{
+		return read(file).getSection(id);
+	}
+	
+	/**
+	 * Determine if the given file is a checkpoint, rather than a text save
+	 * @param file
+	 * @return true if the file starts with MAGIC
+	 */
+	public static boolean isCheckpoint(File file){
+		if(!file.isFile() || file.length() < HEADER_SIZE) return false;
+		try{
+			FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			try{
+				return readFully(channel, 0, 8).getLong() == MAGIC;
+			}finally{
+				channel.close();
+			}
+		}catch(IOException e){
+			return false;
+		}
+	}
+	
+	/**
+	 * Read the header and section table of a checkpoint from the given channel, setting the version of the given checkpoint
+	 * @param channel
+	 * @param checkpoint
+	 * @return for each section, the id, offset, and length
+	 * @throws IOException if the header is not valid, or the version is newer than VERSION
+	 */
+	private static long[][] readTable(FileChannel channel, Checkpoint checkpoint) throws IOException{
+		long fileSize = channel.size();
+		if(fileSize < HEADER_SIZE) throw new IOException("File is too small to be a checkpoint");
+		ByteBuffer header = readFully(channel, 0, HEADER_SIZE);
+		if(header.getLong() != MAGIC) throw new IOException("File is not a checkpoint");
+		checkpoint.version = header.getInt();
+		if(checkpoint.version < 1 || checkpoint.version > VERSION){
+			throw new IOException("Checkpoint version " + checkpoint.version + " cannot be read, the newest version that can be read is " + VERSION);
+		}
+		
+		int count = header.getInt();
+		if(count < 0 || HEADER_SIZE + (long)count * ENTRY_SIZE > fileSize) throw new IOException("Checkpoint section table is broken");
+		ByteBuffer entries = readFully(channel, HEADER_SIZE, count * ENTRY_SIZE);
+		long[][] table = new long[count][];
+		for(int i = 0; i < count; i++){
+			table[i] = new long[]{entries.getInt(), entries.getLong(), entries.getLong()};
+			if(table[i][1] < 0 || table[i][2] < 0 || table[i][1] + table[i][2] > fileSize || table[i][2] > Integer.MAX_VALUE){
+				throw new IOException("Checkpoint section " + table[i][0] + " is outside of the file");
+			}
+		}
+		return table;
+	}
+	
+	/**
+	 * Read the given number of bytes from the given channel, starting at the given position in the file
+	 * @param channel
+	 * @param position
+	 * @param length
+	 * @return a buffer holding the bytes, with its position at 0
+	 * @throws IOException if the file ends before all the bytes are read
+	 */
+	private static ByteBuffer readFully(FileChannel channel, long position, long length) throws IOException{
+		ByteBuffer buffer = ByteBuffer.allocate((int)length);
+		while(buffer.hasRemaining()){
+			int read = channel.read(buffer, position + buffer.position());
+			if(read < 0) throw new IOException("Checkpoint ended early");
+		}
+		buffer.flip();
+		return buffer;
+	}
+	
+	/**
+	 * Save the given runners to a new buffer. The buffer holds the number of runners, the number of chunks,
+	 * and the number of bytes in each chunk, followed by each chunk of up to CHUNK_SIZE runners.
+	 * Each chunk is saved on its own thread, using the number of threads from the given settings
+	 * @param settings
+	 * @param runners
+	 * @return the buffer, with its position at 0
+	 */
+	public static ByteBuffer encodeRunners(Settings settings, final Runner[] runners){
+		final int numChunks = (runners.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		final long[] chunkSizes = new long[numChunks];
+		
+		//find the size of each chunk first, so every chunk knows where to save its runners
+		ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for(int c = 0; c < numChunks; c++){
+			final int chunk = c;
+			tasks.add(new Callable<Void>(){
+				@Override
+				public Void call(){
+					long size = 0;
+					for(int i = chunk * CHUNK_SIZE; i < Math.min(runners.length, (chunk + 1) * CHUNK_SIZE); i++) size += runners[i].getSaveSize();
+					chunkSizes[chunk] = size;
+					return null;
+				}
+			});
+		}
+		runChunks(settings, tasks);
+		
+		long total = 4 + 4 + numChunks * 8L;
+		for(long size : chunkSizes) total += size;
+		if(total > Integer.MAX_VALUE) throw new IllegalArgumentException("Too many runners to save in one section");
+		final ByteBuffer buffer = ByteBuffer.allocate((int)total);
+		buffer.putInt(runners.length);
+		buffer.putInt(numChunks);
+		for(long size : chunkSizes) buffer.putLong(size);
+		
+		tasks.clear();
+		int offset = buffer.position();
+		for(int c = 0; c < numChunks; c++){
+			final int chunk = c;
+			final int start = offset;
+			tasks.add(new Callable<Void>(){
+				@Override
+				public Void call(){
+					ByteBuffer part = buffer.duplicate();
+					part.position(start);
+					for(int i = chunk * CHUNK_SIZE; i < Math.min(runners.length, (chunk + 1) * CHUNK_SIZE); i++) runners[i].save(part);
+					return null;
+				}
+			});
+			offset += chunkSizes[c];
+		}
+		runChunks(settings, tasks);
+		
+		buffer.position(0);
+		return buffer;
+	}
+	
+	/**
+	 * Load runners from the given buffer, in the format written by encodeRunners. Each chunk is loaded on its own thread.
+	 * When this method returns, the position of the buffer is after the runners
+	 * @param settings
+	 * @param track the track the runners are in
+	 * @param buffer
+	 * @return
+	 * @throws IOException if the chunks do not fit in the buffer, or a chunk does not hold exactly the runners it should
+	 */
+	public static Runner[] decodeRunners(final Settings settings, final Track track, ByteBuffer buffer) throws IOException{
+		int numRunners = buffer.getInt();
+		int numChunks = buffer.getInt();
+		if(numRunners < 0 || numChunks != (int)(((long)numRunners + CHUNK_SIZE - 1) / CHUNK_SIZE)) throw new IOException("Runner chunks are broken");
+		final Runner[] runners = new Runner[numRunners];
+		
+		long[] chunkSizes = new long[numChunks];
+		long total = 0;
+		for(int c = 0; c < numChunks; c++){
+			chunkSizes[c] = buffer.getLong();
+			if(chunkSizes[c] < 0 || chunkSizes[c] > buffer.remaining()) throw new IOException("Runner chunks are outside of the section");
+			total += chunkSizes[c];
+		}
+		if(total > buffer.remaining()) throw new IOException("Runner chunks are outside of the section");
+		
+		final ByteBuffer data = buffer.duplicate();
+		ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		int offset = buffer.position();
+		for(int c = 0; c < numChunks; c++){
+			final int chunk = c;
+			final int start = offset;
+			final int end = offset + (int)chunkSizes[c];
+			tasks.add(new Callable<Void>(){
+				@Override
+				public Void call() throws IOException{
+					//each chunk can only read its own bytes, and must read all of them
+					ByteBuffer part = data.duplicate();
+					part.limit(end);
+					part.position(start);
+					for(int i = chunk * CHUNK_SIZE; i < Math.min(runners.length, (chunk + 1) * CHUNK_SIZE); i++) runners[i] = new Runner(settings, track, part);
+					if(part.position() != end) throw new IOException("Runner chunk " + chunk + " does not match its size");
+					return null;
+				}
+			});
+			offset = end;
+		}
+		try{
+			runChunks(settings, tasks);
+		}catch(IllegalStateException e){
+			//a broken chunk can fail to decode in many ways, like ending before its runners do
+			Throwable cause = e.getCause() == null ? e : e.getCause();
+			if(cause instanceof IOException) throw (IOException)cause;
+			throw new IOException("Runner chunks are broken", cause);
+		}
+		
+		buffer.position(offset);
+		return runners;
+	}
+	
+	/**
+	 * Run the given tasks, one for each chunk, on the threads used for testing runners, or on this thread if there is only one task or thread
+	 * @param settings
+	 * @param tasks
+	 */
+	private static void runChunks(Settings settings, ArrayList<Callable<Void>> tasks){
+		int threads = RunnerEvaluator.getNumThreads(settings);
+		if(threads <= 1 || tasks.size() <= 1){
+			try{
+				for(Callable<Void> t : tasks) t.call();
+			}catch(Exception e){
+				throw new IllegalStateException("Failed to save or load runners", e);
+			}
+		}
+		else RunnerEvaluator.runTasks(tasks, threads);
+	}
+	
+	/**
+	 * The data of one section, either held in a buffer, or held in part of a file
+	 */
+	private static class Section{
+		
+		/**
+		 * The data of the section, or null if the data is in a file
+		 */
+		private ByteBuffer data;
+		/**
+		 * The file holding the data, only used if data is null
+		 */
+		private File file;
+		/**
+		 * The position in the file where the data starts
+		 */
+		private long offset;
+		/**
+		 * The number of bytes of data
+		 */
+		private long length;
+		
+		private Section(ByteBuffer data, File file, long offset, long length){
+			this.data = data;
+			this.file = file;
+			this.offset = offset;
+			this.length = length;
+		}
+		
+		/**
+		 * Write all of the data of this section to the given channel, at the current position of the channel
+		 * @param target
+		 * @throws IOException
+		 */
+		private void writeTo(FileChannel target) throws IOException{
+			if(data != null){
+				ByteBuffer d = data.duplicate();
+				while(d.hasRemaining()) target.write(d);
+				return;
+			}
+			
+			FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			try{
+				long done = 0;
+				while(done < length){
+					long moved = source.transferTo(offset + done, length - done, target);
+					if(moved <= 0) throw new IOException("File ended before the section " + file.getPath());
+					done += moved;
+				}
+			}finally{
+				source.close();
+			}
+		}
+		
+	}
+	
+}
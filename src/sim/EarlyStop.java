@@ -0,0 +1,177 @@
+package sim;
+
+import data.Settings;
+
+/**
+ * Decides when a runner has settled, so testing it any longer would not change its fitness by much, and its test can end early.
+ * Testing is split into windows of Settings.getEarlyStopWindow ticks. At the end of a window, a runner has settled if:
+ * it never got further than its radius from where it was at the start of the window,
+ * it did not end the window further from where it started the window than it did in the window before, so it is not slowly speeding up,
+ * and the fitness it gained during the window is within Settings.getEarlyStopEpsilon of the fitness it gained during the window before.
+ * This finds runners that have stopped moving, and runners that spin in place.
+ * This is not a proof, a runner that settles could still have changed what it was doing later in its test, so when this is used,
+ * runners can end with a different fitness than if they were tested for the full time.
+ * When a runner settles its test ends, and it is given the fitness it would have if it kept gaining fitness
+ * at the same rate as in the last window for the rest of the test time.
+ * Runner.testRunner and PopulationEngine both use the same rules in the same order, so both still give exactly the same fitness.
+ * When the window is 0, every test uses the full time
+ */
+public class EarlyStop{
+	
+	/**
+	 * The number of ticks in each window
+	 */
+	private int window;
+	/**
+	 * The largest difference in the fitness gained in two windows in a row for a runner to settle
+	 */
+	private double epsilon;
+	/**
+	 * The radius of a runner, squared
+	 */
+	private double radiusSquared;
+	/**
+	 * The number of ticks each runner is tested for
+	 */
+	private int testTime;
+	
+	/**
+	 * The x and y of each runner at the start of the current window
+	 */
+	private double[] startX;
+	private double[] startY;
+	/**
+	 * The fitness of each runner at the start of the current window
+	 */
+	private double[] startFitness;
+	/**
+	 * The fitness each runner gained in the last window, NaN until a runner has finished one window
+	 */
+	private double[] lastGain;
+	/**
+	 * The squared distance between where each runner started and ended the last window, NaN until a runner has finished one window
+	 */
+	private double[] lastMoved;
+	/**
+	 * true if a runner has gone further than its radius from its position at the start of the current window
+	 */
+	private boolean[] left;
+	
+	/**
+	 * Create an object to decide when runners settle, able to hold the given number of runners
+	 * @param settings
+	 * @param capacity
+	 */
+	public EarlyStop(Settings settings, int capacity){
+		window = settings.getEarlyStopWindow();
+		epsilon = settings.getEarlyStopEpsilon();
+		radiusSquared = settings.getRunnerRadius() * settings.getRunnerRadius();
+		testTime = settings.getRunnerTestTime();
+		setCapacity(capacity);
+	}
+	
+	/**
+	 * Determine if tests should end early for the given settings
+	 * @param settings
+	 * @return
+	 */
+	public static boolean isEnabled(Settings settings){
+		return settings.getEarlyStopWindow() > 0;
+	}
+	
+	/**
+	 * Make the arrays able to hold the given number of runners
+	 * @param size
+	 */
+	private void setCapacity(int size){
+		startX = new double[size];
+		startY = new double[size];
+		startFitness = new double[size];
+		lastGain = new double[size];
+		lastMoved = new double[size];
+		left = new boolean[size];
+	}
+	
+	/**
+	 * Begin watching the runner in the given slot, must be called before its first tick
+	 * @param slot
+	 * @param x
+	 * @param y
+	 * @param fitness
+	 */
+	public void start(int slot, double x, double y, double fitness){
+		startX[slot] = x;
+		startY[slot] = y;
+		startFitness[slot] = fitness;
+		lastGain[slot] = Double.NaN;
+		lastMoved[slot] = Double.NaN;
+		left[slot] = false;
+	}
+	
+	/**
+	 * Update the runner in the given slot after one of its ticks
+	 * @param slot
+	 * @param timer the number of ticks the runner has been tested for, including this tick
+	 * @param x the x of the runner after this tick
+	 * @param y the y of the runner after this tick
+	 * @param fitness the fitness of the runner after this tick
+	 * @return true if the runner has settled and its test should end, in which case getFinalFitness gives the fitness it should end with
+	 */
+	public boolean update(int slot, int timer, double x, double y, double fitness){
+		double dx = x - startX[slot];
+		double dy = y - startY[slot];
+		if(dx * dx + dy * dy > radiusSquared) left[slot] = true;
+		
+		if(timer % window != 0) return false;
+		
+		double gain = fitness - startFitness[slot];
+		double moved = dx * dx + dy * dy;
+		boolean settled = !left[slot] && !Double.isNaN(lastGain[slot]) && moved <= lastMoved[slot] && Math.abs(gain - lastGain[slot]) <= epsilon;
+		
+		//begin the next window
+		startX[slot] = x;
+		startY[slot] = y;
+		startFitness[slot] = fitness;
+		lastGain[slot] = gain;
+		lastMoved[slot] = moved;
+		left[slot] = false;
+		
+		//there is nothing to save if the test is already over
+		return settled && timer < testTime;
+	}
+	
+	/**
+	 * Get the fitness a runner that settled should end its test with, the fitness it would have if it kept gaining fitness at the rate of its last window
+	 * @param slot
+	 * @param fitness the fitness of the runner when it settled
+	 * @param timer the number of ticks the runner was tested for
+	 * @return
+	 */
+	public double getFinalFitness(int slot, double fitness, int timer){
+		return fitness + lastGain[slot] * (testTime - timer) / window;
+	}
+	
+	/**
+	 * Get the number of ticks that are not tested when a runner settles after the given number of ticks
+	 * @param timer
+	 * @return
+	 */
+	public int getTicksSaved(int timer){
+		return testTime - timer;
+	}
+	
+	/**
+	 * Move the runner in slot from into slot to
+	 * @param from
+	 * @param to
+	 */
+	public void moveSlot(int from, int to){
+		startX[to] = startX[from];
+		startY[to] = startY[from];
+		startFitness[to] = startFitness[from];
+		lastGain[to] = lastGain[from];
+		lastMoved[to] = lastMoved[from];
+		left[to] = left[from];
+	}
+	
+}
@@ -0,0 +1,322 @@
+package sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the fitness runners got when they were tested, so a runner with the same brain, on the same track, with the same settings, is not tested again.
+ * Each result is found by a key, the hash of the weights and mutability of the brain, and the fingerprint of the settings and track, see Fingerprint.
+ * Each result also keeps a check, a second hash of the same values made in an unrelated way, see Fingerprint.mix, and a result is only used if its check matches too.
+ * Two different brains with the same key are rare, and two with the same key and check are so rare that a wrong result is never expected,
+ * but because both are hashes, a wrong result is still possible.
+ * The most recently used results are kept in memory. Results can also be kept in a file, which is a hash table with a fixed number of slots,
+ * so the file never grows, and a result in the file can be found with one read.
+ * When every slot a result could go in is full, the result replaces one of them, so the file forgets results rather than growing
+ */
+public class EvaluationCache{
+	
+	/**
+	 * The default file used to keep results between runs of the program
+	 */
+	public static final String DISK_FILE = "./data/evalCache.bin";
+	/**
+	 * The first 8 bytes of a cache file, the characters EVOCACHE
+	 */
+	public static final long MAGIC = 0x45564F4341434845L;
+	/**
+	 * The number of slots in a cache file, each slot is 24 bytes, so the file is 24 MB
+	 */
+	public static final int DISK_SLOTS = 1 << 20;
+	/**
+	 * The number of slots after the slot of a key that the key can go in
+	 */
+	public static final int MAX_PROBES = 8;
+	
+	/**
+	 * The number of bytes before the first slot: MAGIC and the number of slots
+	 */
+	private static final int HEADER_SIZE = 8 + 8;
+	/**
+	 * The number of bytes in each slot, the key, the check, then the fitness
+	 */
+	private static final int SLOT_SIZE = 8 + 8 + 8;
+	
+	/**
+	 * The check and fitness of a result kept in memory
+	 */
+	private static class Result{
+		long check;
+		double fitness;
+		
+		Result(long check, double fitness){
+			this.check = check;
+			this.fitness = fitness;
+		}
+	}
+	
+	/**
+	 * The most results kept in memory
+	 */
+	private int capacity;
+	/**
+	 * The results kept in memory, by key, the least recently used result is removed once there are more than capacity
+	 */
+	private LinkedHashMap<Long, Result> memory;
+	/**
+	 * The channel used to read and write the cache file, or null if results are only kept in memory
+	 */
+	private FileChannel disk;
+	/**
+	 * The file this cache was made to keep results in, or null if this cache was made to only keep results in memory
+	 */
+	private File diskFile;
+	
+	/**
+	 * The number of results found in memory
+	 */
+	private long hits;
+	/**
+	 * The number of results found in the file, but not in memory
+	 */
+	private long diskHits;
+	/**
+	 * The number of results that were not found
+	 */
+	private long misses;
+	
+	/**
+	 * @param capacity the most results kept in memory
+	 * @param diskFile the file to keep results in, or null to only keep results in memory. The file is created if it does not exist
+	 */
+	public EvaluationCache(int capacity, File diskFile){
+		this.capacity = capacity;
+		this.diskFile = diskFile;
+		memory = new LinkedHashMap<Long, Result>(Math.min(capacity, 1 << 16), .75f, true){
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Result> eldest){
+				return size() > EvaluationCache.this.capacity;
+			}
+		};
+		
+		if(diskFile != null){
+			try{
+				openDisk(diskFile);
+			}catch(IOException e){
+				System.err.println("Failed to open the evaluation cache file " + diskFile.getPath() + ", only keeping results in memory");
+				e.printStackTrace();
+				close();
+			}
+		}
+	}
+	
+	public int getCapacity(){
+		return capacity;
+	}
+	
+	/**
+	 * Get the file this cache was made to keep results in, the file is no longer used if it could not be read or written
+	 * @return the file, or null if this cache was made to only keep results in memory
+	 */
+	public File getDiskFile(){
+		return diskFile;
+	}
+	
+	/**
+	 * Get the key of the given runner when it is tested with the settings and track of the given fingerprint
+	 * @param runner
+	 * @param evaluationFingerprint the fingerprint of the settings and track, see Fingerprint.getEvaluation
+	 * @return
+	 */
+	public static long getKey(Runner runner, long evaluationFingerprint){
+		return Fingerprint.finish(runner.getBrain().addToFingerprint(Fingerprint.add(Fingerprint.START, evaluationFingerprint)));
+	}
+	
+	/**
+	 * Get the check of the given runner when it is tested with the settings and track of the given fingerprint, a second hash of the same values as getKey
+	 * @param runner
+	 * @param evaluationFingerprint the fingerprint of the settings and track, see Fingerprint.getEvaluation
+	 * @return
+	 */
+	public static long getCheck(Runner runner, long evaluationFingerprint){
+		return runner.getBrain().addToCheck(Fingerprint.mix(Fingerprint.START, evaluationFingerprint));
+	}
+	
+	/**
+	 * Get the fitness for the given key, looking in memory first, then in the file
+	 * @param key
+	 * @param check the check of the result, a result for the key with a different check is not used
+	 * @return the fitness, or Double.NaN if there is no result for the key and check
+	 */
+	public synchronized double get(long key, long check){
+		Result result = memory.get(key);
+		if(result != null && result.check == check){
+			hits++;
+			return result.fitness;
+		}
+		
+		if(disk != null){
+			try{
+				ByteBuffer slots = readSlots(key);
+				while(slots.hasRemaining()){
+					long k = slots.getLong();
+					long c = slots.getLong();
+					double f = slots.getDouble();
+					if(k == key && c == check){
+						diskHits++;
+						memory.put(key, new Result(check, f));
+						return f;
+					}
+				}
+			}catch(IOException e){
+				diskFailed(e);
+			}
+		}
+		
+		misses++;
+		return Double.NaN;
+	}
+	
+	/**
+	 * Remember the given fitness for the given key and check, in memory, and in the file if there is one
+	 * @param key
+	 * @param check
+	 * @param fitness
+	 */
+	public synchronized void put(long key, long check, double fitness){
+		memory.put(key, new Result(check, fitness));
+		
+		if(disk != null){
+			try{
+				//use the slot that already has this key, or the first empty slot, or the first slot if they are all full
+				int slot = getFirstSlot(key);
+				ByteBuffer slots = readSlots(key);
+				for(int i = 0; slots.hasRemaining(); i++){
+					long k = slots.getLong();
+					slots.getLong();
+					slots.getDouble();
+					if(k == key || k == 0){
+						slot += i;
+						break;
+					}
+				}
+				
+				ByteBuffer write = ByteBuffer.allocate(SLOT_SIZE);
+				write.putLong(key);
+				write.putLong(check);
+				write.putDouble(fitness);
+				write.flip();
+				long position = HEADER_SIZE + (long)slot * SLOT_SIZE;
+				while(write.hasRemaining()) position += disk.write(write, position);
+			}catch(IOException e){
+				diskFailed(e);
+			}
+		}
+	}
+	
+	/**
+	 * Get the number of results found in memory
+	 * @return
+	 */
+	public synchronized long getHits(){
+		return hits;
+	}
+	
+	/**
+	 * Get the number of results found in the file, but not in memory
+	 * @return
+	 */
+	public synchronized long getDiskHits(){
+		return diskHits;
+	}
+	
+	/**
+	 * Get the number of results that were not found
+	 * @return
+	 */
+	public synchronized long getMisses(){
+		return misses;
+	}
+	
+	/**
+	 * Close the file of this cache, after this, results are only kept in memory
+	 */
+	public synchronized void close(){
+		if(disk != null){
+			try{
+				disk.close();
+			}catch(IOException e){}
+			disk = null;
+		}
+	}
+	
+	/**
+	 * Open the given file, creating an empty cache file if the file does not exist, or is not a cache file with DISK_SLOTS slots
+	 * @param file
+	 * @throws IOException
+	 */
+	private void openDisk(File file) throws IOException{
+		if(file.getParentFile() != null) file.getParentFile().mkdirs();
+		disk = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		long size = disk.size();
+		if(size == HEADER_SIZE + (long)DISK_SLOTS * SLOT_SIZE){
+			while(header.hasRemaining() && disk.read(header, header.position()) >= 0);
+			header.flip();
+			if(header.getLong() == MAGIC && header.getLong() == DISK_SLOTS) return;
+		}
+		
+		//start a new empty file, every slot is 0, which is never a key
+		disk.truncate(0);
+		header.clear();
+		header.putLong(MAGIC);
+		header.putLong(DISK_SLOTS);
+		header.flip();
+		while(header.hasRemaining()) disk.write(header, header.position());
+		ByteBuffer last = ByteBuffer.allocate(1);
+		disk.write(last, HEADER_SIZE + (long)DISK_SLOTS * SLOT_SIZE - 1);
+	}
+	
+	/**
+	 * Get the first slot the given key can go in
+	 * @param key
+	 * @return
+	 */
+	private static int getFirstSlot(long key){
+		int slot = (int)(key ^ (key >>> 32)) & (DISK_SLOTS - 1);
+		return Math.min(slot, DISK_SLOTS - MAX_PROBES);
+	}
+	
+	/**
+	 * Read every slot the given key can go in from the file
+	 * @param key
+	 * @return a buffer holding the key, check, and fitness of each slot, with its position at 0
+	 * @throws IOException
+	 */
+	private ByteBuffer readSlots(long key) throws IOException{
+		ByteBuffer slots = ByteBuffer.allocate(SLOT_SIZE * MAX_PROBES);
+		long position = HEADER_SIZE + (long)getFirstSlot(key) * SLOT_SIZE;
+		while(slots.hasRemaining()){
+			if(disk.read(slots, position + slots.position()) < 0) throw new IOException("Evaluation cache file ended early");
+		}
+		slots.flip();
+		return slots;
+	}
+	
+	/**
+	 * Stop using the file of this cache after the given error
+	 * @param e
+	 */
+	private void diskFailed(IOException e){
+		System.err.println("Failed to use the evaluation cache file, only keeping results in memory");
+		e.printStackTrace();
+		close();
+	}
+	
+}
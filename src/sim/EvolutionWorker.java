@@ -0,0 +1,225 @@
+package sim;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs the generations of a simulation on its own thread, so the program keeps drawing and responding while generations are tested,
+ * and generations run as fast as they can, rather than one per tick of the program.
+ * After each generation, a new SimulationSnapshot is published, which other threads get with getSnapshot without waiting on the worker.
+ * Anything else that reads or changes the simulation must be done with runPaused, so it never happens in the middle of a generation
+ */
+public class EvolutionWorker implements Runnable{
+	
+	/**
+	 * The number of remaining generations used when looping, the worker runs generations until it is paused or cancelled
+	 */
+	public static final long FOREVER = Long.MAX_VALUE;
+	
+	private Simulation sim;
+	
+	/**
+	 * The thread running the generations
+	 */
+	private Thread thread;
+	
+	/**
+	 * Held by the worker for the whole of each generation, and by runPaused while it runs a task.
+	 * Fair, so a thread waiting in runPaused gets the lock before the worker starts the next generation
+	 */
+	private ReentrantLock simLock;
+	
+	/**
+	 * The most recent snapshot of the simulation
+	 */
+	private AtomicReference<SimulationSnapshot> snapshot;
+	
+	/**
+	 * The number of generations left to run, FOREVER when looping. Only used while synchronized on this worker, like paused and closed
+	 */
+	private long remaining;
+	/**
+	 * True if the worker should not start new generations, but should keep the remaining count
+	 */
+	private boolean paused;
+	/**
+	 * True once the worker has been closed, after that it never runs another generation
+	 */
+	private boolean closed;
+	/**
+	 * True while the worker is running a generation
+	 */
+	private boolean busy;
+	
+	/**
+	 * Create a worker for the given simulation, and start its thread. The worker publishes a snapshot of the simulation as it is now,
+	 * then waits for generations to be requested
+	 * @param sim
+	 */
+	public EvolutionWorker(Simulation sim){
+		this.sim = sim;
+		simLock = new ReentrantLock(true);
+		snapshot = new AtomicReference<SimulationSnapshot>(new SimulationSnapshot(sim));
+		remaining = 0;
+		paused = false;
+		closed = false;
+		busy = false;
+		
+		thread = new Thread(this, "Evolution");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Get the most recently published snapshot of the simulation, never waits on the worker
+	 * @return
+	 */
+	public SimulationSnapshot getSnapshot(){
+		return snapshot.get();
+	}
+	
+	/**
+	 * Run generations until the worker is paused or cancelled
+	 */
+	public synchronized void loop(){
+		remaining = FOREVER;
+		paused = false;
+		notifyAll();
+	}
+	
+	/**
+	 * Run the given number of generations after any that are already waiting to run
+	 * @param generations
+	 */
+	public synchronized void step(int generations){
+		if(generations <= 0) return;
+		if(remaining != FOREVER) remaining = Math.min(FOREVER - 1, remaining + generations);
+		paused = false;
+		notifyAll();
+	}
+	
+	/**
+	 * Stop starting new generations after the current generation, keeping the generations that are left to run, see resume
+	 */
+	public synchronized void pause(){
+		paused = true;
+	}
+	
+	/**
+	 * Start running the generations that were left when the worker was paused
+	 */
+	public synchronized void resume(){
+		paused = false;
+		notifyAll();
+	}
+	
+	/**
+	 * Stop running generations after the current generation, and forget the generations that are left to run
+	 */
+	public synchronized void cancel(){
+		remaining = 0;
+		paused = false;
+		notifyAll();
+	}
+	
+	/**
+	 * Determine if the worker runs generations until it is paused or cancelled
+	 * @return
+	 */
+	public synchronized boolean isLooping(){
+		return remaining == FOREVER;
+	}
+	
+	public synchronized boolean isPaused(){
+		return paused;
+	}
+	
+	/**
+	 * Determine if the worker is running a generation, or has generations left that it will run without being told to
+	 * @return
+	 */
+	public synchronized boolean isRunning(){
+		return busy || remaining > 0 && !paused;
+	}
+	
+	/**
+	 * Get the number of generations left to run, FOREVER if the worker is looping
+	 * @return
+	 */
+	public synchronized long getRemaining(){
+		return remaining;
+	}
+	
+	/**
+	 * Run the given task on this thread while no generation is running, waiting for the current generation to finish first.
+	 * A new snapshot is published after the task, in case the task changed the simulation
+	 * @param task
+	 */
+	public void runPaused(Runnable task){
+		simLock.lock();
+		try{
+			task.run();
+			snapshot.set(new SimulationSnapshot(sim));
+		}finally{
+			simLock.unlock();
+		}
+	}
+	
+	/**
+	 * Stop the worker, waiting for the current generation to finish. After this, the worker never runs another generation
+	 */
+	public void close(){
+		synchronized(this){
+			closed = true;
+			notifyAll();
+		}
+		if(Thread.currentThread() == thread) return;
+		try{
+			thread.join();
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Run generations whenever there are generations left to run, until the worker is closed
+	 */
+	@Override
+	public void run(){
+		while(true){
+			synchronized(this){
+				while(!closed && (paused || remaining == 0)){
+					try{
+						wait();
+					}catch(InterruptedException e){
+						return;
+					}
+				}
+				if(closed) return;
+			}
+			
+			simLock.lock();
+			try{
+				//the generation may have been cancelled while waiting for the lock
+				synchronized(this){
+					if(closed || paused || remaining == 0) continue;
+					busy = true;
+				}
+				
+				sim.nextGeneration();
+				snapshot.set(new SimulationSnapshot(sim));
+			}catch(RuntimeException e){
+				System.err.println("Failed to run a generation, stopping evolution");
+				e.printStackTrace();
+				cancel();
+			}finally{
+				synchronized(this){
+					if(busy && remaining > 0 && remaining != FOREVER) remaining--;
+					busy = false;
+				}
+				simLock.unlock();
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,163 @@
+package sim;
+
+import java.nio.ByteBuffer;
+
+import data.Settings;
+
+/**
+ * 64 bit hashes of the things that decide the fitness a runner gets when it is tested: the track, and the settings used while testing.
+ * If two fingerprints are equal, testing a runner with either gives the same fitness, unless two different sets of values happen to have the same hash.
+ * The hashes are FNV-1a, going through each value one byte at a time
+ */
+public final class Fingerprint{
+	
+	/**
+	 * A fingerprint that means the settings and track are not known, no real fingerprint is ever equal to this
+	 */
+	public static final long NONE = 0;
+	
+	/**
+	 * The value each hash starts at
+	 */
+	public static final long START = 0xcbf29ce484222325L;
+	/**
+	 * The value the hash is multiplied by after each byte
+	 */
+	private static final long PRIME = 0x100000001b3L;
+	/**
+	 * The values used by mix, which has nothing in common with the FNV-1a hash
+	 */
+	private static final long MIX_PRIME_1 = 0x9E3779B185EBCA87L;
+	private static final long MIX_PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+	
+	/**
+	 * Get the fingerprint of everything that decides the fitness of a runner: the settings used while testing, and the track
+	 * @param settings
+	 * @param track
+	 * @return
+	 */
+	public static long getEvaluation(Settings settings, Track track){
+		return finish(add(getSettings(settings), getTrack(track)));
+	}
+	
+	/**
+	 * Get the fingerprint of only the settings that change the fitness a runner gets when it is tested.
+	 * Settings like the number of threads, the eval mode, or fitness pruning change how runners are tested, but not the fitness of a full test, so they are not used.
+	 * Fitness from a pruned test is never stored with a fingerprint, see Runner.isFitnessPruned
+	 * @param settings
+	 * @return
+	 */
+	public static long getSettings(Settings settings){
+		long h = START;
+		h = add(h, settings.getFitnessLinesGive());
+		h = add(h, settings.getRunnerSpeedChange());
+		h = add(h, settings.getRunnerAngleChange());
+		h = add(h, settings.getRunnerMinSpeed());
+		h = add(h, settings.getRunnerMaxSpeed());
+		h = add(h, settings.getRunnerRadius());
+		h = add(h, settings.getKillRunner());
+		h = add(h, settings.getRunnerTestTime());
+		h = add(h, settings.getRunnerMaxViewDistance());
+		h = add(h, settings.getRunnerFitnessGain());
+		h = add(h, settings.getRunnerFitnessBaseGain());
+		h = add(h, settings.getRunnerFitnessSpeed());
+		h = add(h, settings.getRunnerFitnessWall());
+		h = add(h, settings.getRunnerVisionWeights().length);
+		for(int w : settings.getRunnerVisionWeights()) h = add(h, w);
+		h = add(h, settings.getRunnerVisionAngles().length);
+		for(double a : settings.getRunnerVisionAngles()) h = add(h, a);
+		h = add(h, settings.getActivationMode());
+		h = add(h, settings.getEarlyStopWindow());
+		h = add(h, settings.getEarlyStopEpsilon());
+		return finish(h);
+	}
+	
+	/**
+	 * Get the fingerprint of the given track, using the same data as Track.save(ByteBuffer)
+	 * @param track
+	 * @return
+	 */
+	public static long getTrack(Track track){
+		ByteBuffer buffer = ByteBuffer.allocate(track.getSaveSize());
+		track.save(buffer);
+		buffer.flip();
+		long h = START;
+		while(buffer.hasRemaining()) h = addByte(h, buffer.get());
+		return finish(h);
+	}
+	
+	/**
+	 * Add the given value to the given hash
+	 * @param hash
+	 * @param value
+	 * @return the new hash
+	 */
+	public static long add(long hash, long value){
+		for(int i = 0; i < 8; i++) hash = addByte(hash, (int)(value >>> (i * 8)));
+		return hash;
+	}
+	
+	/**
+	 * Add the given value to the given hash
+	 * @param hash
+	 * @param value
+	 * @return the new hash
+	 */
+	public static long add(long hash, double value){
+		return add(hash, Double.doubleToLongBits(value));
+	}
+	
+	/**
+	 * Add the given value to the given hash
+	 * @param hash
+	 * @param value
+	 * @return the new hash
+	 */
+	public static long add(long hash, boolean value){
+		return addByte(hash, value ? 1 : 0);
+	}
+	
+	/**
+	 * Add the given value to the given hash with a different kind of hash, mixing in all 64 bits at once, like a round of xxHash.
+	 * Used for a second hash that is not related to the first, so two sets of values that have the same FNV-1a hash almost never have the same mixed hash
+	 * @param hash
+	 * @param value
+	 * @return the new hash
+	 */
+	public static long mix(long hash, long value){
+		hash += value * MIX_PRIME_2;
+		hash = Long.rotateLeft(hash, 31);
+		return hash * MIX_PRIME_1;
+	}
+	
+	/**
+	 * Add the given value to the given hash with mix
+	 * @param hash
+	 * @param value
+	 * @return the new hash
+	 */
+	public static long mix(long hash, double value){
+		return mix(hash, Double.doubleToLongBits(value));
+	}
+	
+	/**
+	 * Add the lowest 8 bits of the given value to the given hash
+	 * @param hash
+	 * @param value
+	 * @return the new hash
+	 */
+	private static long addByte(long hash, int value){
+		return (hash ^ (value & 0xFF)) * PRIME;
+	}
+	
+	/**
+	 * Get the fingerprint for the given hash, which is the hash, unless the hash is NONE
+	 * @param hash
+	 * @return
+	 */
+	public static long finish(long hash){
+		if(hash == NONE) return 1;
+		return hash;
+	}
+	
+}
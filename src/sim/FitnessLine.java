@@ -22,6 +22,14 @@ public class FitnessLine extends Line2D.Double{
 	private double angle;
 	private Point2D.Double center;
 	
+	/**
+	 * The smallest and largest x and y of the points of this line, a runner can only touch this line if it is inside of these bounds
+	 */
+	private double minX;
+	private double minY;
+	private double maxX;
+	private double maxY;
+	
 	/**
 	 * @param positive true if the angle from p1 to the test point (the center of the runner), if that angle should be between 0 and 180, false otherwise
 	 */
@@ -46,6 +54,23 @@ public class FitnessLine extends Line2D.Double{
 		angle = Math.toDegrees(Math.atan2(y1 - y2, x1 - x2));
 		if(angle < 0) angle += 360;
 		center = new Point2D.Double((x1 + x2) / 2, (y1 + y2) / 2);
+		
+		minX = Math.min(x1, x2);
+		minY = Math.min(y1, y2);
+		maxX = Math.max(x1, x2);
+		maxY = Math.max(y1, y2);
+	}
+	
+	/**
+	 * Determine if the bounds of this line overlap the given box, if they do not, no circle inside the box can touch this line
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 * @return
+	 */
+	public boolean boundsOverlap(double minX, double minY, double maxX, double maxY){
+		return this.minX <= maxX && this.maxX >= minX && this.minY <= maxY && this.maxY >= minY;
 	}
 	
 	/**
@@ -0,0 +1,433 @@
+package sim;
+
+import data.Settings;
+
+/**
+ * Decides when a runner's place in the order of runners can no longer change, so testing it any longer cannot change which runners are selected,
+ * and its test can end early.
+ * While a runner is tested, the lowest and highest fitness it could still end its test with are found from the most fitness it can gain or lose
+ * in the ticks it has left: each tick adds at most RunnerFitnessBaseGain times the largest speed factor the runner can reach by then,
+ * and each fitness line it could reach can only be crossed once every 2 ticks.
+ * Every CHECK_TICKS ticks, the runners are stopped, and once the range of a runner does not overlap the range of any other runner,
+ * or the fitness of a runner that has finished its test, nothing that happens for the rest of the test can change where the runner is sorted, so its test ends.
+ * A runner whose test ended this way keeps the range it had, so the runners tested after it are still compared with every fitness it could have had.
+ * The order of the runners after sorting is exactly the same as if every runner was tested for the full time,
+ * only the fitness of runners whose tests ended early is lower than it would have been, see Runner.isFitnessPruned.
+ * Those runners must be tested again before they are compared with other runners
+ */
+public class FitnessPruning{
+	
+	/**
+	 * The number of ticks runners are tested for between each time the ranges are checked
+	 */
+	public static final int CHECK_TICKS = 10;
+	/**
+	 * The most entries in the tables of speeds, if the speed can change by a smaller amount each tick, the tables use larger steps,
+	 * which gives a range of fitness that is larger than it needs to be, but is still never too small
+	 */
+	public static final int MAX_TABLE_STEPS = 1 << 16;
+	/**
+	 * The range of fitness of each runner is made larger by this much, relative to the size of the values in it,
+	 * so rounding when adding up fitness can never make a runner end up outside of its range
+	 */
+	private static final double SLACK = 1e-9;
+	/**
+	 * The extra distance a fitness line can be past the reach of a runner and still be counted,
+	 * because fitness lines decide if a runner touches them with their own math, which can round differently
+	 */
+	private static final double REACH_MARGIN = 1;
+	
+	private Settings settings;
+	
+	/**
+	 * false if the settings make it impossible to find the range of fitness a runner can end with, in which case no test ever ends early
+	 */
+	private boolean usable;
+	
+	/**
+	 * The most fitness that can be gained, and the most fitness that can be lost, on one tick at the largest speed factor, before any fitness lines
+	 */
+	private double tickGain;
+	private double tickLoss;
+	
+	/**
+	 * The speed in the tables of speeds changes by this much each step, always at least the most a runner's speed can change each tick
+	 */
+	private double speedStep;
+	/**
+	 * The index of the first step in the tables that is at the highest speed a runner can have
+	 */
+	private int maxStep;
+	/**
+	 * speedFactors[i] is the total of the speed factors, see Runner.getTickFitness, of a runner moving at steps 1 through i of the table
+	 */
+	private double[] speedFactors;
+	/**
+	 * distances[i] is the total distance a runner moving at steps 1 through i of the table travels
+	 */
+	private double[] distances;
+	
+	/**
+	 * The fitness lines of the track the runners are tested on
+	 */
+	private FitnessLine[] fitnessLines;
+	/**
+	 * A grid over the fitness lines, so only the lines near a runner are checked when finding the lines it can reach
+	 */
+	private WallGrid lineGrid;
+	/**
+	 * For each fitness line, the value of lineSearch when the line was last counted, so a line in more than one cell is only counted once
+	 */
+	private int[] lineCounted;
+	private int lineSearch;
+	/**
+	 * true if the distance a runner can move limits the fitness lines it can cross, false if every fitness line must be counted,
+	 * because runners that collide with walls are moved by the walls
+	 */
+	private boolean limitReach;
+	
+	/**
+	 * The runners being tested, each one has the index it has in this array. The runners that are not tested come after them
+	 */
+	private Runner[] runners;
+	/**
+	 * The lowest and highest fitness each runner could end its test with. For runners that died, ran out of time, or are not tested, both are their fitness.
+	 * Runners that were decided keep the range they were decided with
+	 */
+	private double[] low;
+	private double[] high;
+	/**
+	 * For each runner being tested, true if it is still being tested
+	 */
+	private boolean[] active;
+	/**
+	 * For each runner being tested, true if its test ended because its place in the order was certain
+	 */
+	private boolean[] decided;
+	/**
+	 * For each runner being tested, the value of check when its range was last found
+	 */
+	private int[] found;
+	/**
+	 * The number of times the ranges have been checked
+	 */
+	private int check;
+	
+	/**
+	 * The index of every runner, sorted by low and by high from highest to lowest. The orders are kept from one check to the next,
+	 * and Selection.sortDescending is fast on orders that are mostly sorted already, so sorting an order that barely changed since the last check is fast
+	 */
+	private int[] byLow;
+	private int[] byHigh;
+	/**
+	 * The values of low and high in the order of byLow and byHigh
+	 */
+	private double[] lowKeys;
+	private double[] highKeys;
+	/**
+	 * Used while sorting the orders
+	 */
+	private double[] tempKeys;
+	private int[] tempOrder;
+	
+	/**
+	 * The number of ticks that were not tested because a runner's place in the order was decided
+	 */
+	private long ticksSaved;
+	
+	/**
+	 * Create an object to decide when the place of runners in the order is certain, for runners tested on the given track
+	 * @param settings
+	 * @param track
+	 * @param runners the runners being tested
+	 * @param others the runners which are not being tested, but are sorted with the runners that are, each must already have the fitness of a full test
+	 */
+	public FitnessPruning(Settings settings, Track track, Runner[] runners, Runner[] others){
+		this.settings = settings;
+		this.runners = runners;
+		fitnessLines = track.getFitnessLines();
+		lineGrid = new WallGrid(fitnessLines);
+		lineCounted = new int[fitnessLines.length];
+		lineSearch = 0;
+		limitReach = settings.getKillRunner();
+		
+		int total = runners.length + others.length;
+		low = new double[total];
+		high = new double[total];
+		active = new boolean[runners.length];
+		decided = new boolean[runners.length];
+		found = new int[runners.length];
+		check = 0;
+		byLow = new int[total];
+		byHigh = new int[total];
+		lowKeys = new double[total];
+		highKeys = new double[total];
+		tempKeys = new double[total];
+		tempOrder = new int[total];
+		for(int i = 0; i < total; i++){
+			if(i < runners.length){
+				//nothing is known about a runner before it is tested
+				low[i] = Double.NEGATIVE_INFINITY;
+				high[i] = Double.POSITIVE_INFINITY;
+				active[i] = true;
+			}
+			else low[i] = high[i] = others[i - runners.length].getStoredFitness();
+			byLow[i] = i;
+			byHigh[i] = i;
+		}
+		ticksSaved = 0;
+		
+		calculateTickBounds();
+	}
+	
+	/**
+	 * Determine if tests should end once the place of a runner in the order is certain, for the given settings.
+	 * Runners that end early because of EarlyStop do not have exact fitness, so pruning is only used when early stop is not
+	 * @param settings
+	 * @return
+	 */
+	public static boolean isEnabled(Settings settings){
+		return settings.getFitnessPruning() && !EarlyStop.isEnabled(settings);
+	}
+	
+	/**
+	 * Find the most fitness a runner can gain and lose on each tick, and fill the tables of speeds
+	 */
+	private void calculateTickBounds(){
+		double maxSpeed = settings.getRunnerMaxSpeed();
+		double fastest = Math.max(Math.abs(maxSpeed), Math.abs(settings.getRunnerMinSpeed()));
+		double maxView = settings.getRunnerMaxViewDistance();
+		
+		//the speed factor is found from the speed divided by the max speed, which only works if the max speed is positive
+		usable = maxSpeed > 0 && maxView > 0 && fastest > 0;
+		if(!usable) return;
+		
+		//each vision input is the distance to a wall minus the radius, divided by the view distance, so it is from -radius / maxView to 1
+		double wallFactorLow = 1;
+		double wallFactorHigh = 1;
+		if(settings.getRunnerFitnessWall()){
+			double lowestInput = Math.min(1, -settings.getRunnerRadius() / maxView);
+			double valueLow = 0;
+			double valueHigh = 0;
+			double weightTotal = 0;
+			for(int i = 0; i < VisionEngine.NUM_RAYS; i++){
+				double w = settings.getRunnerVisionWeights()[i];
+				valueLow += Math.min(w * lowestInput, w);
+				valueHigh += Math.max(w * lowestInput, w);
+				weightTotal += w;
+			}
+			if(weightTotal == 0){
+				usable = false;
+				return;
+			}
+			wallFactorLow = Math.min(valueLow / weightTotal, valueHigh / weightTotal);
+			wallFactorHigh = Math.max(valueLow / weightTotal, valueHigh / weightTotal);
+		}
+		double base = settings.getRunnerFitnessBaseGain();
+		
+		//the speed factor is never negative, and a runner that dies gains nothing on the rest of its ticks, so 0 is always in the range
+		tickGain = Math.max(0, Math.max(base * wallFactorLow, base * wallFactorHigh));
+		tickLoss = Math.min(0, Math.min(base * wallFactorLow, base * wallFactorHigh));
+		
+		//a brain output is from -1 to 1, so the speed can change by at most RunnerSpeedChange each tick
+		speedStep = Math.max(Math.abs(settings.getRunnerSpeedChange()), fastest / MAX_TABLE_STEPS);
+		maxStep = (int)Math.ceil(fastest / speedStep);
+		speedFactors = new double[maxStep + 1];
+		distances = new double[maxStep + 1];
+		for(int i = 1; i <= maxStep; i++){
+			double s = Math.min(fastest, i * speedStep);
+			speedFactors[i] = speedFactors[i - 1] + getSpeedFactor(s);
+			distances[i] = distances[i - 1] + s;
+		}
+	}
+	
+	/**
+	 * Get the speed factor of Runner.getTickFitness for a runner with the given speed, or 1 if speed does not change fitness
+	 * @param speed
+	 * @return
+	 */
+	private double getSpeedFactor(double speed){
+		if(!settings.getRunnerFitnessSpeed()) return 1;
+		return Math.pow(Math.abs(speed) / settings.getRunnerMaxSpeed(), Math.E);
+	}
+	
+	/**
+	 * Get the total of the values in the given table from step start + 1 to step start + ticks, where every step past the end of the table has the last value
+	 * @param table
+	 * @param last the value of every step past the end of the table
+	 * @param start
+	 * @param ticks
+	 * @return
+	 */
+	private double getTotal(double[] table, double last, int start, int ticks){
+		long end = (long)start + ticks;
+		double endTotal = end <= maxStep ? table[(int)end] : table[maxStep] + (end - maxStep) * last;
+		return endTotal - table[start];
+	}
+	
+	/**
+	 * Check the ranges of every runner being tested by the given engines, and end the tests of the runners whose place in the order is certain.
+	 * A runner is decided if every other runner has a range entirely above or entirely below its range.
+	 * Must be called with every engine stopped at the same tick
+	 * @param engines the engines testing the runners, each must have begun testing its runners from the array this object was made with
+	 * @param remaining the number of ticks the runners have left to be tested
+	 * @return the number of runners that were decided
+	 */
+	public int decide(PopulationEngine[] engines, int remaining){
+		if(!usable || remaining <= 0) return 0;
+		
+		check++;
+		for(PopulationEngine e : engines) e.findRanges(this, remaining);
+		
+		//runners that were not found finished since the last check, by dying or running out of time, so their fitness is exact
+		for(int i = 0; i < runners.length; i++){
+			if(active[i] && found[i] != check){
+				active[i] = false;
+				low[i] = high[i] = runners[i].getStoredFitness();
+			}
+		}
+		
+		Selection.sortDescending(low, byLow, lowKeys, tempKeys, tempOrder);
+		Selection.sortDescending(high, byHigh, highKeys, tempKeys, tempOrder);
+		
+		//a range never overlaps another range if every range either ends below its low value, or starts above its high value.
+		//A range is never entirely below or above itself, so it does not need to be left out
+		int total = byLow.length;
+		int count = 0;
+		for(int i = 0; i < runners.length; i++){
+			if(!active[i]) continue;
+			int below = total - countAtLeast(highKeys, low[i]);
+			int above = countAbove(lowKeys, high[i]);
+			if(below + above == total - 1){
+				//the range is kept, so runners still being tested are compared with every fitness this runner could have had
+				active[i] = false;
+				decided[i] = true;
+				count++;
+				ticksSaved += remaining;
+			}
+		}
+		
+		if(count > 0){
+			for(PopulationEngine e : engines) e.removeDecided(this);
+		}
+		return count;
+	}
+	
+	/**
+	 * Determine if the test of the given runner ended because its place in the order was certain
+	 * @param i the index of the runner
+	 * @return
+	 */
+	public boolean isDecided(int i){
+		return decided[i];
+	}
+	
+	/**
+	 * Find the lowest and highest fitness the given runner could end its test with, called by PopulationEngine.findRanges for each runner still being tested
+	 * @param i the index of the runner
+	 * @param x
+	 * @param y
+	 * @param speed
+	 * @param fitness the fitness of the runner so far
+	 * @param remaining the number of ticks the runner has left to be tested
+	 */
+	public void findRange(int i, double x, double y, double speed, double fitness, int remaining){
+		found[i] = check;
+		if(!usable) return;
+		
+		//the fastest the runner can be moving on each tick it has left is at most one step of speed faster each tick
+		int start = Math.min(maxStep, (int)Math.ceil(Math.abs(speed) / speedStep));
+		double factors = getTotal(speedFactors, speedFactors[maxStep] - speedFactors[maxStep - 1], start, remaining);
+		double gain = tickGain * factors;
+		double loss = tickLoss * factors;
+		
+		//each fitness line the runner can reach can be moved onto or off of at most every other tick
+		double lineFitness = settings.getRunnerFitnessGain();
+		if(lineFitness != 0 && fitnessLines.length > 0){
+			int lines;
+			if(limitReach){
+				double reach = getTotal(distances, distances[maxStep] - distances[maxStep - 1], start, remaining) + settings.getRunnerRadius();
+				lines = countReachable(x, y, reach + REACH_MARGIN);
+			}
+			else lines = fitnessLines.length;
+			
+			long crossings = (long)lines * ((remaining + 1) / 2);
+			long onto = settings.getFitnessLinesGive() ? crossings : 0;
+			//moving onto a line adds the line fitness, moving off of a line the wrong way takes it away
+			gain += onto * Math.max(0, lineFitness) + crossings * Math.max(0, -lineFitness);
+			loss += onto * Math.min(0, lineFitness) + crossings * Math.min(0, -lineFitness);
+		}
+		
+		double slack = SLACK * (1 + Math.abs(fitness) + gain - loss);
+		low[i] = fitness + loss - slack;
+		high[i] = fitness + gain + slack;
+	}
+	
+	/**
+	 * Get the number of fitness lines within the given distance of the given point, only checking the lines in the cells of lineGrid near the point
+	 * @param x
+	 * @param y
+	 * @param reach
+	 * @return
+	 */
+	private int countReachable(double x, double y, double reach){
+		if(!lineGrid.overlaps(x, y, reach)) return 0;
+		lineSearch++;
+		int[] cellLines = lineGrid.getCellWalls();
+		int lines = 0;
+		for(int row = lineGrid.getRow(y - reach); row <= lineGrid.getRow(y + reach); row++){
+			for(int col = lineGrid.getColumn(x - reach); col <= lineGrid.getColumn(x + reach); col++){
+				for(int c = lineGrid.getCellStart(col, row); c < lineGrid.getCellEnd(col, row); c++){
+					int l = cellLines[c];
+					if(lineCounted[l] == lineSearch) continue;
+					lineCounted[l] = lineSearch;
+					if(lineGrid.boundsOverlap(l, x - reach, y - reach, x + reach, y + reach) && fitnessLines[l].ptSegDist(x, y) <= reach) lines++;
+				}
+			}
+		}
+		return lines;
+	}
+	
+	/**
+	 * Get the number of the given keys that are greater than the given value
+	 * @param keys sorted from highest to lowest
+	 * @param value
+	 * @return
+	 */
+	private static int countAbove(double[] keys, double value){
+		int lo = 0;
+		int hi = keys.length;
+		while(lo < hi){
+			int mid = (lo + hi) >>> 1;
+			if(keys[mid] > value) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+	
+	/**
+	 * Get the number of the given keys that are greater than or equal to the given value
+	 * @param keys sorted from highest to lowest
+	 * @param value
+	 * @return
+	 */
+	private static int countAtLeast(double[] keys, double value){
+		int lo = 0;
+		int hi = keys.length;
+		while(lo < hi){
+			int mid = (lo + hi) >>> 1;
+			if(keys[mid] >= value) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+	
+	/**
+	 * Get the number of ticks that were not tested because the place of a runner in the order was decided
+	 * @return
+	 */
+	public long getTicksSaved(){
+		return ticksSaved;
+	}
+	
+}
@@ -1,104 +1,116 @@
 package sim;
 
-import java.awt.BasicStroke;
-import java.awt.Color;
-import java.awt.Font;
-import java.awt.Graphics;
-import java.awt.Graphics2D;
-import java.awt.Point;
-import java.awt.image.BufferedImage;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
 import java.util.Scanner;
 
 import data.Settings;
 
+/**
+ * The genome of a runner's brain: the shape of the net, the weights of every connection, and the mutability.
+ * None of this changes while a net is used, so a net can be calculated on any number of threads at once,
+ * as long as each thread uses its own NeuralNetState to hold the node values
+ */
 public class NeuralNet{
 	
-	/**
-	 * The amount of x and y that is added from the top of a net image before the first node
-	 */
-	public static final int NET_LOC = 30;
-	
 	private Settings settings;
 	
 	/**
-	 * A buffered image that represents the lines drawn for this neural net, the lines represent the weights
+	 * The number of nodes in each layer, including the constant nodes.
+	 * There will always be at least 2 layers.
+	 * All but the last layer, the output layer, will have a constant node at the end that will only connect to the next layer, not the previous
 	 */
-	private BufferedImage netLines;
+	private int[] layerSizes;
 	
 	/**
-	 * The current values of each layer connected by weights. 
-	 * The following describes what each part of the 2D array represents: 
-	 * layers[layer index][node index] = value of the node in that layer at that node index
-	 * there will always be at least 2 layers. 
-	 * All but the last layer, the output layer, will have a constant node that will only connect to the next layer, not the previous
+	 * The weights of every connection this neural net has, stored one layer after another.
+	 * weights[weightOffsets[i] + j * layerSizes[i + 1] + h] is the weight between node j in layer i and node h in layer i + 1.
+	 * Each weight is always between -1 and 1
 	 */
-	private double[][] layers;
-	
+	private double[] weights;
 	/**
-	 * The weights of every connection this neural net has. 
-	 * The following describes what each part of the 3D array represents: 
-	 * weights[layer index][index of the node closest to inputs][index of the node closest to outputs] = the weight between those 2 nodes at that layer index. 
-	 * The layer index, in this case, describes which spot in between 2 layers this weight is at, ie layer index between 0 and 1 for layers is 0 for weigths, 
-	 * and the max layer index of weights will always be exactly one less than the max layer index of layers. 
-	 * Each weight is always between -1 and 1
+	 * The index in weights where the weights between each layer and the next layer start
 	 */
-	private double[][][] weights;
-
+	private int[] weightOffsets;
+	
 	/**
 	 * The rate at which a node weight can change, plus or minus half of the variable
 	 */
 	private double mutability;
+	
 	/**
-	 * the position that the neural net is being drawn to, is not relevant if this net is not being drawn to the screen
+	 * The node values used by the methods that do not take a NeuralNetState, null until they are first needed
 	 */
-	private Point drawnLoc;
+	private NeuralNetState state;
+	
 	/**
-	 * true if all lines of the neural net should be drawn, false if only lines from one node that the mouse is hovoring over should be displayed
+	 * Changed every time the weights of this net are replaced, so a drawing of the weights can tell that it is out of date, see NeuralNetDisplay
 	 */
-	private boolean displayAllLines;
+	private int weightsVersion;
 	
 	/**
-	 * Create an empty neural net, where every weight is 0, and every node value is 0. 
+	 * Create an empty neural net, where every weight is 0, with a random mutability.
 	 * For sizes: sizes[number of nodes in that layer, excluding the hidden node]
 	 * @param sizes
+	 * @param random the random numbers used for the mutability
 	 */
-	public NeuralNet(Settings settings, int[] sizes){
+	public NeuralNet(Settings settings, int[] sizes, RandomStream random){
 		this.settings = settings;
 		
-		//create the layers object, adding in one node, the constant node, to each of the layers except for the output layer,
-		//and setting all values to 0, except for the constant node, which is set to 1
-		layers = new double[sizes.length][0];
-		for(int i = 0; i < layers.length; i++){
-			if(i != layers.length - 1) layers[i] = new double[sizes[i] + 1];
-			else layers[i] = new double[sizes[i]];
-			for(int j = 0; j < layers[i].length; j++){
-				if(j == layers[i].length - 1 && i != layers.length - 1) layers[i][j] = 1;
-				else layers[i][j] = 0;
-			}
+		//add in one node, the constant node, to each of the layers except for the output layer
+		layerSizes = new int[sizes.length];
+		for(int i = 0; i < sizes.length; i++){
+			if(i != sizes.length - 1) layerSizes[i] = sizes[i] + 1;
+			else layerSizes[i] = sizes[i];
 		}
+		createWeights();
 		
-		//Create the sizes of the weights array for each of the corresponding layer lengths, based on the specified lengths in sizes, and set all weights to 0
-		weights = new double[layers.length - 1][0][0];
-		for(int i = 0; i < weights.length; i++){
-			weights[i] = new double[layers[i].length][layers[i + 1].length];
-			for(int j = 0; j < weights[i].length; j++){
-				for(int h = 0; h < weights[i][j].length; h++){
-					weights[i][j][h] = 0;
-				}
-			}
+		mutability = settings.getMinMutability() + random.nextDouble() * (settings.getMaxMutability() - settings.getMinMutability());
+	}
+	
+	/**
+	 * Create an empty neural net with the same shape as the given layer sizes, where every weight is 0, and the mutability is 0
+	 * @param settings
+	 * @param layerSizes the number of nodes in each layer, including the constant nodes
+	 */
+	private NeuralNet(Settings settings, int[] layerSizes){
+		this.settings = settings;
+		this.layerSizes = layerSizes.clone();
+		createWeights();
+	}
+	
+	/**
+	 * Create a neural net by reading it from the given buffer, in the format written by save(ByteBuffer)
+	 * @param settings
+	 * @param buffer
+	 */
+	public NeuralNet(Settings settings, ByteBuffer buffer){
+		this.settings = settings;
+		load(buffer);
+	}
+	
+	/**
+	 * Create the weights array and offsets for the current layer sizes, with every weight set to 0
+	 */
+	private void createWeights(){
+		weightOffsets = new int[layerSizes.length - 1];
+		int total = 0;
+		for(int i = 0; i < weightOffsets.length; i++){
+			weightOffsets[i] = total;
+			total += layerSizes[i] * layerSizes[i + 1];
 		}
-		mutability = settings.getMinMutability() + Math.random() * (settings.getMaxMutability() - settings.getMinMutability());
-		
-		drawnLoc = new Point(0, 0);
-		displayAllLines = true;
+		weights = new double[total];
+		state = null;
+		weightsVersion++;
 	}
 	
 	/**
-	 * Assigns this NeuralNet a new mutability
+	 * Get a new mutability, slightly changed from the mutability of this NeuralNet
+	 * @param random the random numbers used to change the mutability
+	 * @return
 	 */
-	public double newMutability(){
-		double m = mutability + (Math.random() - .5) * settings.getMutabilityChange();
+	public double newMutability(RandomStream random){
+		double m = mutability + (random.nextDouble() - .5) * settings.getMutabilityChange();
 		m = Math.min(m, settings.getMaxMutability());
 		m = Math.max(m, settings.getMinMutability());
 		return m;
@@ -106,15 +118,28 @@ public class NeuralNet{
 	
 	/**
 	 * Assign this neural net with new random weights for the weights object, weights will always be between -1 and 1
+	 * @param random the random numbers used for the weights
 	 */
-	public void randomWeights(){
-		for(int i = 0; i < weights.length; i++){
-			for(int j = 0; j < weights[i].length; j++){
-				for(int h = 0; h < weights[i][j].length; h++){
-					weights[i][j][h] = (Math.random() - .5) * 2;
-				}
-			}
-		}
+	public void randomWeights(RandomStream random){
+		for(int i = 0; i < weights.length; i++) weights[i] = (random.nextDouble() - .5) * 2;
+		weightsVersion++;
+	}
+	
+	/**
+	 * Get a number that changes every time the weights of this net are replaced
+	 * @return
+	 */
+	public int getWeightsVersion(){
+		return weightsVersion;
+	}
+	
+	/**
+	 * Get the node values used by the methods that do not take a NeuralNetState
+	 * @return
+	 */
+	public NeuralNetState getState(){
+		if(state == null) state = new NeuralNetState(this);
+		return state;
 	}
 	
 	/**
@@ -122,35 +147,55 @@ public class NeuralNet{
 	 * @param inputs
 	 */
 	public void setInputs(double... inputs){
-		for(int i = 0; i < inputs.length; i++){
-			layers[0][i] = inputs[i];
-		}
+		getState().setInputs(inputs);
 	}
 	
 	/**
 	 * Determines the values of each node in each layer, to find the proper outputs based on the inputs
 	 */
 	public void calculateOutputs(){
+		calculateOutputs(getState());
+	}
+	
+	/**
+	 * Set the inputs of the given state, then determine the values of each node in each layer of it
+	 * @param inputs
+	 * @param s a state made for this net, or a net of the same shape
+	 */
+	public void calculateOutputs(double[] inputs, NeuralNetState s){
+		s.setInputs(inputs);
+		calculateOutputs(s);
+	}
+	
+	/**
+	 * Determines the values of each node in each layer of the given state, to find the proper outputs based on the inputs in that state.
+	 * Nothing is allocated, and this net is not changed, so different threads can use the same net with different states
+	 * @param s a state made for this net, or a net of the same shape
+	 */
+	public void calculateOutputs(NeuralNetState s){
 		//ensure the constant nodes are at 1
-		for(int i = 0; i < layers.length - 1; i++) layers[i][layers[i].length - 1] = 1;
-			
+		for(int i = 0; i < layerSizes.length - 1; i++) s.getLayer(i)[layerSizes[i] - 1] = 1;
+		
 		//do the calculations
-		for(int i = 1; i < layers.length; i++){
+		for(int i = 1; i < layerSizes.length; i++){
+			double[] in = s.getLayer(i - 1);
+			double[] out = s.getLayer(i);
+			int numIn = layerSizes[i - 1];
+			int numOut = layerSizes[i];
+			int offset = weightOffsets[i - 1];
 			
-			double[] totals = new double[layers[i].length];
-			for(int j = 0; j < totals.length; j++) totals[j] = 0;
+			for(int h = 0; h < numOut; h++) out[h] = 0;
 			
-			for(int j = 0; j < weights[i - 1].length; j++){
-				for(int h = 0; h < weights[i - 1][j].length; h++) 
-					totals[h] += weights[i - 1][j][h] * layers[i - 1][j];
-			}
-			for(int j = 0; j < totals.length; j++){
-				layers[i][j] = sigmoid(totals[j]);
+			for(int j = 0; j < numIn; j++){
+				double value = in[j];
+				int row = offset + j * numOut;
+				for(int h = 0; h < numOut; h++) out[h] += weights[row + h] * value;
 			}
+			Activation.applyAll(settings.getActivationMode(), out, 0, numOut);
 		}
 		
 		//ensure the constant nodes are at 1 again
-		for(int i = 0; i < layers.length - 1; i++) layers[i][layers[i].length - 1] = 1;
+		for(int i = 0; i < layerSizes.length - 1; i++) s.getLayer(i)[layerSizes[i] - 1] = 1;
 	}
 	
 	/**
@@ -160,7 +205,18 @@ public class NeuralNet{
 	 * @return
 	 */
 	public double getNodeValue(int i, int j){
-		return layers[i][j];
+		return getState().getNodeValue(i, j);
+	}
+	
+	/**
+	 * Get the weight between node j in layer i and node h in layer i + 1
+	 * @param i
+	 * @param j
+	 * @param h
+	 * @return
+	 */
+	public double getWeight(int i, int j, int h){
+		return weights[weightOffsets[i] + j * layerSizes[i + 1] + h];
 	}
 	
 	/**
@@ -168,7 +224,16 @@ public class NeuralNet{
 	 * @return
 	 */
 	public int getNumLayers(){
-		return layers.length;
+		return layerSizes.length;
+	}
+	
+	/**
+	 * The number of nodes in layer i, including the constant node
+	 * @param i
+	 * @return
+	 */
+	public int getLayerSize(int i){
+		return layerSizes[i];
 	}
 	
 	/**
@@ -181,243 +246,168 @@ public class NeuralNet{
 	
 	/**
 	 * Get a slightly mutated version of this NeuralNet
+	 * @param random the random numbers used for the mutations
 	 * @return
 	 */
-	public NeuralNet getMutatedBrain(){
+	public NeuralNet getMutatedBrain(RandomStream random){
 		//make a new net of the same size as this net
-		NeuralNet mutatedNet = new NeuralNet(settings, getSizes());
+		NeuralNet mutatedNet = new NeuralNet(settings, layerSizes);
 		
-		//set all the layer values to be the same as this net
-		for(int i = 0; i < layers.length; i++){
-			for(int j = 0; j < layers[i].length; j++){
-				mutatedNet.layers[i][j] = layers[i][j];
-			}
-		}
-		
-		mutatedNet.mutability = newMutability();
+		mutatedNet.mutability = newMutability(random);
 		
 		//set all the weights values to be the same as this net, but mutated slightly
 		for(int i = 0; i < weights.length; i++){
-			for(int j = 0; j < weights[i].length; j++){
-				for(int h = 0; h < weights[i][j].length; h++){
-					//calculate a new weight
-					double w =  weights[i][j][h] + (Math.random() - .5) * mutatedNet.mutability;
-					
-					//ensure that the new weight is between -1 and 1 inclusive
-					w = Math.min(w, 1);
-					w = Math.max(w, -1);
-					
-					//set the new weight
-					mutatedNet.weights[i][j][h] = w;
-				}
-			}
+			//calculate a new weight
+			double w =  weights[i] + (random.nextDouble() - .5) * mutatedNet.mutability;
+			
+			//ensure that the new weight is between -1 and 1 inclusive
+			w = Math.min(w, 1);
+			w = Math.max(w, -1);
+			
+			//set the new weight
+			mutatedNet.weights[i] = w;
 		}
 		
 		return mutatedNet;
 	}
 	
+	/**
+	 * Get a copy of this NeuralNet, with the same shape, weights, and mutability, but its own node values
+	 * @return
+	 */
+	public NeuralNet copy(){
+		NeuralNet net = new NeuralNet(settings, layerSizes);
+		net.mutability = mutability;
+		System.arraycopy(weights, 0, net.weights, 0, weights.length);
+		return net;
+	}
+	
 	/**
 	 * Get the number of nodes in each layer, excluding hidden nodes, formatted in the same way as the parameter for the creation of a new NeuralNet
 	 * @return
 	 */
 	public int[] getSizes(){
-		int[] sizes = new int[layers.length];
-		for(int i = 0; i < layers.length; i++){
-			if(i < layers.length - 1) sizes[i] = layers[i].length - 1;
-			else sizes[i] = layers[i].length;
+		int[] sizes = new int[layerSizes.length];
+		for(int i = 0; i < layerSizes.length; i++){
+			if(i < layerSizes.length - 1) sizes[i] = layerSizes[i] - 1;
+			else sizes[i] = layerSizes[i];
 		}
 		return sizes;
 	}
 	
-	/**
-	 * Get the net lines of this neural net
-	 * @return
-	 */
-	public BufferedImage getNetLines(){
-		return netLines;
+	public void save(PrintWriter write){
+		//save misc data
+		write.println(mutability);
+		
+		//save weight values
+		write.println(weightOffsets.length);
+		for(int i = 0; i < weightOffsets.length; i++){
+			write.println(layerSizes[i]);
+			for(int j = 0; j < layerSizes[i]; j++){
+				write.println(layerSizes[i + 1]);
+				int row = weightOffsets[i] + j * layerSizes[i + 1];
+				for(int h = 0; h < layerSizes[i + 1]; h++) write.print(weights[row + h] + " ");
+				write.println();
+			}
+		}
 	}
 	
 	/**
-	 * Returns a buffered image that has a display of the current state of the neural net
-	 * @return
+	 * Load in this NeuralNet from the given Scanner, the shape of the net is also loaded
 	 */
-	public BufferedImage getDisplay(){
-		BufferedImage img = new BufferedImage(netLines.getWidth(), netLines.getHeight(), BufferedImage.TYPE_4BYTE_ABGR);
-		Graphics g = img.getGraphics();
-		g.drawImage(netLines, 0, 0, null);
+	public void load(Scanner scan){
+		//load misc data
+		mutability = scan.nextDouble();
 		
-		for(int i = 0; i < layers.length; i++){
-			for(int j = 0; j < layers[i].length; j++){
-				
-				int spaceNodes = layers[i].length - 1;
-				if(spaceNodes < 1) spaceNodes = 1;
-				
-				int nodeSpacing = (img.getHeight() - NET_LOC * 2) / spaceNodes;
-				
-				g.setColor(Color.BLACK);
-				g.fillOval(NET_LOC - settings.getNodeDispRadius() + i * settings.getNodeDispSpacing(),
-						   NET_LOC - settings.getNodeDispRadius() + j * nodeSpacing,
-						   settings.getNodeDispRadius() * 2, settings.getNodeDispRadius() * 2);
-				double node = layers[i][j];
-				if(node < 0){
-					int fade = (int)(255 * (1 - node / -1.0));
-					fade = Math.min(fade, 255);
-					fade = Math.max(fade, 0);
-					g.setColor(new Color(255, fade, fade));
-				}
-				else{
-					int fade = (int)(255 * (1 - node / 1.0));
-					fade = Math.min(fade, 255);
-					fade = Math.max(fade, 0);
-					g.setColor(new Color(fade, fade, 255));
-				}
-				g.fillOval(NET_LOC - settings.getNodeDispRadius() + 2 + i * settings.getNodeDispSpacing(),
-						   NET_LOC - settings.getNodeDispRadius() + 2 + j * nodeSpacing,
-						   settings.getNodeDispRadius() * 2 - 4, settings.getNodeDispRadius() * 2 - 4);
-				g.setColor(Color.BLACK);
-				g.setFont(new Font(settings.getFontName(), Font.BOLD, 15));
-				g.drawString("" + (int)Math.round(node * 1000), NET_LOC + i * settings.getNodeDispSpacing() - 15, NET_LOC + j * nodeSpacing + 5);
+		//load weights, each row of weights is read in first, because the size of the next layer is only known once a row is read
+		double[][][] loaded = new double[scan.nextInt()][0][0];
+		for(int i = 0; i < loaded.length; i++){
+			loaded[i] = new double[scan.nextInt()][0];
+			for(int j = 0; j < loaded[i].length; j++){
+				loaded[i][j] = new double[scan.nextInt()];
+				for(int h = 0; h < loaded[i][j].length; h++) loaded[i][j][h] = scan.nextDouble();
 			}
 		}
 		
-		return img;
+		layerSizes = new int[loaded.length + 1];
+		for(int i = 0; i < loaded.length; i++){
+			layerSizes[i] = loaded[i].length;
+			layerSizes[i + 1] = loaded[i][0].length;
+		}
+		createWeights();
+		for(int i = 0; i < loaded.length; i++){
+			for(int j = 0; j < loaded[i].length; j++){
+				for(int h = 0; h < loaded[i][j].length; h++) weights[weightOffsets[i] + j * layerSizes[i + 1] + h] = loaded[i][j][h];
+			}
+		}
 	}
 	
 	/**
-	 * erases the netLines image to save space
+	 * Add the mutability, shape, and weights of this NeuralNet to the given hash, see Fingerprint
+	 * @param hash
+	 * @return the new hash
 	 */
-	public void eraseNetLines(){
-		netLines = null;
+	public long addToFingerprint(long hash){
+		hash = Fingerprint.add(hash, mutability);
+		hash = Fingerprint.add(hash, layerSizes.length);
+		for(int size : layerSizes) hash = Fingerprint.add(hash, size);
+		for(double w : weights) hash = Fingerprint.add(hash, w);
+		return hash;
 	}
 	
 	/**
-	 * Draws the net lines representing the weights of this neural net to the corresponding image
+	 * Add the same values as addToFingerprint to the given hash, using Fingerprint.mix, to make a second hash that is not related to the first
+	 * @param hash
+	 * @return the new hash
 	 */
-	public void drawNetLines(){
-		drawNetLines(0, 0);
-	}
-	/**
-	 * Draws the net lines representing the weights of this neural net to the corresponding image, 
-	 * the x and y represent the location of the mouse for to decide if only certain lines should display
-	 * @param x
-	 * @param y
-	 */
-	public void drawNetLines(int x, int y){
-		resetNetLineImage();
-		Graphics2D g = (Graphics2D)netLines.getGraphics();
-		g.setStroke(new BasicStroke(2f));
-		g.setColor(Color.BLACK);
-		int ww = netLines.getWidth();
-		int hh = netLines.getHeight();
-		g.drawLine(0, 0, ww, 0);
-		g.drawLine(ww, 0, ww, hh);
-		g.drawLine(ww, hh, 0, hh);
-		g.drawLine(0, hh, 0, 0);
-		
-		for(int i = 0; i < weights.length; i++){
-			for(int j = 0; j < weights[i].length; j++){
-				for(int h = 0; h < weights[i][j].length; h++){
-					int spaceNodes = layers[i + 1].length - 1;
-					if(spaceNodes < 1) spaceNodes = 1;
-					int nodeSpacing1 = (hh - NET_LOC * 2) / spaceNodes;
-
-					spaceNodes = layers[i].length - 1;
-					if(spaceNodes < 1) spaceNodes = 1;
-					int nodeSpacing2 = (hh - NET_LOC * 2) / spaceNodes;
-					
-					int x1 = NET_LOC + (i + 1) * settings.getNodeDispSpacing();
-					int y1 = NET_LOC + h * nodeSpacing1;
-					int x2 = NET_LOC+ i * settings.getNodeDispSpacing();
-					int y2 = NET_LOC + j * nodeSpacing2;
-					
-					//only draw a line if all lines should be drawn, or the mouse is on the node that should have lines coming from it
-					if(displayAllLines ||
-							settings.getNodeDispRadius() > new Point(x - drawnLoc.x, y - drawnLoc.y).distance(x1, y1) ||
-							settings.getNodeDispRadius() > new Point(x - drawnLoc.x, y - drawnLoc.y).distance(x2, y2)){
-						double weight = weights[i][j][h];
-						if(weight < 0) g.setColor(new Color(255, 0, 0, (int)(255 * (weight / -1.0))));
-						else g.setColor(new Color(0, 0, 255, (int)(255 * (weight / 1.0))));
-						g.drawLine(x1, y1, x2, y2);
-					}
-				}
-			}
-		}
+	public long addToCheck(long hash){
+		hash = Fingerprint.mix(hash, mutability);
+		hash = Fingerprint.mix(hash, layerSizes.length);
+		for(int size : layerSizes) hash = Fingerprint.mix(hash, size);
+		for(double w : weights) hash = Fingerprint.mix(hash, w);
+		return hash;
 	}
 	
 	/**
-	 * resets the net line buffered image object to a default state
+	 * Get the number of bytes save(ByteBuffer) writes for this NeuralNet
+	 * @return
 	 */
-	public void resetNetLineImage(){
-		int bigIndex = -1;
-		for(int i = 0; i < layers.length; i++){
-			if(bigIndex == -1 || layers[i].length > layers[bigIndex].length) bigIndex = i;
-		}
-		
-		int extraHeight = layers[bigIndex].length * 100;
-		if(extraHeight > settings.getNodeDispMaxHeight()) extraHeight = settings.getNodeDispMaxHeight();
-		
-		netLines = new BufferedImage(NET_LOC * 2 + (layers.length - 1) * settings.getNodeDispSpacing(), 100 + extraHeight, BufferedImage.TYPE_4BYTE_ABGR);
+	public int getSaveSize(){
+		return 8 + 4 + layerSizes.length * 4 + weights.length * 8;
 	}
 	
 	/**
-	 * Set the position that the neural net is being drawn at
-	 * @param x
-	 * @param y
+	 * Save this NeuralNet to the given buffer: the mutability, the number of layers, the size of each layer, then every weight in order
+	 * @param buffer
 	 */
-	public void setDisplayDrawPoint(int x, int y){
-		drawnLoc = new Point(x, y);
-	}
-	public Point getDisplayDrawPoint(){
-		return drawnLoc;
-	}
-	public void setDisplayAllLines(boolean b){
-		displayAllLines = b;
-	}
-	public boolean getDisplayAllLines(){
-		return displayAllLines;
-	}
-	
-	public void save(PrintWriter write){
-		//save misc data
-		write.println(mutability);
-		
-		//save weight values
-		write.println(weights.length);
-		for(double[][] d : weights){
-			write.println(d.length);
-			for(double[] dd : d){
-				write.println(dd.length);
-				for(double ddd : dd) write.print(ddd + " ");
-				write.println();
-			}
-		}
+	public void save(ByteBuffer buffer){
+		buffer.putDouble(mutability);
+		buffer.putInt(layerSizes.length);
+		for(int size : layerSizes) buffer.putInt(size);
+		buffer.asDoubleBuffer().put(weights);
+		buffer.position(buffer.position() + weights.length * 8);
 	}
 	
 	/**
-	 * Load in this NeuralNet from the given Scanner
+	 * Load in this NeuralNet from the given buffer, in the format written by save(ByteBuffer), the shape of the net is also loaded
+	 * @param buffer
 	 */
-	public void load(Scanner scan){
-		//load misc data
-		mutability = scan.nextDouble();
-		
-		//load weights
-		weights = new double[scan.nextInt()][0][0];
-		for(int i = 0; i < weights.length; i++){
-			weights[i] = new double[scan.nextInt()][0];
-			for(int j = 0; j < weights[i].length; j++){
-				weights[i][j] = new double[scan.nextInt()];
-				for(int h = 0; h < weights[i][j].length; h++) weights[i][j][h] = scan.nextDouble();
-			}
-		}
+	public void load(ByteBuffer buffer){
+		mutability = buffer.getDouble();
+		layerSizes = new int[buffer.getInt()];
+		for(int i = 0; i < layerSizes.length; i++) layerSizes[i] = buffer.getInt();
+		createWeights();
+		buffer.asDoubleBuffer().get(weights);
+		buffer.position(buffer.position() + weights.length * 8);
 	}
 	
 	/**
-	 * Return a number between -1 and 1
+	 * Return a number between -1 and 1, see Activation for faster ways of calculating this
 	 * @param x
 	 * @return
 	 */
 	public static double sigmoid(double x){
-		return (1.0 / (1.0 + Math.pow(Math.E, -x)) - .5) * 2;
+		return Activation.exact(x);
 	}
 	
 }
@@ -0,0 +1,361 @@
+package sim;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import data.Settings;
+
+/**
+ * Draws a NeuralNet and the current values of its nodes, kept apart from the net so that nets that are never looked at never hold an image.
+ * Nothing is drawn until getDisplay or getNetLines is called, so only the net on screen is ever drawn.
+ * The lines, which show the weights, are kept in a cache shared by every display, holding the MAX_LINE_IMAGES most recently used images,
+ * so moving the mouse back to a node, or watching the same runner again, does not draw the lines again.
+ * The nodes are drawn over the lines, and only drawn again when the value of a node or the lines change.
+ * Only used by the thread drawing the window
+ */
+public class NeuralNetDisplay{
+	
+	/**
+	 * The amount of x and y that is added from the top of a net image before the first node
+	 */
+	public static final int NET_LOC = 30;
+	
+	/**
+	 * The most line images kept in the cache
+	 */
+	public static final int MAX_LINE_IMAGES = 8;
+	
+	/**
+	 * The value of hoverLayer when all lines are drawn
+	 */
+	private static final int ALL_LINES = -1;
+	/**
+	 * The value of hoverLayer when only lines from a node under the mouse are drawn, but the mouse is not on a node
+	 */
+	private static final int NO_LINES = -2;
+	
+	/**
+	 * The line images of every display, from least to most recently used. Images of nets that are no longer drawn are forgotten once enough other images are drawn,
+	 * and images of a net whose weights changed, or drawn with different settings, are never used again, because their key no longer matches
+	 */
+	private static final LinkedHashMap<LinesKey, BufferedImage> lineCache = new LinkedHashMap<LinesKey, BufferedImage>(16, .75f, true){
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<LinesKey, BufferedImage> eldest){
+			return size() > MAX_LINE_IMAGES;
+		}
+	};
+	
+	/**
+	 * Everything a line image depends on
+	 */
+	private static class LinesKey{
+		NeuralNet net;
+		int weightsVersion;
+		int hoverLayer;
+		int hoverNode;
+		int spacing;
+		int radius;
+		int maxHeight;
+		
+		@Override
+		public boolean equals(Object o){
+			if(!(o instanceof LinesKey)) return false;
+			LinesKey k = (LinesKey)o;
+			return net == k.net && weightsVersion == k.weightsVersion && hoverLayer == k.hoverLayer && hoverNode == k.hoverNode &&
+				   spacing == k.spacing && radius == k.radius && maxHeight == k.maxHeight;
+		}
+		
+		@Override
+		public int hashCode(){
+			int h = System.identityHashCode(net);
+			h = h * 31 + weightsVersion;
+			h = h * 31 + hoverLayer;
+			h = h * 31 + hoverNode;
+			h = h * 31 + spacing;
+			h = h * 31 + radius;
+			return h * 31 + maxHeight;
+		}
+	}
+	
+	private Settings settings;
+	
+	/**
+	 * The net this display draws
+	 */
+	private NeuralNet net;
+	
+	/**
+	 * the position that the neural net is being drawn to
+	 */
+	private Point drawnLoc;
+	/**
+	 * true if all lines of the neural net should be drawn, false if only lines from one node that the mouse is hovoring over should be displayed
+	 */
+	private boolean displayAllLines;
+	/**
+	 * The layer and index of the node the mouse is on, only used when displayAllLines is false, hoverLayer is NO_LINES if the mouse is not on a node
+	 */
+	private int hoverLayer;
+	private int hoverNode;
+	
+	/**
+	 * The image of the lines and nodes, reused for every frame, null until getDisplay is first called
+	 */
+	private BufferedImage display;
+	/**
+	 * The line image display was last drawn with
+	 */
+	private BufferedImage displayLines;
+	/**
+	 * The value of each node when display was last drawn, in order of layer then node
+	 */
+	private double[] displayValues;
+	/**
+	 * The font used for the values of the nodes, made again if the font setting changes
+	 */
+	private Font nodeFont;
+	
+	public NeuralNetDisplay(Settings settings, NeuralNet net){
+		this.settings = settings;
+		this.net = net;
+		
+		drawnLoc = new Point(0, 0);
+		displayAllLines = true;
+		hoverLayer = NO_LINES;
+	}
+	
+	public NeuralNet getNet(){
+		return net;
+	}
+	
+	/**
+	 * Get the net lines of the neural net, drawing them if they are not in the cache
+	 * @return
+	 */
+	public BufferedImage getNetLines(){
+		LinesKey key = new LinesKey();
+		key.net = net;
+		key.weightsVersion = net.getWeightsVersion();
+		key.hoverLayer = displayAllLines ? ALL_LINES : hoverLayer;
+		key.hoverNode = displayAllLines ? 0 : hoverNode;
+		key.spacing = settings.getNodeDispSpacing();
+		key.radius = settings.getNodeDispRadius();
+		key.maxHeight = settings.getNodeDispMaxHeight();
+		
+		BufferedImage lines = lineCache.get(key);
+		if(lines == null){
+			lines = drawNetLines(key.hoverLayer, key.hoverNode);
+			lineCache.put(key, lines);
+		}
+		return lines;
+	}
+	
+	/**
+	 * Returns a buffered image that has a display of the current state of the neural net.
+	 * The image is reused, and only drawn again if the value of a node or the lines have changed since it was last drawn
+	 * @return
+	 */
+	public BufferedImage getDisplay(){
+		BufferedImage lines = getNetLines();
+		if(display == null || display.getWidth() != lines.getWidth() || display.getHeight() != lines.getHeight()){
+			display = new BufferedImage(lines.getWidth(), lines.getHeight(), BufferedImage.TYPE_4BYTE_ABGR);
+			displayLines = null;
+		}
+		if(nodeFont == null || !nodeFont.getName().equals(settings.getFontName())){
+			nodeFont = new Font(settings.getFontName(), Font.BOLD, 15);
+			displayLines = null;
+		}
+		//always check the values, so the stored values are the right size before drawing
+		boolean changed = valuesChanged();
+		if(lines == displayLines && !changed) return display;
+		
+		Graphics2D g = (Graphics2D)display.getGraphics();
+		//replace the old image entirely, including its transparent parts
+		g.setComposite(AlphaComposite.Src);
+		g.drawImage(lines, 0, 0, null);
+		g.setComposite(AlphaComposite.SrcOver);
+		g.setFont(nodeFont);
+		
+		int v = 0;
+		for(int i = 0; i < net.getNumLayers(); i++){
+			for(int j = 0; j < net.getLayerSize(i); j++){
+				
+				int spaceNodes = net.getLayerSize(i) - 1;
+				if(spaceNodes < 1) spaceNodes = 1;
+				
+				int nodeSpacing = (display.getHeight() - NET_LOC * 2) / spaceNodes;
+				
+				g.setColor(Color.BLACK);
+				g.fillOval(NET_LOC - settings.getNodeDispRadius() + i * settings.getNodeDispSpacing(),
+						   NET_LOC - settings.getNodeDispRadius() + j * nodeSpacing,
+						   settings.getNodeDispRadius() * 2, settings.getNodeDispRadius() * 2);
+				double node = net.getNodeValue(i, j);
+				displayValues[v++] = node;
+				if(node < 0){
+					int fade = (int)(255 * (1 - node / -1.0));
+					fade = Math.min(fade, 255);
+					fade = Math.max(fade, 0);
+					g.setColor(new Color(255, fade, fade));
+				}
+				else{
+					int fade = (int)(255 * (1 - node / 1.0));
+					fade = Math.min(fade, 255);
+					fade = Math.max(fade, 0);
+					g.setColor(new Color(fade, fade, 255));
+				}
+				g.fillOval(NET_LOC - settings.getNodeDispRadius() + 2 + i * settings.getNodeDispSpacing(),
+						   NET_LOC - settings.getNodeDispRadius() + 2 + j * nodeSpacing,
+						   settings.getNodeDispRadius() * 2 - 4, settings.getNodeDispRadius() * 2 - 4);
+				g.setColor(Color.BLACK);
+				g.drawString("" + (int)Math.round(node * 1000), NET_LOC + i * settings.getNodeDispSpacing() - 15, NET_LOC + j * nodeSpacing + 5);
+			}
+		}
+		g.dispose();
+		displayLines = lines;
+		
+		return display;
+	}
+	
+	/**
+	 * Determine if the value of any node is different from when the display was last drawn
+	 * @return
+	 */
+	private boolean valuesChanged(){
+		int count = 0;
+		for(int i = 0; i < net.getNumLayers(); i++) count += net.getLayerSize(i);
+		if(displayValues == null || displayValues.length != count){
+			displayValues = new double[count];
+			return true;
+		}
+		
+		int v = 0;
+		boolean changed = false;
+		for(int i = 0; i < net.getNumLayers() && !changed; i++){
+			for(int j = 0; j < net.getLayerSize(i) && !changed; j++) changed = displayValues[v++] != net.getNodeValue(i, j);
+		}
+		return changed;
+	}
+	
+	/**
+	 * Find the node the given mouse position is on, which decides the lines drawn when only lines from one node should be displayed.
+	 * The lines are drawn the next time they are needed
+	 * @param x
+	 * @param y
+	 */
+	public void updateMouse(int x, int y){
+		hoverLayer = NO_LINES;
+		hoverNode = 0;
+		Point mouse = new Point(x - drawnLoc.x, y - drawnLoc.y);
+		int hh = getHeight();
+		for(int i = 0; i < net.getNumLayers() && hoverLayer == NO_LINES; i++){
+			int spaceNodes = net.getLayerSize(i) - 1;
+			if(spaceNodes < 1) spaceNodes = 1;
+			int nodeSpacing = (hh - NET_LOC * 2) / spaceNodes;
+			for(int j = 0; j < net.getLayerSize(i); j++){
+				if(settings.getNodeDispRadius() > mouse.distance(NET_LOC + i * settings.getNodeDispSpacing(), NET_LOC + j * nodeSpacing)){
+					hoverLayer = i;
+					hoverNode = j;
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Draw a new image of the net lines representing the weights of the neural net
+	 * @param hoverLayer the layer of the node to draw lines from, ALL_LINES to draw every line, or NO_LINES to draw none
+	 * @param hoverNode the index of the node to draw lines from
+	 * @return
+	 */
+	private BufferedImage drawNetLines(int hoverLayer, int hoverNode){
+		BufferedImage netLines = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_4BYTE_ABGR);
+		Graphics2D g = (Graphics2D)netLines.getGraphics();
+		g.setStroke(new BasicStroke(2f));
+		g.setColor(Color.BLACK);
+		int ww = netLines.getWidth();
+		int hh = netLines.getHeight();
+		g.drawLine(0, 0, ww, 0);
+		g.drawLine(ww, 0, ww, hh);
+		g.drawLine(ww, hh, 0, hh);
+		g.drawLine(0, hh, 0, 0);
+		
+		for(int i = 0; i < net.getNumLayers() - 1; i++){
+			for(int j = 0; j < net.getLayerSize(i); j++){
+				for(int h = 0; h < net.getLayerSize(i + 1); h++){
+					int spaceNodes = net.getLayerSize(i + 1) - 1;
+					if(spaceNodes < 1) spaceNodes = 1;
+					int nodeSpacing1 = (hh - NET_LOC * 2) / spaceNodes;
+					
+					spaceNodes = net.getLayerSize(i) - 1;
+					if(spaceNodes < 1) spaceNodes = 1;
+					int nodeSpacing2 = (hh - NET_LOC * 2) / spaceNodes;
+					
+					int x1 = NET_LOC + (i + 1) * settings.getNodeDispSpacing();
+					int y1 = NET_LOC + h * nodeSpacing1;
+					int x2 = NET_LOC+ i * settings.getNodeDispSpacing();
+					int y2 = NET_LOC + j * nodeSpacing2;
+					
+					//only draw a line if all lines should be drawn, or the mouse is on the node that should have lines coming from it
+					if(hoverLayer == ALL_LINES || hoverLayer == i + 1 && hoverNode == h || hoverLayer == i && hoverNode == j){
+						double weight = net.getWeight(i, j, h);
+						if(weight < 0) g.setColor(new Color(255, 0, 0, (int)(255 * (weight / -1.0))));
+						else g.setColor(new Color(0, 0, 255, (int)(255 * (weight / 1.0))));
+						g.drawLine(x1, y1, x2, y2);
+					}
+				}
+			}
+		}
+		g.dispose();
+		return netLines;
+	}
+	
+	/**
+	 * Get the width of the images of this display
+	 * @return
+	 */
+	public int getWidth(){
+		return NET_LOC * 2 + (net.getNumLayers() - 1) * settings.getNodeDispSpacing();
+	}
+	
+	/**
+	 * Get the height of the images of this display, based on the size of the biggest layer
+	 * @return
+	 */
+	public int getHeight(){
+		int bigIndex = -1;
+		for(int i = 0; i < net.getNumLayers(); i++){
+			if(bigIndex == -1 || net.getLayerSize(i) > net.getLayerSize(bigIndex)) bigIndex = i;
+		}
+		
+		int extraHeight = net.getLayerSize(bigIndex) * 100;
+		if(extraHeight > settings.getNodeDispMaxHeight()) extraHeight = settings.getNodeDispMaxHeight();
+		return 100 + extraHeight;
+	}
+	
+	/**
+	 * Set the position that the neural net is being drawn at
+	 * @param x
+	 * @param y
+	 */
+	public void setDisplayDrawPoint(int x, int y){
+		drawnLoc = new Point(x, y);
+	}
+	public Point getDisplayDrawPoint(){
+		return drawnLoc;
+	}
+	public void setDisplayAllLines(boolean b){
+		displayAllLines = b;
+	}
+	public boolean getDisplayAllLines(){
+		return displayAllLines;
+	}
+	
+}
@@ -0,0 +1,66 @@
+package sim;
+
+/**
+ * The current values of each node of a NeuralNet, kept apart from the net so that one net can be calculated by several threads at once,
+ * and so calculating a net does not need to allocate anything
+ */
+public class NeuralNetState{
+	
+	/**
+	 * The current values of each layer.
+	 * layers[layer index][node index] = value of the node in that layer at that node index.
+	 * All but the last layer, the output layer, end with a constant node, which is 1 before and after the net is calculated
+	 */
+	private double[][] layers;
+	
+	/**
+	 * Create a state for the given net, with every node value at 0, except for the constant nodes, which are at 1
+	 * @param net
+	 */
+	public NeuralNetState(NeuralNet net){
+		layers = new double[net.getNumLayers()][0];
+		for(int i = 0; i < layers.length; i++){
+			layers[i] = new double[net.getLayerSize(i)];
+			if(i != layers.length - 1) layers[i][layers[i].length - 1] = 1;
+		}
+	}
+	
+	/**
+	 * Determine if this state can be used to calculate the given net
+	 * @param net
+	 * @return true if this state has the same number of nodes in each layer as the net
+	 */
+	public boolean fits(NeuralNet net){
+		if(net.getNumLayers() != layers.length) return false;
+		for(int i = 0; i < layers.length; i++) if(net.getLayerSize(i) != layers[i].length) return false;
+		return true;
+	}
+	
+	/**
+	 * Set all the values of all the inputs, inputs must be the same size as the input layer, excluding the hiden node
+	 * @param inputs
+	 */
+	public void setInputs(double... inputs){
+		for(int i = 0; i < inputs.length; i++) layers[0][i] = inputs[i];
+	}
+	
+	/**
+	 * Get the value of the node in layer i at node j
+	 * @param i
+	 * @param j
+	 * @return
+	 */
+	public double getNodeValue(int i, int j){
+		return layers[i][j];
+	}
+	
+	/**
+	 * Get the array holding the values of layer i, for the net to calculate into
+	 * @param i
+	 * @return
+	 */
+	double[] getLayer(int i){
+		return layers[i];
+	}
+	
+}
@@ -0,0 +1,388 @@
+package sim;
+
+import data.Settings;
+
+/**
+ * Tests a group of runners together, moving every runner that is still alive forward by one tick before moving on to the next tick.
+ * The position, speed, angle, and fitness of every runner are kept in arrays, rather than in the runner objects.
+ * Each runner that is still alive has a slot in those arrays, and when a runner dies, the runner in the last slot is moved into its slot,
+ * so the runners that are still alive always fill the first slots.
+ * When every brain has the same shape, the brains of all living runners are calculated together in a BrainBatch.
+ * Every runner goes through exactly the same math as Runner.testRunner, in the same order, so the fitness each runner ends up with is exactly the same.
+ * A test can also be run a few ticks at a time, see begin, run, and finish, so that runners can be pruned between ticks, see FitnessPruning
+ */
+public class PopulationEngine{
+	
+	private Settings settings;
+	
+	/**
+	 * The track the runners are tested on
+	 */
+	private Track track;
+	
+	/**
+	 * The runners currently being tested
+	 */
+	private Runner[] runners;
+	/**
+	 * The brains of all the runners being tested, null if the brains cannot be batched and each brain is calculated on its own
+	 */
+	private BrainBatch batch;
+	/**
+	 * The node values of the brain of the runner in each slot, only used when the brains cannot be batched
+	 */
+	private NeuralNetState[] states;
+	
+	/**
+	 * The index in runners of the runner in each slot
+	 */
+	private int[] runnerIndex;
+	/**
+	 * The x coordinates of the center of each runner
+	 */
+	private double[] x;
+	/**
+	 * The y coordinates of the center of each runner
+	 */
+	private double[] y;
+	/**
+	 * The x of each runner from the previous tick
+	 */
+	private double[] lastX;
+	/**
+	 * The y of each runner from the previous tick
+	 */
+	private double[] lastY;
+	/**
+	 * The current speed of each runner
+	 */
+	private double[] speed;
+	/**
+	 * The current angle, in degrees, that each runner is facing
+	 */
+	private double[] angle;
+	/**
+	 * The fitness each runner has so far
+	 */
+	private double[] fitness;
+	/**
+	 * The inputs each runner sent to its brain on the current tick
+	 */
+	private double[][] inputs;
+	
+	/**
+	 * Decides when the runner in each slot has settled and its test can end early, null if tests should not end early
+	 */
+	private EarlyStop earlyStop;
+	
+	/**
+	 * The number of runners that have not died, the runners that have not died are in the first numActive slots
+	 */
+	private int numActive;
+	/**
+	 * The number of ticks the current test has run for
+	 */
+	private int timer;
+	/**
+	 * The number of ticks of the current test that were not tested because runners settled, see EarlyStop
+	 */
+	private long ticksSaved;
+	
+	/**
+	 * The number of ticks this engine has run for all of its runners combined, counting each runner once for each tick it collided with the track
+	 */
+	private long ticksTested;
+	
+	public PopulationEngine(Settings settings, Track track){
+		this.settings = settings;
+		this.track = track;
+		
+		setCapacity(0);
+		ticksTested = 0;
+	}
+	
+	/**
+	 * Get the number of ticks this engine has run for all of the runners it has tested, counting each runner once for each tick it was alive at the start of,
+	 * the same ticks counted by Runner.getTestTicks
+	 * @return
+	 */
+	public long getTicksTested(){
+		return ticksTested;
+	}
+	
+	/**
+	 * Make the arrays used for the state of the runners able to hold the given number of runners
+	 * @param size
+	 */
+	private void setCapacity(int size){
+		runnerIndex = new int[size];
+		x = new double[size];
+		y = new double[size];
+		lastX = new double[size];
+		lastY = new double[size];
+		speed = new double[size];
+		angle = new double[size];
+		fitness = new double[size];
+		inputs = new double[size][10];
+	}
+	
+	/**
+	 * Test every runner in the given array, when this method returns, every runner has its stored fitness set
+	 * @param runners
+	 * @return the number of ticks that were not tested because runners settled, see EarlyStop
+	 */
+	public long testRunners(Runner[] runners){
+		return testRunners(runners, 0, runners.length);
+	}
+	
+	/**
+	 * Test the runners in the given array from index start, inclusive, to index end, exclusive
+	 * @param runners
+	 * @param start
+	 * @param end
+	 * @return the number of ticks that were not tested because runners settled, see EarlyStop
+	 */
+	public long testRunners(Runner[] runners, int start, int end){
+		begin(runners, start, end);
+		run(settings.getRunnerTestTime());
+		return finish();
+	}
+	
+	/**
+	 * Start testing the runners in the given array from index start, inclusive, to index end, exclusive.
+	 * No ticks are tested until run is called, and the test must end with a call to finish
+	 * @param runners
+	 * @param start
+	 * @param end
+	 */
+	public void begin(Runner[] runners, int start, int end){
+		this.runners = runners;
+		int size = end - start;
+		if(x.length < size) setCapacity(size);
+		if(EarlyStop.isEnabled(settings)) earlyStop = new EarlyStop(settings, size);
+		else earlyStop = null;
+		timer = 0;
+		ticksSaved = 0;
+		
+		//put each runner at the start of the track, using the track so the starting state is the same as testing them one at a time
+		NeuralNet[] brains = new NeuralNet[size];
+		numActive = size;
+		for(int i = 0; i < size; i++){
+			Runner r = runners[start + i];
+			track.enterRunner(r);
+			runnerIndex[i] = start + i;
+			x[i] = r.getX();
+			y[i] = r.getY();
+			lastX[i] = r.getLastX();
+			lastY[i] = r.getLastY();
+			speed[i] = r.getSpeed();
+			angle[i] = r.getCurrentAngle();
+			fitness[i] = r.getFitness();
+			brains[i] = r.getBrain();
+			if(earlyStop != null) earlyStop.start(i, x[i], y[i], fitness[i]);
+		}
+		if(BrainBatch.canBatch(brains)){
+			batch = new BrainBatch(brains, settings.getActivationMode());
+			states = null;
+		}
+		else{
+			batch = null;
+			states = new NeuralNetState[size];
+			for(int i = 0; i < size; i++) states[i] = new NeuralNetState(brains[i]);
+		}
+	}
+	
+	/**
+	 * Test the runners of the current test until the given tick, or until every runner has finished
+	 * @param endTick the number of ticks the test should have run for when this method returns, at most RunnerTestTime
+	 */
+	public void run(int endTick){
+		for(; timer < endTick && numActive > 0; timer++){
+			ticksTested += numActive;
+			
+			//collide every runner with the track, removing the runners that die
+			for(int i = 0; i < numActive;){
+				if(collide(i)) i++;
+				else removeRunner(i, false);
+			}
+			
+			//find what every runner sees
+			for(int i = 0; i < numActive; i++){
+				lastX[i] = x[i];
+				lastY[i] = y[i];
+				Runner.calculateInputs(settings, track, x[i], y[i], angle[i], speed[i], inputs[i]);
+			}
+			
+			//calculate every brain
+			if(batch != null){
+				for(int i = 0; i < numActive; i++) batch.setInputs(i, inputs[i]);
+				batch.calculateOutputs(numActive);
+			}
+			else{
+				for(int i = 0; i < numActive; i++) runners[runnerIndex[i]].getBrain().calculateOutputs(inputs[i], states[i]);
+			}
+			
+			//move every runner
+			for(int i = 0; i < numActive; i++) move(i);
+			
+			//end the tests of the runners that have settled
+			if(earlyStop != null){
+				for(int i = 0; i < numActive;){
+					if(earlyStop.update(i, timer + 1, x[i], y[i], fitness[i])){
+						fitness[i] = earlyStop.getFinalFitness(i, fitness[i], timer + 1);
+						ticksSaved += earlyStop.getTicksSaved(timer + 1);
+						removeRunner(i, false);
+					}
+					else i++;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Find the range of fitness each runner that is still being tested could end its test with, see FitnessPruning.findRange
+	 * @param pruning
+	 * @param remaining the number of ticks the runners have left to be tested
+	 */
+	public void findRanges(FitnessPruning pruning, int remaining){
+		for(int i = 0; i < numActive; i++) pruning.findRange(runnerIndex[i], x[i], y[i], speed[i], fitness[i], remaining);
+	}
+	
+	/**
+	 * End the tests of the runners whose place in the order the given pruning decided
+	 * @param pruning
+	 */
+	public void removeDecided(FitnessPruning pruning){
+		//go backwards, so the runners moved into removed slots were already checked
+		for(int i = numActive - 1; i >= 0; i--){
+			if(pruning.isDecided(runnerIndex[i])) removeRunner(i, true);
+		}
+	}
+	
+	/**
+	 * Get the number of runners in the current test that are still being tested
+	 * @return
+	 */
+	public int getNumActive(){
+		return numActive;
+	}
+	
+	/**
+	 * End the current test, giving every runner still being tested the fitness it has so far
+	 * @return the number of ticks that were not tested because runners settled, see EarlyStop
+	 */
+	public long finish(){
+		for(int i = 0; i < numActive; i++) runners[runnerIndex[i]].setStoredFitness(fitness[i]);
+		numActive = 0;
+		runners = null;
+		batch = null;
+		states = null;
+		earlyStop = null;
+		return ticksSaved;
+	}
+	
+	/**
+	 * Finish testing the runner in the given slot, and move the runner in the last slot into its place
+	 * @param i
+	 * @param pruned true if the test ended because the place of the runner in the order was certain, see FitnessPruning
+	 */
+	private void removeRunner(int i, boolean pruned){
+		if(pruned) runners[runnerIndex[i]].setPrunedFitness(fitness[i]);
+		else runners[runnerIndex[i]].setStoredFitness(fitness[i]);
+		
+		int last = numActive - 1;
+		runnerIndex[i] = runnerIndex[last];
+		x[i] = x[last];
+		y[i] = y[last];
+		lastX[i] = lastX[last];
+		lastY[i] = lastY[last];
+		speed[i] = speed[last];
+		angle[i] = angle[last];
+		fitness[i] = fitness[last];
+		double[] in = inputs[i];
+		inputs[i] = inputs[last];
+		inputs[last] = in;
+		if(batch != null) batch.moveBrain(last, i);
+		else states[i] = states[last];
+		if(earlyStop != null) earlyStop.moveSlot(last, i);
+		numActive--;
+	}
+	
+	/**
+	 * Collide the runner in the given slot with the track, in the same way as Track.collideWithRunner
+	 * @param i
+	 * @return true if the runner is still alive, false if it hit a wall and was killed
+	 */
+	private boolean collide(int i){
+		double moveDistance = track.getWallMoveDistance(x[i], y[i], angle[i], speed[i]);
+		boolean hitWall = moveDistance != Track.NO_HIT;
+		
+		//test for hitting fitness lines
+		fitness[i] = track.addLineFitness(fitness[i], lastX[i], lastY[i], x[i], y[i]);
+		
+		if(settings.getKillRunner()){
+			//if a line was hit, the runner dies
+			if(hitWall) return false;
+		}
+		else{
+			//collide the runner with the wall
+			if(hitWall){
+				double move = moveDistance;
+				if(move > settings.getRunnerMaxSpeed()) move = settings.getRunnerMaxSpeed();
+				if(speed[i] > 0) move *= -1;
+				x[i] += Math.cos(Math.toRadians(angle[i])) * move;
+				y[i] += Math.sin(Math.toRadians(angle[i])) * move;
+				
+				//reduce the speed of the runner by half, only if the speed of the runner is above a threshold
+				if(Math.abs(speed[i]) > Math.abs(settings.getRunnerMaxSpeed() * .1)){
+					double s = speed[i] * .5;
+					s = Math.min(s, settings.getRunnerMaxSpeed());
+					s = Math.max(s, settings.getRunnerMinSpeed());
+					speed[i] = s;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Get the value of the given output of the brain of the runner in the given slot, after its brain has been calculated
+	 * @param i
+	 * @param node
+	 * @return
+	 */
+	private double getOutput(int i, int node){
+		if(batch != null) return batch.getOutput(i, node);
+		return states[i].getNodeValue(runners[runnerIndex[i]].getBrain().getNumLayers() - 1, node);
+	}
+	
+	/**
+	 * Move the runner in the given slot using the outputs of its brain, and add the fitness for this tick, in the same way as Runner.tick
+	 * @param i
+	 */
+	private void move(int i){
+		//use outputs
+		double goalSpeed = settings.getRunnerSpeedChange() * getOutput(i, 0);
+		double goalAngle = settings.getRunnerAngleChange() * getOutput(i, 1);
+		
+		double s = speed[i] + goalSpeed;
+		
+		//ensure that speed is a valid speed
+		if(s < settings.getRunnerMinSpeed()) s = settings.getRunnerMinSpeed();
+		else if(s > settings.getRunnerMaxSpeed()) s = settings.getRunnerMaxSpeed();
+		speed[i] = s;
+		
+		//ensure that the angle is a valid angle where 0 <= angle < 360
+		double a = angle[i] + goalAngle;
+		while(a < 0) a += 360;
+		while(a >= 360) a -= 360;
+		angle[i] = a;
+		
+		//update the position of the runner based on their speed and angle
+		x[i] += Math.cos(Math.toRadians(a)) * s;
+		y[i] += Math.sin(Math.toRadians(a)) * s;
+		
+		fitness[i] += Runner.getTickFitness(settings, inputs[i], s);
+	}
+	
+}
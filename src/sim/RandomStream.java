@@ -0,0 +1,142 @@
+package sim;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A stream of random numbers which can be split into new streams, using the same SplitMix64 algorithm as java.util.SplittableRandom.
+ * Unlike Math.random, a stream is only ever used by one thread, so getting a number never waits on other threads,
+ * and a stream made from a seed always gives the same numbers, so a simulation with the same seed always does the same thing.
+ * Unlike SplittableRandom, the state of a stream can be saved and loaded, so a checkpoint continues with the same numbers
+ */
+public class RandomStream{
+	
+	/**
+	 * The gamma of streams made from a seed, and the amount the seeds of streams made without a seed move apart
+	 */
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	/**
+	 * The difference between a double from nextDouble and the next highest double it can give
+	 */
+	private static final double DOUBLE_UNIT = 0x1.0p-53;
+	
+	/**
+	 * The value used to make the seeds of streams made without a seed. This is only used when a stream is made without a seed, not when getting numbers
+	 */
+	private static final AtomicLong seeder = new AtomicLong(mix64(System.currentTimeMillis()) ^ mix64(System.nanoTime()));
+	
+	/**
+	 * The current state of this stream, increased by gamma for each number
+	 */
+	private long seed;
+	/**
+	 * The amount seed is increased by for each number, always odd
+	 */
+	private long gamma;
+	
+	/**
+	 * Create a stream which always gives the same numbers for the same seed
+	 * @param seed
+	 */
+	public RandomStream(long seed){
+		this(seed, GOLDEN_GAMMA);
+	}
+	
+	/**
+	 * Create a stream with a new seed, which is different every time the program runs
+	 */
+	public RandomStream(){
+		this(newSeed());
+	}
+	
+	/**
+	 * Create a stream by reading its state from the given buffer, in the format written by save
+	 * @param buffer
+	 */
+	public RandomStream(ByteBuffer buffer){
+		this(buffer.getLong(), buffer.getLong() | 1L);
+	}
+	
+	private RandomStream(long seed, long gamma){
+		this.seed = seed;
+		this.gamma = gamma;
+	}
+	
+	/**
+	 * Get a new seed, which is different every time this is called and every time the program runs
+	 * @return
+	 */
+	public static long newSeed(){
+		return mix64(seeder.getAndAdd(2 * GOLDEN_GAMMA));
+	}
+	
+	/**
+	 * Get the next random long, any long is equally likely
+	 * @return
+	 */
+	public long nextLong(){
+		seed += gamma;
+		return mix64(seed);
+	}
+	
+	/**
+	 * Get the next random double, in the same range as Math.random, where 0 <= value < 1
+	 * @return
+	 */
+	public double nextDouble(){
+		return (nextLong() >>> 11) * DOUBLE_UNIT;
+	}
+	
+	/**
+	 * Get a new stream that gives different numbers than this stream, and move this stream forward.
+	 * The new stream only depends on the state of this stream, so splitting the same streams in the same order always gives the same streams
+	 * @return
+	 */
+	public RandomStream split(){
+		long s = nextLong();
+		seed += gamma;
+		return new RandomStream(s, mixGamma(seed));
+	}
+	
+	/**
+	 * Get the number of bytes save writes
+	 * @return
+	 */
+	public static int getSaveSize(){
+		return 8 + 8;
+	}
+	
+	/**
+	 * Save the state of this stream to the given buffer
+	 * @param buffer
+	 */
+	public void save(ByteBuffer buffer){
+		buffer.putLong(seed);
+		buffer.putLong(gamma);
+	}
+	
+	/**
+	 * Mix the bits of the given value, used to turn the state into a number
+	 * @param z
+	 * @return
+	 */
+	private static long mix64(long z){
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+	
+	/**
+	 * Get the gamma for a new stream, an odd number with enough bits that change from one number to the next
+	 * @param z
+	 * @return
+	 */
+	private static long mixGamma(long z){
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		int n = Long.bitCount(z ^ (z >>> 1));
+		return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+	
+}
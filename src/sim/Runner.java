@@ -5,12 +5,12 @@ import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
-import java.awt.image.BufferedImage;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
 import java.text.DecimalFormat;
 import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import data.Settings;
 
@@ -85,13 +85,53 @@ public class Runner{
 	 * The fitness of this runner after it has been tested
 	 */
 	private double storedFitness;
+	/**
+	 * true if the most recent test of this runner ended because its place in the order was certain, see FitnessPruning,
+	 * so storedFitness is only the fitness it had when its test ended, not the fitness it would get from a full test
+	 */
+	private boolean fitnessPruned;
+	/**
+	 * The number of ticks the most recent test of this runner ran for, including the tick the runner died on
+	 */
+	private int testTicks;
+	/**
+	 * The inputs this runner sent to its brain on the current tick, reused every tick. null until the runner first ticks
+	 */
+	private double[] inputs;
+	
+	/**
+	 * The random numbers used for the brain of this runner and the brains of its offspring.
+	 * Each runner has its own stream, split from the stream of its parent or its simulation, so the random numbers a runner gets never depend on other runners
+	 */
+	private RandomStream random;
+	
+	/**
+	 * The stroke used to draw vision lines
+	 */
+	private static final BasicStroke VISION_STROKE = new BasicStroke(2f);
 	
 	/**
-	 * The next id for a runner, increments every time a runner object is created
+	 * The next id for a runner, increments every time a runner object is created. 
+	 * Atomic so that runners can be created on any thread without two runners getting the same id
 	 */
-	private static int currentRunnerID = 0;
+	private static final AtomicInteger currentRunnerID = new AtomicInteger(0);
 	
+	/**
+	 * Create a runner with a random brain, using random numbers that are different every time the program runs
+	 * @param settings
+	 * @param track
+	 */
 	public Runner(Settings settings, Track track){
+		this(settings, track, new RandomStream());
+	}
+	
+	/**
+	 * Create a runner with a random brain
+	 * @param settings
+	 * @param track
+	 * @param random the random numbers used by this runner, this runner should be the only thing using the stream
+	 */
+	public Runner(Settings settings, Track track, RandomStream random){
 		this.settings = settings;
 		
 		this.track = track;
@@ -99,7 +139,7 @@ public class Runner{
 		reset();
 		storedFitness = 0;
 		
-		runnerID = currentRunnerID++;
+		runnerID = currentRunnerID.getAndIncrement();
 		parentID = -1;
 		birthGen = 0;
 		
@@ -107,9 +147,84 @@ public class Runner{
 		nodes[0] = 10;
 		for(int i = 1; i < nodes.length - 1; i++) nodes[i] = settings.getRunnerHiddenNodes()[i - 1];
 		nodes[nodes.length - 1] = 2;
-		brain = new NeuralNet(settings, nodes);
+		this.random = random;
+		brain = new NeuralNet(settings, nodes, random);
+		
+		brain.randomWeights(random);
+	}
+	
+	/**
+	 * Create a runner with the given brain, used for offspring
+	 * @param settings
+	 * @param track
+	 * @param random the random numbers used by this runner
+	 * @param brain
+	 */
+	private Runner(Settings settings, Track track, RandomStream random, NeuralNet brain){
+		this.settings = settings;
+		
+		this.track = track;
+		
+		reset();
+		storedFitness = 0;
+		
+		runnerID = currentRunnerID.getAndIncrement();
+		parentID = -1;
+		birthGen = 0;
+		
+		this.random = random;
+		this.brain = brain;
+	}
+	
+	/**
+	 * Create a runner with the given values and brain, used to rebuild a runner from the values kept by a SimulationSnapshot.
+	 * Like reading a runner from a buffer, this does not use up a runner ID or any random numbers
+	 * @param settings
+	 * @param track
+	 * @param runnerID
+	 * @param parentID
+	 * @param birthGen
+	 * @param storedFitness
+	 * @param brain the brain of the runner, which the runner changes the node values of, so it should not be used by any other runner
+	 */
+	Runner(Settings settings, Track track, int runnerID, int parentID, int birthGen, double storedFitness, NeuralNet brain){
+		this.settings = settings;
+		
+		this.track = track;
+		
+		reset();
+		
+		this.runnerID = runnerID;
+		this.parentID = parentID;
+		this.birthGen = birthGen;
+		this.storedFitness = storedFitness;
+		this.brain = brain;
+		
+		random = new RandomStream();
+	}
+	
+	/**
+	 * Create a runner by reading it from the given buffer, in the format written by save(ByteBuffer).
+	 * Unlike the other constructor, this does not use up a runner ID or any random numbers
+	 * @param settings
+	 * @param track
+	 * @param buffer
+	 */
+	public Runner(Settings settings, Track track, ByteBuffer buffer){
+		this.settings = settings;
 		
-		brain.randomWeights();
+		this.track = track;
+		
+		reset();
+		
+		runnerID = buffer.getInt();
+		parentID = buffer.getInt();
+		birthGen = buffer.getInt();
+		storedFitness = buffer.getDouble();
+		brain = new NeuralNet(settings, buffer);
+		
+		//the random numbers are not saved with the runner, a simulation gives its runners their saved streams after loading them
+		random = new RandomStream();
 	}
 	
 	/**
@@ -119,12 +234,41 @@ public class Runner{
 	public double getFitness(){
 		return currentFitness;
 	}
+	public void setFitness(double f){
+		currentFitness = f;
+	}
 	public void addFitness(double f){
 		currentFitness += f;
 	}
 	public double getStoredFitness(){
 		return storedFitness;
 	}
+	/**
+	 * Set the fitness this runner has after being tested, for when the runner is tested somewhere other than testRunner
+	 * @param f
+	 */
+	public void setStoredFitness(double f){
+		storedFitness = f;
+		fitnessPruned = false;
+	}
+	
+	/**
+	 * Set the fitness this runner had when its test ended because its place in the order was certain, see FitnessPruning.
+	 * The runner must be tested again before its fitness is compared with runners it was not tested with
+	 * @param f
+	 */
+	public void setPrunedFitness(double f){
+		storedFitness = f;
+		fitnessPruned = true;
+	}
+	
+	/**
+	 * Determine if the most recent test of this runner ended because its place in the order was certain, so its stored fitness is not the fitness of a full test
+	 * @return
+	 */
+	public boolean isFitnessPruned(){
+		return fitnessPruned;
+	}
 	
 	/**
 	 * Reset the runner to a default state of position
@@ -148,27 +292,62 @@ public class Runner{
 	 * @return
 	 */
 	public Runner getOffspring(int gen){
-		NeuralNet offspringBrain = brain.getMutatedBrain();
-		Runner offspring = new Runner(settings, track);
+		//the offspring gets its own stream, and uses it for its mutations
+		RandomStream offspringRandom = random.split();
+		Runner offspring = new Runner(settings, track, offspringRandom, brain.getMutatedBrain(offspringRandom));
 		offspring.parentID = runnerID;
 		offspring.birthGen = gen;
-		offspring.brain = offspringBrain;
 		return offspring;
 	}
 	
+	/**
+	 * Get the random numbers used by this runner
+	 * @return
+	 */
+	public RandomStream getRandom(){
+		return random;
+	}
+	
+	/**
+	 * Set the random numbers used by this runner, this runner should be the only thing using the stream
+	 * @param random
+	 */
+	public void setRandom(RandomStream random){
+		this.random = random;
+	}
+	
 	/**
 	 * Has this runner run around the track and determine its fitness
+	 * @return the number of ticks that were not tested because the runner settled, see EarlyStop
 	 */
-	public void testRunner(){
+	public int testRunner(){
 		track.enterRunner(this);
 		storedFitness = -1;
+		
+		EarlyStop earlyStop = null;
+		if(EarlyStop.isEnabled(settings)){
+			earlyStop = new EarlyStop(settings, 1);
+			earlyStop.start(0, x, y, currentFitness);
+		}
+		
+		int ticksSaved = 0;
 		int timer = 0;
 		while(timer < settings.getRunnerTestTime() && !dead){
 			timer++;
 			track.collideWithRunner(this);
 			tick();
+			
+			//end the test if the runner has settled
+			if(earlyStop != null && !dead && earlyStop.update(0, timer, x, y, currentFitness)){
+				currentFitness = earlyStop.getFinalFitness(0, currentFitness, timer);
+				ticksSaved = earlyStop.getTicksSaved(timer);
+				break;
+			}
 		}
 		storedFitness = currentFitness;
+		fitnessPruned = false;
+		testTicks = timer;
+		return ticksSaved;
 	}
 	
 	public double getMutability(){
@@ -179,6 +358,18 @@ public class Runner{
 		return brain;
 	}
 	
+	/**
+	 * Get the number of ticks the most recent call to testRunner ran for, including the tick the runner died on
+	 * @return
+	 */
+	public int getTestTicks(){
+		return testTicks;
+	}
+	
+	public Track getTrack(){
+		return track;
+	}
+	
 	public int getRunnerID(){
 		return runnerID;
 	}
@@ -253,86 +444,8 @@ public class Runner{
 		lastY = y;
 		
 		//calculate inputs
-		//distance inputs
-		double[] inputs = new double[10];
-		
-		Line2D.Double[] lines = track.getLines();
-		for(int a = 0; a < 8; a++){
-			double distance = settings.getRunnerMaxViewDistance();
-			boolean distFound = false;
-			for(int i = 0; i < lines.length; i++){
-				Line2D.Double l = lines[i];
-				
-				//find slope and intercept of the track line
-				double tSlope = (l.y1 - l.y2) / (l.x1 - l.x2);
-				double tInt = l.y1 - l.x1 * tSlope;
-				
-				//find slope and intercept of vision line
-				double vSlope = Math.sin(Math.toRadians(angle + settings.getRunnerVisionAngles()[a])) / Math.cos(Math.toRadians(angle + settings.getRunnerVisionAngles()[a]));
-				double vInt = y - x * vSlope;
-				
-				boolean vVertical = Math.cos(Math.toRadians(angle + settings.getRunnerVisionAngles()[a])) == 0;
-				boolean tVertical = l.x1 == l.x2;
-				
-				//if the lines are not parallel, continue
-				if(vSlope != tSlope && !(tVertical && vVertical)){
-					//find intersection point
-					double intX = (tInt - vInt) / (vSlope - tSlope);
-					double intY = intX * vSlope + vInt;
-					
-					//if either slope is vertical, then the intersection must be calculated differently
-					if(vVertical){
-						intX = x;
-						intY = intX * tSlope + tInt;
-					}
-					else if(tVertical){
-						intX = l.x1;
-						intY = intX * vSlope + vInt;
-					}
-					
-					//check to see if the vision line intersects the track line
-					//if it does, find its distance
-					//also needs to account for if the vision line, which is a ray, actually hits the track line segment
-					double lDist = new Point2D.Double(l.x1, l.y1).distance(l.x2, l.y2);
-					
-					//find the angle of the vision line
-					double testAngle = settings.getRunnerVisionAngles()[a] + angle;
-					while(testAngle > 360) testAngle -= 360;
-					while(testAngle < 0) testAngle += 360;
-					
-					//find the angle from the the center of the runner to the intersection point
-					double toAngle = Math.toDegrees(Math.PI + Math.atan2(y - intY, x - intX));
-					while(toAngle > 360) toAngle -= 360;
-					while(toAngle < 0) toAngle += 360;
-					
-					//compare the difference between the two previously calculated angles to see if th
-					
-					if(new Point2D.Double(l.x1, l.y1).distance(intX, intY) <= lDist &&
-					   new Point2D.Double(l.x2, l.y2).distance(intX, intY) <= lDist &&
-					   (Math.abs(testAngle - toAngle) < 90) || Math.abs(testAngle - toAngle) > 270){
-						//find new distance
-						double newDist = getPos().distance(intX, intY) - settings.getRunnerRadius();
-						
-						if(!distFound || distance > newDist){
-							distance = newDist;
-							distFound = true;
-						}
-					}
-				}
-			}
-			
-			distance = Math.min(distance, settings.getRunnerMaxViewDistance());
-			inputs[a] = distance / settings.getRunnerMaxViewDistance();
-		}
-		
-		//angle and speed inputs
-		inputs[8] = speed / Math.max(Math.abs(settings.getRunnerMaxSpeed()), Math.abs(settings.getRunnerMinSpeed()));
-		double sendAngle = angle;
-		while(sendAngle < 0) sendAngle += 360;
-		while(sendAngle > 360) sendAngle -= 360;
-		sendAngle = Math.sqrt(1 - Math.pow(sendAngle / 180 - 1, 2));
-		sendAngle = sendAngle * 2 - 1;
-		inputs[9] = sendAngle;
+		if(inputs == null) inputs = new double[10];
+		calculateInputs(settings, track, x, y, angle, speed, inputs);
 		
 		//send inputs
 		brain.setInputs(inputs);
@@ -365,22 +478,55 @@ public class Runner{
 		y += Math.sin(Math.toRadians(angle)) * speed;
 		
 		//calculate the fitness to add based on the distances from each wall
-		if(!dead){
-			double valueTotal = 0;
-			double weightTotal = 0;
-			//some vision lines are more important than others
-			for(int i = 0; i < 8; i++){
-				valueTotal += brain.getNodeValue(0, i) * settings.getRunnerVisionWeights()[i];
-				weightTotal += settings.getRunnerVisionWeights()[i];
-			}
-			//add fitness for this tick. The runner moving faster and being further from walls means higher fitness
-			double speedFactor = (Math.abs(speed) / settings.getRunnerMaxSpeed());
-			speedFactor = Math.pow(speedFactor, Math.E);
-			double addFit = settings.getRunnerFitnessBaseGain();
-			if(settings.getRunnerFitnessSpeed()) addFit *= speedFactor;
-			if(settings.getRunnerFitnessWall()) addFit *= valueTotal / weightTotal;
-			addFitness(addFit);
+		if(!dead) addFitness(getTickFitness(settings, inputs, speed));
+	}
+	
+	/**
+	 * Calculate the inputs that a runner would send to its brain
+	 * @param settings
+	 * @param track the track the runner is in
+	 * @param x the x of the center of the runner
+	 * @param y the y of the center of the runner
+	 * @param angle the angle the runner is facing
+	 * @param speed the speed of the runner
+	 * @param inputs the array to put the inputs in, must have a length of at least 10
+	 */
+	public static void calculateInputs(Settings settings, Track track, double x, double y, double angle, double speed, double[] inputs){
+		//distance inputs
+		track.getVision().calculateVision(settings, x, y, angle, inputs);
+		
+		//angle and speed inputs
+		inputs[8] = speed / Math.max(Math.abs(settings.getRunnerMaxSpeed()), Math.abs(settings.getRunnerMinSpeed()));
+		double sendAngle = angle;
+		while(sendAngle < 0) sendAngle += 360;
+		while(sendAngle > 360) sendAngle -= 360;
+		sendAngle = Math.sqrt(1 - Math.pow(sendAngle / 180 - 1, 2));
+		sendAngle = sendAngle * 2 - 1;
+		inputs[9] = sendAngle;
+	}
+	
+	/**
+	 * Get the fitness a runner gains in one tick, after it has moved
+	 * @param settings
+	 * @param inputs the inputs the runner sent to its brain on this tick
+	 * @param speed the speed of the runner after moving
+	 * @return
+	 */
+	public static double getTickFitness(Settings settings, double[] inputs, double speed){
+		double valueTotal = 0;
+		double weightTotal = 0;
+		//some vision lines are more important than others
+		for(int i = 0; i < 8; i++){
+			valueTotal += inputs[i] * settings.getRunnerVisionWeights()[i];
+			weightTotal += settings.getRunnerVisionWeights()[i];
 		}
+		//add fitness for this tick. The runner moving faster and being further from walls means higher fitness
+		double speedFactor = (Math.abs(speed) / settings.getRunnerMaxSpeed());
+		speedFactor = Math.pow(speedFactor, Math.E);
+		double addFit = settings.getRunnerFitnessBaseGain();
+		if(settings.getRunnerFitnessSpeed()) addFit *= speedFactor;
+		if(settings.getRunnerFitnessWall()) addFit *= valueTotal / weightTotal;
+		return addFit;
 	}
 	
 	/**
@@ -390,26 +536,26 @@ public class Runner{
 	 * @param scale
 	 */
 	public void render(Graphics2D g, Point2D.Double cameraPos, boolean drawLines){
-		Color blackC;
-		Color bodyC;
-		
-		if(dead()){
-			blackC = new Color(0, 0, 0, 100);
-			bodyC = new Color(100, 100, 255, 100);
-		}
-		else{
-			blackC = new Color(0, 0, 0);
-			bodyC = new Color(100, 100, 255);
-		}
-		
+		render(g, cameraPos, drawLines, RunnerSprites.get(settings));
+	}
+	
+	/**
+	 * Draw this runner to the given graphics object using the given sprites, which must be the sprites for the settings of this runner.
+	 * Use this when drawing many runners, so the sprites are only looked up once
+	 * @param g
+	 * @param cameraPos
+	 * @param drawLines
+	 * @param sprites
+	 */
+	public void render(Graphics2D g, Point2D.Double cameraPos, boolean drawLines, RunnerSprites sprites){
 		//camera variables, should be the center point of the runner when rendered on the graphics object
 		double xx = x + cameraPos.x;
 		double yy = y + cameraPos.y;
 		
 		//draw the vision lines
 		if(drawLines){
-			g.setColor(blackC);
-			g.setStroke(new BasicStroke(2f));
+			g.setColor(dead() ? RunnerSprites.DEAD_OUTLINE : RunnerSprites.ALIVE_OUTLINE);
+			g.setStroke(VISION_STROKE);
 			for(int a = 0; a < settings.getRunnerVisionAngles().length; a++){
 				g.drawLine((int)Math.round(xx), (int)Math.round(yy),
 						   (int)Math.round(xx + Math.cos(Math.toRadians(angle + settings.getRunnerVisionAngles()[a])) * (settings.getRunnerMaxViewDistance() + settings.getRunnerRadius())),
@@ -417,31 +563,8 @@ public class Runner{
 			}
 		}
 		
-		//draw body
-		//create image
-		BufferedImage body = new BufferedImage((int)Math.round(settings.getRunnerRadius() * 2), (int)Math.round(settings.getRunnerRadius() * 2), BufferedImage.TYPE_4BYTE_ABGR);
-		Graphics g2 = body.getGraphics();
-		
-		//main circle
-		g2.setColor(blackC);
-		g2.fillOval(0, 0, (int)Math.round(settings.getRunnerRadius() * 2), (int)Math.round(settings.getRunnerRadius() * 2));
-		g2.setColor(bodyC);
-		g2.fillOval(2, 2, (int)Math.round(settings.getRunnerRadius() * 2 - 4), (int)Math.round(settings.getRunnerRadius() * 2 - 4));
-		
-		//draw eye
-		g2.setColor(blackC);
-		int r = 8;
-		double d = 30 * (settings.getRunnerRadius() / 50);
-		g2.fillOval((int)Math.round(d * Math.cos(Math.toRadians(angle)) - r + settings.getRunnerRadius()),
-					(int)Math.round(d * Math.sin(Math.toRadians(angle)) - r + settings.getRunnerRadius()), r * 2, r * 2);
-		
-		//draw id
-		g2.setFont(new Font(settings.getFontName(), Font.PLAIN, 10));
-		g2.drawString("" + getRunnerID(), (int)(settings.getRunnerRadius() * .6), (int)(settings.getRunnerRadius() + 5));
-		
-		//draw body on screen
-		g.drawImage(body, (int)Math.round(xx - settings.getRunnerRadius()), (int)Math.round(yy -settings.getRunnerRadius()),
-						  (int)Math.round(body.getWidth()), (int)Math.round(body.getHeight()), null);
+		//draw body, eye, and id
+		sprites.draw(g, xx, yy, angle, dead(), getRunnerID());
 	}
 	
 	/**
@@ -452,6 +575,22 @@ public class Runner{
 	 * @param y
 	 */
 	public void renderAdvancedInfo(Graphics g, int x, int y){
+		renderAdvancedInfo(g, x, y, settings, getRunnerID(), getParentID(), getBirthGen(), getStoredFitness(), getMutability());
+	}
+	
+	/**
+	 * draw advanced info for a runner with the given values on the specified graphics object at the specified coordinates, see renderAdvancedInfo(Graphics, int, int)
+	 * @param g
+	 * @param x
+	 * @param y
+	 * @param settings
+	 * @param runnerID
+	 * @param parentID
+	 * @param birthGen
+	 * @param storedFitness
+	 * @param mutability
+	 */
+	public static void renderAdvancedInfo(Graphics g, int x, int y, Settings settings, int runnerID, int parentID, int birthGen, double storedFitness, double mutability){
 		g.setColor(Color.BLACK);
 		g.fillRect(x, y, 250, 104);
 		
@@ -467,12 +606,12 @@ public class Runner{
 		DecimalFormat df = new DecimalFormat("#");
 		df.setMaximumFractionDigits(15);
 		
-		g.drawString("ID: " + getRunnerID(), x + 4, y + 12);
-		g.drawString("Fitness: " + df.format(getStoredFitness()), x + 4, y + 24);
-		if(getParentID() == -1) g.drawString("Parent ID: WILD", x + 4, y + 36);
-		else g.drawString("Parent ID: " + getParentID(), x + 4, y + 36);
-		g.drawString("Birth Gen: " + getBirthGen(), x + 4, y + 48);
-		g.drawString("Mutability: " + df.format(getMutability()), x + 4, y + 60);
+		g.drawString("ID: " + runnerID, x + 4, y + 12);
+		g.drawString("Fitness: " + df.format(storedFitness), x + 4, y + 24);
+		if(parentID == -1) g.drawString("Parent ID: WILD", x + 4, y + 36);
+		else g.drawString("Parent ID: " + parentID, x + 4, y + 36);
+		g.drawString("Birth Gen: " + birthGen, x + 4, y + 48);
+		g.drawString("Mutability: " + df.format(mutability), x + 4, y + 60);
 	}
 	
 	/**
@@ -505,11 +644,43 @@ public class Runner{
 		brain.load(scan);
 	}
 	
+	/**
+	 * Get the number of bytes save(ByteBuffer) writes for this runner
+	 * @return
+	 */
+	public int getSaveSize(){
+		return 4 + 4 + 4 + 8 + brain.getSaveSize();
+	}
+	
+	/**
+	 * Save this runner to the given buffer. Saves the same data as save(PrintWriter): the ID, parent ID, birth generation, fitness, and brain
+	 * @param buffer
+	 */
+	public void save(ByteBuffer buffer){
+		buffer.putInt(runnerID);
+		buffer.putInt(parentID);
+		buffer.putInt(birthGen);
+		buffer.putDouble(storedFitness);
+		brain.save(buffer);
+	}
+	
+	/**
+	 * Get a copy of this runner, with the same ID, parent ID, birth generation, stored fitness, and brain.
+	 * The copy can be moved around the track and tested without changing this runner
+	 * @return
+	 */
+	public Runner copy(){
+		ByteBuffer buffer = ByteBuffer.allocate(getSaveSize());
+		save(buffer);
+		buffer.flip();
+		return new Runner(settings, track, buffer);
+	}
+	
 	/**
 	 * Resets the starting runner ID to 0. WARNING, once this is called, all previously created runner objects will have invalid ids
 	 */
 	public static void resetRunnerIDs(){
-		currentRunnerID = 0;
+		currentRunnerID.set(0);
 	}
 	
 	/**
@@ -518,7 +689,7 @@ public class Runner{
 	 * @param id
 	 */
 	public static void setCurrentRunnerID(int id){
-		currentRunnerID = id;
+		currentRunnerID.set(id);
 	}
 	
 	/**
@@ -526,6 +697,6 @@ public class Runner{
 	 * @return
 	 */
 	public static int getCurrentRunnerID(){
-		return currentRunnerID;
+		return currentRunnerID.get();
 	}
 }
@@ -0,0 +1,369 @@
+package sim;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import data.Settings;
+
+/**
+ * Tests groups of runners, spreading the runners between a number of worker threads based on the settings.
+ * Every runner only changes its own state while it is tested, and the track and settings are only read,
+ * so the fitness each runner ends up with is exactly the same no matter how many threads are used.
+ * Fitness results are remembered in an EvaluationCache, so a runner with a brain that was already tested is not tested again
+ */
+public class RunnerEvaluator{
+	
+	/**
+	 * The number of seconds a worker thread waits for new work before it ends
+	 */
+	public static final long WORKER_IDLE_SECONDS = 30;
+	
+	/**
+	 * The threads shared by every evaluator, one pool for each number of threads that has been used.
+	 * A pool is never shut down, because another caller may still be using it, instead its threads end after they are unused for WORKER_IDLE_SECONDS
+	 */
+	private static final HashMap<Integer, ExecutorService> workers = new HashMap<Integer, ExecutorService>();
+	
+	private Settings settings;
+	
+	/**
+	 * The number of ticks that were not tested because runners settled, see EarlyStop. Added to by any number of threads at once
+	 */
+	private LongAdder earlyStopTicksSaved;
+	/**
+	 * The number of ticks that were not tested because the place of runners in the order was certain, see FitnessPruning
+	 */
+	private LongAdder prunedTicksSaved;
+	/**
+	 * The number of runners that were tested, not counting runners that got their fitness from the cache
+	 */
+	private LongAdder runnersTested;
+	/**
+	 * The number of ticks tested, counting each runner once for each tick it was tested for
+	 */
+	private LongAdder ticksTested;
+	
+	/**
+	 * The cache of fitness results used when testing runners, null until it is first used, see EvaluationCache
+	 */
+	private EvaluationCache cache;
+	
+	public RunnerEvaluator(Settings settings){
+		this.settings = settings;
+		earlyStopTicksSaved = new LongAdder();
+		prunedTicksSaved = new LongAdder();
+		runnersTested = new LongAdder();
+		ticksTested = new LongAdder();
+		cache = null;
+	}
+	
+	/**
+	 * Get the cache of fitness results used by this evaluator, or null if the cache has not been used
+	 * @return
+	 */
+	public EvaluationCache getCache(){
+		return cache;
+	}
+	
+	/**
+	 * Close the file of the cache used by this evaluator, if it has one
+	 */
+	public void close(){
+		if(cache != null) cache.close();
+	}
+	
+	/**
+	 * Get the number of ticks that were not tested because runners settled since the count was last reset, see EarlyStop, then reset the count to 0
+	 * @return
+	 */
+	public long takeEarlyStopTicksSaved(){
+		return earlyStopTicksSaved.sumThenReset();
+	}
+	
+	/**
+	 * Get the number of ticks that were not tested because the place of runners in the order was certain since the count was last reset,
+	 * see FitnessPruning, then reset the count to 0
+	 * @return
+	 */
+	public long takePrunedTicksSaved(){
+		return prunedTicksSaved.sumThenReset();
+	}
+	
+	/**
+	 * Get the number of runners that were tested since the count was last reset, not counting runners that got their fitness from the cache,
+	 * then reset the count to 0
+	 * @return
+	 */
+	public long takeRunnersTested(){
+		return runnersTested.sumThenReset();
+	}
+	
+	/**
+	 * Get the number of ticks tested since the count was last reset, counting each runner once for each tick it was tested for, then reset the count to 0
+	 * @return
+	 */
+	public long takeTicksTested(){
+		return ticksTested.sumThenReset();
+	}
+	
+	/**
+	 * Get the number of threads that should be used to test runners, based on the settings
+	 * @return
+	 */
+	public int getNumThreads(){
+		return getNumThreads(settings);
+	}
+	
+	/**
+	 * Get the number of threads that should be used for work spread between threads, based on the given settings
+	 * @param settings
+	 * @return
+	 */
+	public static int getNumThreads(Settings settings){
+		int threads = settings.getEvalThreads();
+		if(threads <= 0) threads = Runtime.getRuntime().availableProcessors();
+		return threads;
+	}
+	
+	/**
+	 * Test every runner in the given array, when this method returns, every runner has been tested
+	 * @param runners
+	 */
+	public void testRunners(final Runner[] runners){
+		testRunners(runners, new Runner[0]);
+	}
+	
+	/**
+	 * Test every runner in the given array, when this method returns, every runner has been tested.
+	 * Runners with a result in the evaluation cache get the fitness from the cache, and only the rest of the runners are tested
+	 * @param runners
+	 * @param others the runners which are not tested, but are sorted with the tested runners, only used for pruning.
+	 * Each must have the fitness of a full test, see Runner.isFitnessPruned
+	 */
+	public void testRunners(Runner[] runners, Runner[] others){
+		if(runners.length == 0) return;
+		
+		//pruning ends tests based on the fitness of the other runners, so the fitness it gives cannot be reused
+		if(settings.getEvalCacheSize() <= 0 || FitnessPruning.isEnabled(settings)){
+			testUncached(runners, others);
+			return;
+		}
+		
+		if(cache == null || cache.getCapacity() != settings.getEvalCacheSize() || (cache.getDiskFile() != null) != settings.getEvalCacheDisk()){
+			if(cache != null) cache.close();
+			cache = new EvaluationCache(settings.getEvalCacheSize(), settings.getEvalCacheDisk() ? new File(EvaluationCache.DISK_FILE) : null);
+		}
+		
+		//find the runners that do not have a result yet
+		long fingerprint = Fingerprint.getEvaluation(settings, runners[0].getTrack());
+		Runner[] misses = new Runner[runners.length];
+		long[] keys = new long[runners.length];
+		long[] checks = new long[runners.length];
+		int numMisses = 0;
+		for(Runner r : runners){
+			long key = EvaluationCache.getKey(r, fingerprint);
+			long check = EvaluationCache.getCheck(r, fingerprint);
+			double fitness = cache.get(key, check);
+			if(Double.isNaN(fitness)){
+				misses[numMisses] = r;
+				keys[numMisses] = key;
+				checks[numMisses] = check;
+				numMisses++;
+			}
+			else r.setStoredFitness(fitness);
+		}
+		
+		if(numMisses == 0) return;
+		if(numMisses < runners.length) misses = Arrays.copyOf(misses, numMisses);
+		testUncached(misses, others);
+		for(int i = 0; i < numMisses; i++) cache.put(keys[i], checks[i], misses[i].getStoredFitness());
+	}
+	
+	/**
+	 * Test every runner in the given array without using the evaluation cache
+	 * @param runners
+	 * @param others the runners which are not tested, but are sorted with the tested runners, only used for pruning
+	 */
+	private void testUncached(final Runner[] runners, Runner[] others){
+		runnersTested.add(runners.length);
+		int threads = getNumThreads();
+		
+		if(FitnessPruning.isEnabled(settings)){
+			testRunnersPruned(runners, others, threads);
+			return;
+		}
+		
+		if(settings.getEvalMode() == 1){
+			testRunnersLockstep(runners, threads);
+			return;
+		}
+		
+		//with one thread, test everything on this thread
+		if(threads <= 1 || runners.length <= 1){
+			for(Runner r : runners){
+				earlyStopTicksSaved.add(r.testRunner());
+				ticksTested.add(r.getTestTicks());
+			}
+			return;
+		}
+		
+		//each worker takes the next untested runner until there are none left,
+		//so workers that get runners that die quickly do not sit idle
+		final AtomicInteger next = new AtomicInteger(0);
+		ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for(int i = 0; i < Math.min(threads, runners.length); i++){
+			tasks.add(new Callable<Void>(){
+				@Override
+				public Void call(){
+					int index;
+					long saved = 0;
+					long ticks = 0;
+					while((index = next.getAndIncrement()) < runners.length){
+						saved += runners[index].testRunner();
+						ticks += runners[index].getTestTicks();
+					}
+					earlyStopTicksSaved.add(saved);
+					ticksTested.add(ticks);
+					return null;
+				}
+			});
+		}
+		runTasks(tasks, threads);
+	}
+	
+	/**
+	 * Test every runner in the given array with a PopulationEngine, giving each thread its own engine and an equal share of the runners
+	 * @param runners
+	 * @param threads
+	 */
+	private void testRunnersLockstep(final Runner[] runners, int threads){
+		final Track track = runners[0].getTrack();
+		if(threads <= 1 || runners.length <= 1){
+			PopulationEngine engine = new PopulationEngine(settings, track);
+			earlyStopTicksSaved.add(engine.testRunners(runners));
+			ticksTested.add(engine.getTicksTested());
+			return;
+		}
+		
+		int numTasks = Math.min(threads, runners.length);
+		ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for(int i = 0; i < numTasks; i++){
+			final int start = (int)((long)runners.length * i / numTasks);
+			final int end = (int)((long)runners.length * (i + 1) / numTasks);
+			tasks.add(new Callable<Void>(){
+				@Override
+				public Void call(){
+					PopulationEngine engine = new PopulationEngine(settings, track);
+					earlyStopTicksSaved.add(engine.testRunners(runners, start, end));
+					ticksTested.add(engine.getTicksTested());
+					return null;
+				}
+			});
+		}
+		runTasks(tasks, threads);
+	}
+	
+	/**
+	 * Test every runner in the given array with PopulationEngines, the same way as testRunnersLockstep, ending the tests of runners once their place in the order is certain.
+	 * Deciding the place of a runner needs the range of every other runner at the same tick, so every FitnessPruning.CHECK_TICKS ticks,
+	 * each engine stops, then the ranges are checked on this thread before the engines continue
+	 * @param runners
+	 * @param others the runners which are not tested, but are sorted with the tested runners
+	 * @param threads
+	 */
+	private void testRunnersPruned(Runner[] runners, Runner[] others, int threads){
+		Track track = runners[0].getTrack();
+		FitnessPruning pruning = new FitnessPruning(settings, track, runners, others);
+		
+		final PopulationEngine[] engines = new PopulationEngine[Math.max(1, Math.min(threads, runners.length))];
+		for(int i = 0; i < engines.length; i++){
+			engines[i] = new PopulationEngine(settings, track);
+			engines[i].begin(runners, (int)((long)runners.length * i / engines.length), (int)((long)runners.length * (i + 1) / engines.length));
+		}
+		
+		int testTime = settings.getRunnerTestTime();
+		for(int timer = 0; timer < testTime;){
+			final int next = Math.min(testTime, timer + FitnessPruning.CHECK_TICKS);
+			if(engines.length == 1) engines[0].run(next);
+			else{
+				ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+				for(final PopulationEngine e : engines){
+					tasks.add(new Callable<Void>(){
+						@Override
+						public Void call(){
+							e.run(next);
+							return null;
+						}
+					});
+				}
+				runTasks(tasks, threads);
+			}
+			timer = next;
+			
+			int numActive = 0;
+			for(PopulationEngine e : engines) numActive += e.getNumActive();
+			if(numActive == 0) break;
+			pruning.decide(engines, testTime - timer);
+		}
+		
+		for(PopulationEngine e : engines){
+			earlyStopTicksSaved.add(e.finish());
+			ticksTested.add(e.getTicksTested());
+		}
+		prunedTicksSaved.add(pruning.getTicksSaved());
+	}
+	
+	/**
+	 * Run all of the given tasks on the worker threads and wait for all of them to finish, also used for other work on runners, like saving them
+	 * @param tasks
+	 * @param threads the number of worker threads that should exist
+	 */
+	static void runTasks(ArrayList<Callable<Void>> tasks, int threads){
+		try{
+			for(Future<Void> f : getWorkers(threads).invokeAll(tasks)) f.get();
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while testing runners", e);
+		}catch(ExecutionException e){
+			throw new IllegalStateException("Failed to test runners", e.getCause());
+		}
+	}
+	
+	/**
+	 * Get the shared worker threads with the given number of threads, making them if that number has not been used yet
+	 * @param threads
+	 * @return
+	 */
+	private static synchronized ExecutorService getWorkers(final int threads){
+		ExecutorService pool = workers.get(threads);
+		if(pool == null){
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, WORKER_IDLE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory(){
+				private int count = 0;
+				@Override
+				public Thread newThread(Runnable r){
+					Thread t = new Thread(r, "Runner Evaluator " + threads + "-" + count++);
+					//workers should never keep the program open
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			executor.allowCoreThreadTimeOut(true);
+			pool = executor;
+			workers.put(threads, pool);
+		}
+		return pool;
+	}
+	
+}
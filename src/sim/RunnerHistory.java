@@ -0,0 +1,232 @@
+package sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import data.Settings;
+
+/**
+ * The worst, median, and best runners of every generation of a simulation, kept in an append-only file rather than in memory.
+ * Each generation is one record in the file: the number of bytes in the rest of the record, the number of runners,
+ * then each runner in the format of Runner.save(ByteBuffer).
+ * The only thing kept in memory for each generation is where its record starts, and generations are loaded back in when they are used,
+ * with the most recently used generations kept in a small cache, so memory use stays the same no matter how many generations have run.
+ * The file is a temporary file, deleted when the history is closed or the program ends, checkpoints copy the records into their own history section
+ */
+public class RunnerHistory{
+	
+	/**
+	 * The number of generations of runners kept in memory after they are loaded
+	 */
+	public static final int CACHE_SIZE = 16;
+	
+	private Settings settings;
+	
+	/**
+	 * The track given to the runners when they are loaded
+	 */
+	private Track track;
+	
+	/**
+	 * The file holding the records, null until the first generation is added
+	 */
+	private File file;
+	/**
+	 * The channel used to write and read the file, null until the first generation is added
+	 */
+	private FileChannel channel;
+	/**
+	 * The position in the file where the record of each generation starts, only the first size values are used
+	 */
+	private long[] offsets;
+	/**
+	 * The number of generations in the history
+	 */
+	private int size;
+	/**
+	 * The position in the file where the next record is written
+	 */
+	private long end;
+	
+	/**
+	 * The most recently used generations, the least recently used generation is removed once there are more than CACHE_SIZE
+	 */
+	private LinkedHashMap<Integer, Runner[]> cache;
+	
+	public RunnerHistory(Settings settings, Track track){
+		this.settings = settings;
+		this.track = track;
+		
+		offsets = new long[16];
+		size = 0;
+		end = 0;
+		cache = new LinkedHashMap<Integer, Runner[]>(CACHE_SIZE, .75f, true){
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Runner[]> eldest){
+				return size() > CACHE_SIZE;
+			}
+		};
+	}
+	
+	/**
+	 * Get the number of generations in the history
+	 * @return
+	 */
+	public synchronized int size(){
+		return size;
+	}
+	
+	/**
+	 * Add the given runners to the end of the history, as the next generation. The runners are saved as they are now,
+	 * so changing them afterwards does not change the history
+	 * @param runners
+	 */
+	public synchronized void add(Runner[] runners){
+		int length = 4;
+		for(Runner r : runners) length += r.getSaveSize();
+		ByteBuffer record = ByteBuffer.allocate(4 + length);
+		record.putInt(length);
+		record.putInt(runners.length);
+		for(Runner r : runners) r.save(record);
+		record.flip();
+		
+		try{
+			open();
+			while(record.hasRemaining()) end += channel.write(record, end);
+		}catch(IOException e){
+			throw new IllegalStateException("Failed to write runner history", e);
+		}
+		
+		if(size == offsets.length){
+			long[] bigger = new long[offsets.length * 2];
+			System.arraycopy(offsets, 0, bigger, 0, size);
+			offsets = bigger;
+		}
+		offsets[size] = end - record.limit();
+		size++;
+	}
+	
+	/**
+	 * Get the runners of the given generation, loading them from the file if they are not in the cache
+	 * @param gen
+	 * @return the runners, in the order they were added
+	 */
+	public synchronized Runner[] get(int gen){
+		if(gen < 0 || gen >= size) throw new IndexOutOfBoundsException("Generation " + gen + " is not in the history of " + size + " generations");
+		
+		Runner[] runners = cache.get(gen);
+		if(runners != null) return runners;
+		
+		try{
+			ByteBuffer length = ByteBuffer.allocate(4);
+			readFully(length, offsets[gen]);
+			ByteBuffer record = ByteBuffer.allocate(length.getInt());
+			readFully(record, offsets[gen] + 4);
+			runners = new Runner[record.getInt()];
+			for(int i = 0; i < runners.length; i++) runners[i] = new Runner(settings, track, record);
+		}catch(IOException e){
+			throw new IllegalStateException("Failed to read runner history", e);
+		}
+		cache.put(gen, runners);
+		return runners;
+	}
+	
+	/**
+	 * Set the data of the history section of the given checkpoint to every record in this history
+	 * @param checkpoint
+	 * @throws IOException if the file of this history cannot be created
+	 */
+	public synchronized void save(Checkpoint checkpoint) throws IOException{
+		open();
+		checkpoint.setSection(Checkpoint.HISTORY, file, end);
+	}
+	
+	/**
+	 * Replace this history with the records in the history section of the given checkpoint.
+	 * The records are copied straight into the file, only the length of each record is read
+	 * @param checkpoint
+	 * @throws IOException if the checkpoint has no history section, or the records are broken
+	 */
+	public synchronized void load(Checkpoint checkpoint) throws IOException{
+		if(!checkpoint.hasSection(Checkpoint.HISTORY)) throw new IOException("Checkpoint has no runner history");
+		clear();
+		open();
+		channel.position(0);
+		end = checkpoint.transferSection(Checkpoint.HISTORY, channel);
+		
+		//find where each record starts
+		ByteBuffer length = ByteBuffer.allocate(4);
+		for(long pos = 0; pos < end;){
+			readFully(length, pos);
+			int recordLength = length.getInt();
+			if(recordLength < 4 || pos + 4 + recordLength > end) throw new IOException("Runner history is broken");
+			
+			if(size == offsets.length){
+				long[] bigger = new long[offsets.length * 2];
+				System.arraycopy(offsets, 0, bigger, 0, size);
+				offsets = bigger;
+			}
+			offsets[size] = pos;
+			size++;
+			pos += 4 + recordLength;
+		}
+	}
+	
+	/**
+	 * Remove every generation from this history
+	 * @throws IOException
+	 */
+	public synchronized void clear() throws IOException{
+		if(channel != null) channel.truncate(0);
+		size = 0;
+		end = 0;
+		cache.clear();
+	}
+	
+	/**
+	 * Close the file of this history and delete it, after this, the history should not be used
+	 */
+	public synchronized void close(){
+		cache.clear();
+		if(channel != null){
+			try{
+				channel.close();
+			}catch(IOException e){}
+			file.delete();
+			channel = null;
+			file = null;
+		}
+	}
+	
+	/**
+	 * Create the file for this history, if it does not exist yet
+	 * @throws IOException
+	 */
+	private void open() throws IOException{
+		if(channel != null) return;
+		file = File.createTempFile("runnerHistory", ".bin");
+		file.deleteOnExit();
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+	
+	/**
+	 * Fill the given buffer with the bytes of the file starting at the given position, then move the buffer back to its start
+	 * @param buffer
+	 * @param position
+	 * @throws IOException if the file ends before the buffer is full
+	 */
+	private void readFully(ByteBuffer buffer, long position) throws IOException{
+		buffer.clear();
+		while(buffer.hasRemaining()){
+			if(channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Runner history ended early");
+		}
+		buffer.flip();
+	}
+	
+}
@@ -0,0 +1,219 @@
+package sim;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import data.Settings;
+
+/**
+ * Images of runner bodies and ID labels, drawn once and reused every frame, so drawing a runner only copies images instead of making new ones.
+ * Bodies are kept for each combination of alive or dead and eye angle, with the eye angle rounded to one of ANGLE_STEPS angles.
+ * Labels are drawn one character at a time from an image of each digit.
+ * The sprites for the current runner radius and font are shared by all runners, see get. Only used by the thread drawing the window
+ */
+public class RunnerSprites{
+	
+	/**
+	 * The number of eye angles a body is drawn with, the eye of a runner is drawn at the closest of these angles.
+	 * At the default radius, neighbouring angles move the eye about one pixel
+	 */
+	public static final int ANGLE_STEPS = 72;
+	/**
+	 * The characters that can be in a label
+	 */
+	public static final String LABEL_CHARS = "-0123456789";
+	/**
+	 * The size of the font used for labels
+	 */
+	public static final int LABEL_FONT_SIZE = 10;
+	
+	public static final Color ALIVE_OUTLINE = new Color(0, 0, 0);
+	public static final Color ALIVE_BODY = new Color(100, 100, 255);
+	public static final Color DEAD_OUTLINE = new Color(0, 0, 0, 100);
+	public static final Color DEAD_BODY = new Color(100, 100, 255, 100);
+	
+	/**
+	 * The sprites for the most recently used radius and font
+	 */
+	private static RunnerSprites current;
+	
+	/**
+	 * The radius of the runners drawn by these sprites
+	 */
+	private double radius;
+	/**
+	 * The name of the font used for labels
+	 */
+	private String fontName;
+	
+	/**
+	 * The width and height of a body image
+	 */
+	private int size;
+	
+	/**
+	 * The body images, the first index is 0 for alive and 1 for dead, the second is the eye angle. Each image is drawn the first time it is needed
+	 */
+	private BufferedImage[][] bodies;
+	
+	/**
+	 * The image of each character in LABEL_CHARS, the first index is 0 for alive and 1 for dead
+	 */
+	private BufferedImage[][] glyphs;
+	/**
+	 * The width each character in LABEL_CHARS moves the next character
+	 */
+	private int[] advances;
+	/**
+	 * The distance from the top of a glyph image to the baseline of its character
+	 */
+	private int ascent;
+	/**
+	 * The index in LABEL_CHARS of each character of the label being drawn, from the last character to the first
+	 */
+	private int[] label;
+	
+	private RunnerSprites(double radius, String fontName){
+		this.radius = radius;
+		this.fontName = fontName;
+		size = (int)Math.round(radius * 2);
+		bodies = new BufferedImage[2][ANGLE_STEPS];
+		label = new int[11];
+		drawGlyphs();
+	}
+	
+	/**
+	 * Get the sprites for the runner radius and font of the given settings, making new sprites if either has changed since the last call
+	 * @param settings
+	 * @return
+	 */
+	public static synchronized RunnerSprites get(Settings settings){
+		if(current == null || current.radius != settings.getRunnerRadius() || !current.fontName.equals(settings.getFontName())){
+			current = new RunnerSprites(settings.getRunnerRadius(), settings.getFontName());
+		}
+		return current;
+	}
+	
+	/**
+	 * Draw the body and label of a runner, centered on the given point
+	 * @param g
+	 * @param x
+	 * @param y
+	 * @param angle the angle the runner is facing, in degrees
+	 * @param dead
+	 * @param id
+	 */
+	public void draw(Graphics2D g, double x, double y, double angle, boolean dead, int id){
+		int left = (int)Math.round(x - radius);
+		int top = (int)Math.round(y - radius);
+		g.drawImage(getBody(angle, dead), left, top, null);
+		drawLabel(g, id, dead, left + (int)(radius * .6), top + (int)(radius + 5), left + size);
+	}
+	
+	/**
+	 * Get the body image for the given angle, drawing it if it has not been used yet
+	 * @param angle the angle the runner is facing, in degrees
+	 * @param dead
+	 * @return
+	 */
+	private BufferedImage getBody(double angle, boolean dead){
+		int step = (int)Math.round(angle / 360 * ANGLE_STEPS) % ANGLE_STEPS;
+		if(step < 0) step += ANGLE_STEPS;
+		int d = dead ? 1 : 0;
+		if(bodies[d][step] == null) bodies[d][step] = drawBody(step * 360.0 / ANGLE_STEPS, dead);
+		return bodies[d][step];
+	}
+	
+	/**
+	 * Draw a new body image
+	 * @param angle the angle of the eye, in degrees
+	 * @param dead
+	 * @return
+	 */
+	private BufferedImage drawBody(double angle, boolean dead){
+		Color blackC = dead ? DEAD_OUTLINE : ALIVE_OUTLINE;
+		Color bodyC = dead ? DEAD_BODY : ALIVE_BODY;
+		
+		BufferedImage body = new BufferedImage(size, size, BufferedImage.TYPE_4BYTE_ABGR);
+		Graphics g = body.getGraphics();
+		
+		//main circle
+		g.setColor(blackC);
+		g.fillOval(0, 0, size, size);
+		g.setColor(bodyC);
+		g.fillOval(2, 2, (int)Math.round(radius * 2 - 4), (int)Math.round(radius * 2 - 4));
+		
+		//draw eye
+		g.setColor(blackC);
+		int r = 8;
+		double d = 30 * (radius / 50);
+		g.fillOval((int)Math.round(d * Math.cos(Math.toRadians(angle)) - r + radius),
+				   (int)Math.round(d * Math.sin(Math.toRadians(angle)) - r + radius), r * 2, r * 2);
+		
+		g.dispose();
+		return body;
+	}
+	
+	/**
+	 * Draw the image of each character that can be in a label, for alive and dead runners
+	 */
+	private void drawGlyphs(){
+		Font font = new Font(fontName, Font.PLAIN, LABEL_FONT_SIZE);
+		BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_4BYTE_ABGR);
+		Graphics sg = scratch.getGraphics();
+		FontMetrics metrics = sg.getFontMetrics(font);
+		sg.dispose();
+		
+		ascent = metrics.getAscent();
+		int height = Math.max(1, metrics.getAscent() + metrics.getDescent());
+		advances = new int[LABEL_CHARS.length()];
+		glyphs = new BufferedImage[2][LABEL_CHARS.length()];
+		for(int i = 0; i < LABEL_CHARS.length(); i++){
+			char c = LABEL_CHARS.charAt(i);
+			advances[i] = metrics.charWidth(c);
+			for(int d = 0; d < 2; d++){
+				BufferedImage glyph = new BufferedImage(Math.max(1, advances[i]), height, BufferedImage.TYPE_4BYTE_ABGR);
+				Graphics g = glyph.getGraphics();
+				g.setFont(font);
+				g.setColor(d == 1 ? DEAD_OUTLINE : ALIVE_OUTLINE);
+				g.drawString(String.valueOf(c), 0, ascent);
+				g.dispose();
+				glyphs[d][i] = glyph;
+			}
+		}
+	}
+	
+	/**
+	 * Draw the given ID one character at a time, stopping at the first character that would go past maxX, like a label cut off by the edge of the body
+	 * @param g
+	 * @param id
+	 * @param dead
+	 * @param x the left side of the label
+	 * @param baseline the y of the baseline of the label
+	 * @param maxX
+	 */
+	private void drawLabel(Graphics2D g, int id, boolean dead, int x, int baseline, int maxX){
+		//find the characters from the last digit to the first, so no string is made for each label
+		int length = 0;
+		long value = Math.abs((long)id);
+		do{
+			label[length++] = (int)(value % 10) + 1;
+			value /= 10;
+		}while(value > 0);
+		if(id < 0) label[length++] = 0;
+		
+		int d = dead ? 1 : 0;
+		for(int i = length - 1; i >= 0; i--){
+			int c = label[i];
+			if(x + advances[c] > maxX) return;
+			g.drawImage(glyphs[d][c], x, baseline - ascent, null);
+			x += advances[c];
+		}
+	}
+	
+	
+}
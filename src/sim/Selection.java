@@ -0,0 +1,257 @@
+package sim;
+
+import java.util.Arrays;
+
+/**
+ * The sorting and selecting used to pick which runners survive each generation, written to stay fast for very large populations.
+ * Everything works on arrays of primitives, so no values are boxed, and nothing takes more than O(n log n) time
+ */
+public class Selection{
+	
+	/**
+	 * The number of values in each statistic, see getQuantiles
+	 */
+	public static final int NUM_QUANTILES = 11;
+	
+	/**
+	 * Ranges smaller than this are sorted by insertion sort rather than split up any further
+	 */
+	private static final int INSERTION_SORT_SIZE = 16;
+	
+	/**
+	 * Get the order of the given values from highest to lowest. Equal values keep the order they are in.
+	 * The values are sorted together with their indexes, so the sort reads through memory in order rather than jumping between values
+	 * @param keys the values to sort, not changed
+	 * @return the indexes of the values, the index of the highest value first
+	 */
+	public static int[] sortDescending(double[] keys){
+		int n = keys.length;
+		double[] sortedKeys = keys.clone();
+		int[] order = new int[n];
+		for(int i = 0; i < n; i++) order[i] = i;
+		mergeSort(sortedKeys, order, new double[n], new int[n], 0, n);
+		return order;
+	}
+	
+	/**
+	 * Sort the given indexes by their values from highest to lowest. Equal values keep the order they are in.
+	 * Parts of the order that are already sorted are not merged again, so sorting an order that barely changed since it was last sorted is fast
+	 * @param values the value of each index, not changed
+	 * @param order the indexes to sort
+	 * @param keys an array the same size as order, filled with the value of each index in the sorted order
+	 * @param tempKeys an array the same size as order, used while merging
+	 * @param tempOrder an array the same size as order, used while merging
+	 */
+	public static void sortDescending(double[] values, int[] order, double[] keys, double[] tempKeys, int[] tempOrder){
+		for(int i = 0; i < order.length; i++) keys[i] = values[order[i]];
+		mergeSort(keys, order, tempKeys, tempOrder, 0, order.length);
+	}
+	
+	/**
+	 * Sort the keys from start, inclusive, to end, exclusive, from highest to lowest, moving the indexes in order the same way,
+	 * and keeping equal keys in the same order
+	 * @param keys
+	 * @param order
+	 * @param tempKeys an array the same size as keys, used while merging
+	 * @param tempOrder an array the same size as order, used while merging
+	 * @param start
+	 * @param end
+	 */
+	private static void mergeSort(double[] keys, int[] order, double[] tempKeys, int[] tempOrder, int start, int end){
+		if(end - start <= INSERTION_SORT_SIZE){
+			for(int i = start + 1; i < end; i++){
+				double key = keys[i];
+				int index = order[i];
+				int j = i - 1;
+				while(j >= start && Double.compare(key, keys[j]) > 0){
+					keys[j + 1] = keys[j];
+					order[j + 1] = order[j];
+					j--;
+				}
+				keys[j + 1] = key;
+				order[j + 1] = index;
+			}
+			return;
+		}
+		
+		int mid = (start + end) >>> 1;
+		mergeSort(keys, order, tempKeys, tempOrder, start, mid);
+		mergeSort(keys, order, tempKeys, tempOrder, mid, end);
+		//the halves are already in order
+		if(Double.compare(keys[mid], keys[mid - 1]) <= 0) return;
+		
+		System.arraycopy(keys, start, tempKeys, start, end - start);
+		System.arraycopy(order, start, tempOrder, start, end - start);
+		int a = start;
+		int b = mid;
+		for(int i = start; i < end; i++){
+			//only take from the second half when its key is strictly higher, so equal keys keep their order
+			if(b >= end || a < mid && Double.compare(tempKeys[b], tempKeys[a]) <= 0){
+				keys[i] = tempKeys[a];
+				order[i] = tempOrder[a++];
+			}
+			else{
+				keys[i] = tempKeys[b];
+				order[i] = tempOrder[b++];
+			}
+		}
+	}
+	
+	/**
+	 * Find the value that would be at the given index if the given values were sorted from highest to lowest, in O(n) time on average.
+	 * The values are moved around, but none are added or removed, so the same array can be used to select more values
+	 * @param values
+	 * @param index
+	 * @return
+	 */
+	public static double select(double[] values, int index){
+		return select(values, 0, values.length, index);
+	}
+	
+	/**
+	 * Find the value that would be at the given index if the values from start, inclusive, to end, exclusive, were sorted from highest to lowest.
+	 * Afterwards, that value is at the given index, every value before it in the range is at least as high, and every value after it is at most as high,
+	 * so selecting a later index only needs to look at the values after this index
+	 * @param values
+	 * @param start
+	 * @param end
+	 * @param index
+	 * @return
+	 */
+	public static double select(double[] values, int start, int end, int index){
+		//if the ranges stop getting smaller fast enough, sort what is left so the time never gets worse than O(n log n)
+		int splitsLeft = 2 * (32 - Integer.numberOfLeadingZeros(end - start));
+		while(end - start > INSERTION_SORT_SIZE && splitsLeft > 0){
+			splitsLeft--;
+			
+			//put the middle of three values in the middle of the range, and use it to split the range
+			int mid = (start + end) >>> 1;
+			if(Double.compare(values[mid], values[start]) > 0) swap(values, mid, start);
+			if(Double.compare(values[end - 1], values[start]) > 0) swap(values, end - 1, start);
+			if(Double.compare(values[end - 1], values[mid]) > 0) swap(values, end - 1, mid);
+			double pivot = values[mid];
+			
+			//split the range into values higher than the pivot, then values equal to it, then values lower than it
+			int high = start;
+			int low = end;
+			int i = start;
+			while(i < low){
+				int c = Double.compare(values[i], pivot);
+				if(c > 0) swap(values, i++, high++);
+				else if(c < 0) swap(values, i, --low);
+				else i++;
+			}
+			
+			if(index < high) end = high;
+			else if(index >= low) start = low;
+			else return pivot;
+		}
+		
+		//Arrays.sort goes from lowest to highest, so reverse the range afterwards
+		Arrays.sort(values, start, end);
+		for(int i = start, j = end - 1; i < j; i++, j--) swap(values, i, j);
+		return values[index];
+	}
+	
+	/**
+	 * Swap the values at the given indexes
+	 * @param values
+	 * @param a
+	 * @param b
+	 */
+	private static void swap(double[] values, int a, int b){
+		double temp = values[a];
+		values[a] = values[b];
+		values[b] = temp;
+	}
+	
+	/**
+	 * Get the indexes used for each statistic, from the index of the highest value to the index of the lowest value,
+	 * the same indexes used for the fitness data of a Simulation
+	 * @param size the number of values
+	 * @return
+	 */
+	public static int[] getQuantileIndexes(int size){
+		return new int[]{
+			0,
+			size / 10, size / 5, size / 10 * 3, size / 5 * 2,
+			size / 2,
+			size / 5 * 3, size / 10 * 7, size / 5 * 4, size / 10 * 9,
+			size - 1
+		};
+	}
+	
+	/**
+	 * Get the values at each index of getQuantileIndexes if the given values were sorted from highest to lowest, without sorting them
+	 * @param values the values, which are moved around
+	 * @return
+	 */
+	public static double[] getQuantiles(double[] values){
+		int[] indexes = getQuantileIndexes(values.length);
+		double[] quantiles = new double[NUM_QUANTILES];
+		//the indexes only go up, so each value is selected from the values after the last one
+		int start = 0;
+		for(int i = 0; i < quantiles.length; i++){
+			if(i > 0 && indexes[i] == indexes[i - 1]) quantiles[i] = quantiles[i - 1];
+			else{
+				quantiles[i] = select(values, start, values.length, indexes[i]);
+				start = indexes[i] + 1;
+			}
+		}
+		return quantiles;
+	}
+	
+	/**
+	 * Pick which runners should die, when runners are sorted with index 0 being the best runner.
+	 * One at a time, survivors are removed from the list of runners that are left, each at the index Math.pow(random.nextDouble(), 3) times the number left,
+	 * so better runners are more likely to survive. The runners left at the end die.
+	 * The runners that are left are kept in a Fenwick tree, so finding the runner at an index of the list only takes O(log n) time,
+	 * and the same random numbers pick exactly the same runners as removing them from a list
+	 * @param numRunners the number of runners
+	 * @param numToDie the number of runners that die
+	 * @param random the random numbers used to pick the survivors
+	 * @return the indexes of the runners that die, from lowest to highest
+	 */
+	public static int[] pickRunnersToDie(int numRunners, int numToDie, RandomStream random){
+		//tree[i] holds the number of runners left from index i - (i & -i) to i - 1
+		int[] tree = new int[numRunners + 1];
+		for(int i = 1; i <= numRunners; i++){
+			tree[i]++;
+			int parent = i + (i & -i);
+			if(parent <= numRunners) tree[parent] += tree[i];
+		}
+		int topBit = numRunners == 0 ? 0 : Integer.highestOneBit(numRunners);
+		boolean[] survived = new boolean[numRunners];
+		
+		int left = numRunners;
+		for(int n = 0; n < numRunners - numToDie; n++){
+			int index = (int)(Math.pow(random.nextDouble(), 3) * left);
+			
+			//find the runner with index runners left before it
+			int pos = 0;
+			int skip = index;
+			for(int bit = topBit; bit > 0; bit >>= 1){
+				int next = pos + bit;
+				if(next <= numRunners && tree[next] <= skip){
+					pos = next;
+					skip -= tree[next];
+				}
+			}
+			
+			survived[pos] = true;
+			for(int i = pos + 1; i <= numRunners; i += i & -i) tree[i]--;
+			left--;
+		}
+		
+		int[] toDie = new int[numToDie];
+		int count = 0;
+		for(int i = 0; i < numRunners && count < numToDie; i++){
+			if(!survived[i]){
+				toDie[count] = i;
+				count++;
+			}
+		}
+		return toDie;
+	}
+	
+}
@@ -2,8 +2,14 @@ package sim;
 
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Scanner;
 
 import data.Settings;
@@ -18,6 +24,10 @@ public class Simulation{
 	 * an array of all the indexes of runners that will die next generation
 	 */
 	private int[] runnersToDie;
+	/**
+	 * For each runner index, true if the runner at that index is in runnersToDie, so checking a runner does not need to search runnersToDie
+	 */
+	private boolean[] dying;
 	
 	/**
 	 * The track that the runners are moving in
@@ -40,29 +50,90 @@ public class Simulation{
 	
 	/**
 	 * The best, median, and worst runners of each generation. 
-	 * Each array in the ArrayList is a set of the best, median, and worst. 
+	 * Each array in the history is a set of the best, median, and worst. 
 	 * arr[0] is the worst runner, arr[1] is the median runner, arr[2] is the best runner
 	 */
-	private ArrayList<Runner[]> runnerHistory;
+	private RunnerHistory runnerHistory;
 	
 	/**
 	 * true if every runner should be tested next generation, is automatically set to false after a generation
 	 */
 	private boolean updateAllRunners;
 	
+	/**
+	 * The object used to test the runners of each generation
+	 */
+	private RunnerEvaluator evaluator;
+	
+	/**
+	 * The number of exact line tests the track skipped while testing the most recent generation
+	 */
+	private long skippedLineTests;
+	/**
+	 * The number of ticks that were not tested because runners settled while testing the most recent generation
+	 */
+	private long earlyStopTicksSaved;
+	/**
+	 * The number of ticks that were not tested because the place of runners in the order was certain while testing the most recent generation,
+	 * see FitnessPruning
+	 */
+	private long prunedTicksSaved;
+	/**
+	 * The number of runners tested last generation which got their fitness from the evaluation cache in memory, see EvaluationCache
+	 */
+	private long cacheHits;
+	/**
+	 * The number of runners tested last generation which got their fitness from the evaluation cache file
+	 */
+	private long cacheDiskHits;
+	/**
+	 * The number of runners tested last generation which were not in the evaluation cache
+	 */
+	private long cacheMisses;
+	/**
+	 * The number of runners tested last generation, not counting runners that got their fitness from the evaluation cache
+	 */
+	private long runnersTested;
+	/**
+	 * The number of ticks tested last generation, counting each runner once for each tick it was tested for
+	 */
+	private long ticksTested;
+	
+	/**
+	 * The seed the random numbers of this simulation started from, see RandomStream
+	 */
+	private long seed;
+	/**
+	 * The random numbers of this simulation, used to pick the runners to die, and split to give each new runner its own stream
+	 */
+	private RandomStream random;
+	
+	/**
+	 * The fingerprint of the settings and track every runner in runners was tested with, see Fingerprint,
+	 * or Fingerprint.NONE if the runners were tested with different settings or tracks
+	 */
+	private long testedFingerprint;
+	/**
+	 * true if the last load of this simulation used the fitness stored in the save, false if the runners were tested again
+	 */
+	private boolean loadedWithoutTesting;
+	
 	/**
 	 * @param trackName the name of the track to load in
 	 */
 	public Simulation(Settings settings, String trackName){
 		this.settings = settings;
 		
-		runnersToDie = new int[settings.getNumRunners() / 2];
-		for(int i = 0; i < runnersToDie.length; i++) runnersToDie[i] = -1;
+		int[] toDie = new int[settings.getNumRunners() / 2];
+		for(int i = 0; i < toDie.length; i++) toDie[i] = -1;
+		setRunnersToDie(toDie);
 		
 		runners = new Runner[settings.getNumRunners()];
 		
 		updateAllRunners = false;
 		
+		evaluator = new RunnerEvaluator(settings);
+		
 		if(trackName == null){
 			track = new Track(settings, new Point2D.Double(0, 0));
 			track.setDefault();
@@ -77,7 +148,13 @@ public class Simulation{
 		fitnessData = new ArrayList<double[]>();
 		mutabilityData = new ArrayList<double[]>();
 		
-		runnerHistory = new ArrayList<Runner[]>();
+		runnerHistory = new RunnerHistory(settings, track);
+		
+		testedFingerprint = Fingerprint.NONE;
+		loadedWithoutTesting = false;
+		
+		seed = RandomStream.newSeed();
+		random = new RandomStream(seed);
 	}
 	
 	public ArrayList<double[]> getFitnessData(){
@@ -86,7 +163,7 @@ public class Simulation{
 	public ArrayList<double[]> getMutabilityData(){
 		return mutabilityData;
 	}
-	public ArrayList<Runner[]> getRunnerHistory(){
+	public RunnerHistory getRunnerHistory(){
 		return runnerHistory;
 	}
 	
@@ -94,6 +171,10 @@ public class Simulation{
 		return track;
 	}
 	
+	public Settings getSettings(){
+		return settings;
+	}
+	
 	/**
 	 * Get the runner at the specified index
 	 * @param index
@@ -110,22 +191,176 @@ public class Simulation{
 		return runnersToDie;
 	}
 	
+	/**
+	 * Determine if the runner at the given index will die next generation, and be replaced by a new runner that will be tested
+	 * @param index
+	 * @return
+	 */
+	public boolean isToDie(int index){
+		return index >= 0 && index < dying.length && dying[index];
+	}
+	
+	/**
+	 * Set the indexes of the runners that will die next generation
+	 * @param toDie the indexes, any index that is not the index of a runner is ignored
+	 */
+	private void setRunnersToDie(int[] toDie){
+		runnersToDie = toDie;
+		dying = new boolean[Math.max(settings.getNumRunners(), runners == null ? 0 : runners.length)];
+		for(int i : toDie) if(i >= 0 && i < dying.length) dying[i] = true;
+	}
+	
 	public int getCurrentGen(){
 		return currentGen;
 	}
 	
+	/**
+	 * Get the number of exact tests of a runner touching a track line or fitness line that the track skipped while testing the most recent generation,
+	 * because the bounds of the line were too far from the runner
+	 * @return
+	 */
+	public long getSkippedLineTests(){
+		return skippedLineTests;
+	}
+	
+	/**
+	 * Get the number of ticks that were not tested because runners settled while testing the most recent generation, see EarlyStop
+	 * @return
+	 */
+	public long getEarlyStopTicksSaved(){
+		return earlyStopTicksSaved;
+	}
+	
+	/**
+	 * Get the number of ticks that were not tested because the place of runners in the order was certain while testing the most recent generation,
+	 * see FitnessPruning
+	 * @return
+	 */
+	public long getPrunedTicksSaved(){
+		return prunedTicksSaved;
+	}
+	
+	/**
+	 * Get the seed the random numbers of this simulation started from. A new simulation with this seed and the same settings evolves the same way
+	 * @return
+	 */
+	public long getSeed(){
+		return seed;
+	}
+	
+	/**
+	 * Get the number of runners tested for the most recent generation which got their fitness from the evaluation cache in memory
+	 * @return
+	 */
+	public long getCacheHits(){
+		return cacheHits;
+	}
+	
+	/**
+	 * Get the number of runners tested for the most recent generation which got their fitness from the evaluation cache file
+	 * @return
+	 */
+	public long getCacheDiskHits(){
+		return cacheDiskHits;
+	}
+	
+	/**
+	 * Get the number of runners tested for the most recent generation which were not in the evaluation cache, and had to be tested
+	 * @return
+	 */
+	public long getCacheMisses(){
+		return cacheMisses;
+	}
+	
+	/**
+	 * Get the number of runners tested for the most recent generation, not counting runners that got their fitness from the evaluation cache
+	 * @return
+	 */
+	public long getRunnersTested(){
+		return runnersTested;
+	}
+	
+	/**
+	 * Get the number of ticks tested for the most recent generation, counting each runner once for each tick it was tested for
+	 * @return
+	 */
+	public long getTicksTested(){
+		return ticksTested;
+	}
+	
+	/**
+	 * Determine if the last load of this simulation used the fitness stored in the save, rather than testing every runner again.
+	 * Stored fitness is only used when the save has the fingerprint of the settings and track the runners were tested with, and it matches the loaded settings and track
+	 * @return
+	 */
+	public boolean wasLoadedWithoutTesting(){
+		return loadedWithoutTesting;
+	}
+	
+	/**
+	 * Test the runners at the given indexes, and count the line tests the track skipped and the ticks saved while testing them
+	 * @param tested for each index in runners, true if the runner should be tested, or null to test every runner
+	 */
+	private void testRunners(boolean[] tested){
+		//the runners that are not tested are still sorted with the tested runners
+		int numTested = 0;
+		if(tested == null) numTested = runners.length;
+		else for(boolean t : tested) if(t) numTested++;
+		Runner[] toTest = new Runner[numTested];
+		Runner[] others = new Runner[runners.length - numTested];
+		int t = 0;
+		int o = 0;
+		for(int i = 0; i < runners.length; i++){
+			if(tested == null || tested[i]) toTest[t++] = runners[i];
+			else others[o++] = runners[i];
+		}
+		
+		//the fingerprint of the runners is only known if they were all tested with the same settings and track
+		long fingerprint = Fingerprint.getEvaluation(settings, track);
+		if(toTest.length == runners.length) testedFingerprint = fingerprint;
+		else if(testedFingerprint != fingerprint) testedFingerprint = Fingerprint.NONE;
+		
+		track.takeSkippedLineTests();
+		evaluator.takeEarlyStopTicksSaved();
+		evaluator.takePrunedTicksSaved();
+		evaluator.takeRunnersTested();
+		evaluator.takeTicksTested();
+		EvaluationCache cache = evaluator.getCache();
+		long hits = cache == null ? 0 : cache.getHits();
+		long diskHits = cache == null ? 0 : cache.getDiskHits();
+		long misses = cache == null ? 0 : cache.getMisses();
+		evaluator.testRunners(toTest, others);
+		//the evaluator makes a new cache when the cache settings change
+		if(evaluator.getCache() != cache) hits = diskHits = misses = 0;
+		cache = evaluator.getCache();
+		cacheHits = cache == null ? 0 : cache.getHits() - hits;
+		cacheDiskHits = cache == null ? 0 : cache.getDiskHits() - diskHits;
+		cacheMisses = cache == null ? 0 : cache.getMisses() - misses;
+		skippedLineTests = track.takeSkippedLineTests();
+		earlyStopTicksSaved = evaluator.takeEarlyStopTicksSaved();
+		prunedTicksSaved = evaluator.takePrunedTicksSaved();
+		runnersTested = evaluator.takeRunnersTested();
+		ticksTested = evaluator.takeTicksTested();
+	}
+	
 	/**
 	 * Creates a new simulation and tests and sorts generation 0
 	 */
 	public void newSimulation(){
 		Runner.resetRunnerIDs();
-		runners = new Runner[settings.getNumRunners()];
-		for(int i = 0; i < runners.length; i++){
-			//create the runner
-			runners[i] = new Runner(settings, track);
-			//test the runner
-			runners[i].testRunner();
+		//start the random numbers from the seed in the settings, or a new seed that fits in the setting, so the run can be repeated
+		if(settings.getRandomSeed() != 0) seed = settings.getRandomSeed();
+		else{
+			seed = (int)RandomStream.newSeed();
+			if(seed == 0) seed = 1;
 		}
+		random = new RandomStream(seed);
+		
+		runners = new Runner[settings.getNumRunners()];
+		//create the runners, each with its own random numbers
+		for(int i = 0; i < runners.length; i++) runners[i] = new Runner(settings, track, random.split());
+		//test the runners
+		testRunners(null);
 		sortRunners();
 		findRunnersToDie();
 		updateData();
@@ -135,6 +370,10 @@ public class Simulation{
 	 * Add a new spot to the data, make sure runners are sorted before this is called
 	 */
 	public void updateData(){
+		//the runners that are recorded must have the fitness of a full test
+		finishPruned(0, runners.length / 10, runners.length / 5, runners.length / 10 * 3, runners.length / 5 * 2, runners.length / 2,
+					 runners.length / 5 * 3, runners.length / 10 * 7, runners.length / 5 * 4, runners.length / 10 * 9, runners.length - 1);
+		
 		//add fitness data
 		fitnessData.add(new double[]{
 			//best runner
@@ -151,50 +390,43 @@ public class Simulation{
 			runners[runners.length - 1].getStoredFitness(),
 		});
 		
-		//make and sort a list of the mutability
+		//add mutability data, from the highest mutability to the lowest, at the same percentiles as the fitness data,
+		//the runners are not sorted by mutability, so each percentile is selected without sorting
 		double[] m = new double[runners.length];
 		for(int i = 0; i < m.length; i++) m[i] = runners[i].getMutability();
-		for(int i = 0; i < m.length; i++){
-			int high = -1;
-			for(int j = i; j < m.length; j++){
-				if(high == -1 || m[high] < m[j]) high = j;
-			}
-			double temp = m[i];
-			m[i] = m[high];
-			m[high] = temp;
-		}
-		
-		//add mutability data
-		mutabilityData.add(new double[]{
-				//highest mutability
-				m[0],
-				//10-40 percentile
-				m[m.length / 10], m[m.length / 5],
-				m[m.length / 10 * 3], m[m.length / 5 * 2],
-				//50 percentile (median)
-				m[m.length / 2],
-				//60-90 percentile
-				m[m.length / 5 * 3], m[m.length / 10 * 7],
-				m[m.length / 5 * 4], m[m.length / 10 * 9],
-				//lowest mutability
-				m[m.length - 1],
-			});
+		mutabilityData.add(Selection.getQuantiles(m));
 		
 		//add runner history data
 		runnerHistory.add(new Runner[]{runners[runners.length - 1], runners[runners.length / 2], runners[0]});
 	}
 	
+	/**
+	 * Test the runners at the given indexes for the full time, if their last test was pruned, see FitnessPruning.
+	 * The fitness of a full test is always in the range the runner was pruned with, so the order of the runners does not change
+	 * @param indexes
+	 */
+	private void finishPruned(int... indexes){
+		for(int i : indexes){
+			if(!runners[i].isFitnessPruned()) continue;
+			runners[i].testRunner();
+			ticksTested += runners[i].getTestTicks();
+		}
+	}
+	
+	/**
+	 * Determine if any runner has a fitness from a test that was pruned, see FitnessPruning
+	 * @return
+	 */
+	private boolean hasPrunedRunners(){
+		for(Runner r : runners) if(r.isFitnessPruned()) return true;
+		return false;
+	}
+	
 	/**
 	 * Selects the next set of runners to die, with a higher change for the worse runners to die
 	 */
 	public void findRunnersToDie(){
-		runnersToDie = new int[settings.getNumRunners() / 2];
-		ArrayList<Integer> indexes = new ArrayList<Integer>();
-		for(int i = 0; i < runners.length; i++) indexes.add(i);
-		
-		for(int i = 0; i < runners.length - runnersToDie.length; i++) indexes.remove((int)(Math.pow(Math.random(), 3) * indexes.size()));
-
-		for(int i = 0; i < runnersToDie.length; i++) runnersToDie[i] = indexes.get(i);
+		setRunnersToDie(Selection.pickRunnersToDie(runners.length, settings.getNumRunners() / 2, random));
 	}
 	
 	/**
@@ -223,17 +455,11 @@ public class Simulation{
 			}
 		}
 		
-		//test all runners
-		for(int i = 0; i < runners.length; i++){
-			boolean found = false;
-			if(!updateAllRunners){
-				for(int j = 0; j < runnersToDie.length && !found; j++){
-					if(runnersToDie[j] == i) found = true;
-				}
-			}
-				
-			if(updateAllRunners || found) runners[i].testRunner();
-		}
+		//test all runners that are new, or all runners if every runner should be tested.
+		//Runners whose last test was pruned are tested again, because their fitness is only exact compared to the runners they were tested with
+		boolean[] tested = new boolean[runners.length];
+		for(int i = 0; i < runners.length; i++) tested[i] = updateAllRunners || dying[i] || runners[i].isFitnessPruned();
+		testRunners(tested);
 		
 		updateAllRunners = false;
 		
@@ -259,15 +485,13 @@ public class Simulation{
 	 * Sort the runners, with index 0 being the highest fitness
 	 */
 	public void sortRunners(){
-		for(int i = 0; i < runners.length; i++){
-			int high = -1;
-			for(int j = i; j < runners.length; j++){
-				if(high == -1 || runners[high].getStoredFitness() < runners[j].getStoredFitness()) high = j;
-			}
-			Runner temp = runners[i];
-			runners[i] = runners[high];
-			runners[high] = temp;
-		}
+		double[] fitness = new double[runners.length];
+		for(int i = 0; i < runners.length; i++) fitness[i] = runners[i].getStoredFitness();
+		int[] order = Selection.sortDescending(fitness);
+		
+		Runner[] sorted = new Runner[runners.length];
+		for(int i = 0; i < runners.length; i++) sorted[i] = runners[order[i]];
+		System.arraycopy(sorted, 0, runners, 0, runners.length);
 	}
 	
 	/**
@@ -303,7 +527,8 @@ public class Simulation{
 		
 		//save runner history
 		write.println(runnerHistory.size());
-		for(Runner[] r : runnerHistory){
+		for(int i = 0; i < runnerHistory.size(); i++){
+			Runner[] r = runnerHistory.get(i);
 			write.println(r.length);
 			for(Runner rr : r) rr.save(write);
 			write.println();
@@ -350,14 +575,16 @@ public class Simulation{
 		}
 		
 		//load runner history
-		runnerHistory = new ArrayList<Runner[]>();
+		runnerHistory.close();
+		runnerHistory = new RunnerHistory(settings, track);
 		size = scan.nextInt();
 		for(int i = 0; i < size; i++){
-			runnerHistory.add(new Runner[scan.nextInt()]);
-			for(int j = 0; j < runnerHistory.get(i).length; j++){
-				runnerHistory.get(i)[j] = new Runner(settings, track);
-				runnerHistory.get(i)[j].load(scan);
+			Runner[] r = new Runner[scan.nextInt()];
+			for(int j = 0; j < r.length; j++){
+				r[j] = new Runner(settings, track);
+				r[j].load(scan);
 			}
+			runnerHistory.add(r);
 		}
 		
 		runners = new Runner[scan.nextInt()];
@@ -367,12 +594,214 @@ public class Simulation{
 		}
 		
 		//load runners to die
-		runnersToDie = new int[settings.getNumRunners() / 2];
-		for(int i = 0; i < runnersToDie.length; i++ ) runnersToDie[i] = scan.nextInt();
+		int[] toDie = new int[settings.getNumRunners() / 2];
+		for(int i = 0; i < toDie.length; i++ ) toDie[i] = scan.nextInt();
+		setRunnersToDie(toDie);
+		
+		//text saves do not have random numbers, so continue with a new seed
+		newRandom();
+		
+		//text saves do not have a fingerprint, so calculate everything from the loaded generation
+		testRunners(null);
+		loadedWithoutTesting = false;
+		sortRunners();
+	}
+	
+	/**
+	 * Save all the data of this simulation to a checkpoint in the given file, see Checkpoint
+	 * @param file
+	 * @throws IOException
+	 */
+	public void saveCheckpoint(File file) throws IOException{
+		Checkpoint checkpoint = new Checkpoint();
+		
+		//save the current settings of this sim, in the same format as the settings file
+		StringWriter text = new StringWriter();
+		PrintWriter write = new PrintWriter(text);
+		settings.save(write);
+		write.close();
+		checkpoint.setSection(Checkpoint.SETTINGS, ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8)));
+		
+		//save track of this sim
+		ByteBuffer buffer = ByteBuffer.allocate(track.getSaveSize());
+		track.save(buffer);
+		buffer.flip();
+		checkpoint.setSection(Checkpoint.TRACK, buffer);
+		
+		//save misc variables, fitness data, and mutability data
+		int size = 4 + 4 + getDataSaveSize(fitnessData) + getDataSaveSize(mutabilityData);
+		buffer = ByteBuffer.allocate(size);
+		buffer.putInt(currentGen);
+		buffer.putInt(Runner.getCurrentRunnerID());
+		saveData(buffer, fitnessData);
+		saveData(buffer, mutabilityData);
+		buffer.flip();
+		checkpoint.setSection(Checkpoint.STATS, buffer);
+		
+		//save runner history, copied from the file of the history when the checkpoint is written
+		runnerHistory.save(checkpoint);
+		
+		//save the main set of runners for this sim, then the runners to die
+		ByteBuffer population = Checkpoint.encodeRunners(settings, runners);
+		buffer = ByteBuffer.allocate(population.remaining() + 4 + runnersToDie.length * 4);
+		buffer.put(population);
+		buffer.putInt(runnersToDie.length);
+		for(int i : runnersToDie) buffer.putInt(i);
+		buffer.flip();
+		checkpoint.setSection(Checkpoint.POPULATION, buffer);
+		
+		//save the fingerprint of the settings and track the runners were tested with, runners with pruned fitness must be tested again when loaded
+		buffer = ByteBuffer.allocate(8);
+		buffer.putLong(hasPrunedRunners() ? Fingerprint.NONE : testedFingerprint);
+		buffer.flip();
+		checkpoint.setSection(Checkpoint.EVALUATION, buffer);
+		
+		//save the random numbers of this sim, then of each runner
+		buffer = ByteBuffer.allocate(8 + RandomStream.getSaveSize() * (runners.length + 1) + 4);
+		buffer.putLong(seed);
+		random.save(buffer);
+		buffer.putInt(runners.length);
+		for(Runner r : runners) r.getRandom().save(buffer);
+		buffer.flip();
+		checkpoint.setSection(Checkpoint.RANDOM, buffer);
+		
+		checkpoint.write(file);
+	}
+	
+	/**
+	 * Load in this simulation from the checkpoint in the given file, see Checkpoint
+	 * @param file
+	 * @throws IOException if the file cannot be read, or is not a valid checkpoint
+	 */
+	public void loadCheckpoint(File file) throws IOException{
+		Checkpoint checkpoint = Checkpoint.read(file);
+		for(int id = Checkpoint.SETTINGS; id <= Checkpoint.POPULATION; id++){
+			if(!checkpoint.hasSection(id)) throw new IOException("Checkpoint is missing section " + id);
+		}
+		
+		//load settings
+		ByteBuffer buffer = checkpoint.getSection(Checkpoint.SETTINGS);
+		Scanner scan = new Scanner(new String(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), StandardCharsets.UTF_8));
+		settings.load(scan);
+		scan.close();
 		
-		//calculate everything from the loaded generation
-		for(Runner r : runners) r.testRunner();
+		//load track
+		track = new Track(settings, new Point2D.Double(0, 0), new Line2D.Double[0]);
+		track.load(checkpoint.getSection(Checkpoint.TRACK));
+		
+		//load misc values, fitness data, and mutability data
+		buffer = checkpoint.getSection(Checkpoint.STATS);
+		currentGen = buffer.getInt();
+		Runner.setCurrentRunnerID(buffer.getInt());
+		fitnessData = loadData(buffer);
+		mutabilityData = loadData(buffer);
+		
+		//load runner history, version 1 checkpoints stored the length of each generation, then all the runners together
+		runnerHistory.close();
+		runnerHistory = new RunnerHistory(settings, track);
+		if(checkpoint.getVersion() == 1){
+			buffer = checkpoint.getSection(Checkpoint.HISTORY);
+			int[] lengths = new int[buffer.getInt()];
+			for(int i = 0; i < lengths.length; i++) lengths[i] = buffer.getInt();
+			Runner[] history = Checkpoint.decodeRunners(settings, track, buffer);
+			int index = 0;
+			for(int length : lengths){
+				if(index + length > history.length) throw new IOException("Checkpoint runner history is broken");
+				runnerHistory.add(Arrays.copyOfRange(history, index, index + length));
+				index += length;
+			}
+		}
+		else runnerHistory.load(checkpoint);
+		
+		//load the main set of runners, then the runners to die
+		buffer = checkpoint.getSection(Checkpoint.POPULATION);
+		runners = Checkpoint.decodeRunners(settings, track, buffer);
+		int[] toDie = new int[buffer.getInt()];
+		for(int i = 0; i < toDie.length; i++){
+			toDie[i] = buffer.getInt();
+			if(toDie[i] < 0 || toDie[i] >= runners.length) throw new IOException("Checkpoint runners to die are broken");
+		}
+		setRunnersToDie(toDie);
+		
+		//load the random numbers, checkpoints without them continue with a new seed
+		if(checkpoint.hasSection(Checkpoint.RANDOM)){
+			buffer = checkpoint.getSection(Checkpoint.RANDOM);
+			seed = buffer.getLong();
+			random = new RandomStream(buffer);
+			if(buffer.getInt() != runners.length) throw new IOException("Checkpoint random numbers do not match the runners");
+			for(Runner r : runners) r.setRandom(new RandomStream(buffer));
+		}
+		else newRandom();
+		
+		//use the stored fitness if the runners were tested with the loaded settings and track, otherwise calculate everything from the loaded generation
+		long saved = Fingerprint.NONE;
+		if(checkpoint.hasSection(Checkpoint.EVALUATION)) saved = checkpoint.getSection(Checkpoint.EVALUATION).getLong();
+		if(saved != Fingerprint.NONE && saved == Fingerprint.getEvaluation(settings, track)){
+			testedFingerprint = saved;
+			loadedWithoutTesting = true;
+		}
+		else{
+			testRunners(null);
+			loadedWithoutTesting = false;
+		}
 		sortRunners();
 	}
 	
+	/**
+	 * Start the random numbers of this simulation from a new seed, and give each runner a new stream split from them
+	 */
+	private void newRandom(){
+		seed = RandomStream.newSeed();
+		random = new RandomStream(seed);
+		for(Runner r : runners) r.setRandom(random.split());
+	}
+	
+	/**
+	 * Close the files holding the runner history and evaluation cache of this simulation, after this, the simulation should not be used
+	 */
+	public void close(){
+		runnerHistory.close();
+		evaluator.close();
+	}
+	
+	/**
+	 * Get the number of bytes saveData writes for the given data
+	 * @param data
+	 * @return
+	 */
+	private static int getDataSaveSize(ArrayList<double[]> data){
+		int size = 4;
+		for(double[] d : data) size += 4 + d.length * 8;
+		return size;
+	}
+	
+	/**
+	 * Save the given fitness or mutability data to the given buffer: the number of generations, then the length and values of each generation
+	 * @param buffer
+	 * @param data
+	 */
+	private static void saveData(ByteBuffer buffer, ArrayList<double[]> data){
+		buffer.putInt(data.size());
+		for(double[] d : data){
+			buffer.putInt(d.length);
+			for(double dd : d) buffer.putDouble(dd);
+		}
+	}
+	
+	/**
+	 * Load fitness or mutability data from the given buffer, in the format written by saveData
+	 * @param buffer
+	 * @return
+	 */
+	private static ArrayList<double[]> loadData(ByteBuffer buffer){
+		ArrayList<double[]> data = new ArrayList<double[]>();
+		int size = buffer.getInt();
+		for(int i = 0; i < size; i++){
+			double[] d = new double[buffer.getInt()];
+			for(int j = 0; j < d.length; j++) d[j] = buffer.getDouble();
+			data.add(d);
+		}
+		return data;
+	}
+	
 }
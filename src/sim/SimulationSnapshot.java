@@ -0,0 +1,186 @@
+package sim;
+
+import java.awt.Graphics;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import data.Settings;
+
+/**
+ * The state of a simulation after one generation, which never changes, so it can be read by any thread while the simulation keeps evolving.
+ * Only the values shown about each runner are kept, with the brain of each runner, which is never changed once the runner is made, so nothing is copied.
+ * A runner that can be watched is only made when getRunner or getRunners is called.
+ * The fitness and mutability data only has the rows that existed when the snapshot was made
+ */
+public class SimulationSnapshot{
+	
+	/**
+	 * The generation the simulation was on
+	 */
+	private int currentGen;
+	
+	/**
+	 * The settings and track of the simulation, used to make runners
+	 */
+	private Settings settings;
+	private Track track;
+	
+	/**
+	 * The values of each runner of the simulation, sorted by fitness, with index 0 being the highest fitness
+	 */
+	private int[] runnerIDs;
+	private int[] parentIDs;
+	private int[] birthGens;
+	private double[] storedFitness;
+	/**
+	 * The brain of each runner, shared with the runners of the simulation, so they must never be changed or calculated with
+	 */
+	private NeuralNet[] brains;
+	/**
+	 * For each runner, true if the runner will die next generation
+	 */
+	private boolean[] toDie;
+	
+	private List<double[]> fitnessData;
+	private List<double[]> mutabilityData;
+	
+	/**
+	 * The history of the simulation, only the first historySize generations are part of this snapshot
+	 */
+	private RunnerHistory history;
+	private int historySize;
+	
+	/**
+	 * Make a snapshot of the given simulation as it is now. The simulation must not change while this is called
+	 * @param sim
+	 */
+	public SimulationSnapshot(Simulation sim){
+		currentGen = sim.getCurrentGen();
+		
+		settings = sim.getSettings();
+		track = sim.getTrack();
+		
+		Runner[] runners = sim.getRunners();
+		runnerIDs = new int[runners.length];
+		parentIDs = new int[runners.length];
+		birthGens = new int[runners.length];
+		storedFitness = new double[runners.length];
+		brains = new NeuralNet[runners.length];
+		toDie = new boolean[runners.length];
+		for(int i = 0; i < runners.length; i++){
+			Runner r = runners[i];
+			runnerIDs[i] = r.getRunnerID();
+			parentIDs[i] = r.getParentID();
+			birthGens[i] = r.getBirthGen();
+			storedFitness[i] = r.getStoredFitness();
+			brains[i] = r.getBrain();
+			toDie[i] = sim.isToDie(i);
+		}
+		
+		//the rows of the data are never changed once they are added, so only the lists need to be copied
+		fitnessData = Collections.unmodifiableList(new ArrayList<double[]>(sim.getFitnessData()));
+		mutabilityData = Collections.unmodifiableList(new ArrayList<double[]>(sim.getMutabilityData()));
+		
+		history = sim.getRunnerHistory();
+		historySize = history.size();
+	}
+	
+	public int getCurrentGen(){
+		return currentGen;
+	}
+	
+	public int getNumRunners(){
+		return runnerIDs.length;
+	}
+	
+	public int getRunnerID(int index){
+		return runnerIDs[index];
+	}
+	
+	public int getBirthGen(int index){
+		return birthGens[index];
+	}
+	
+	public double getStoredFitness(int index){
+		return storedFitness[index];
+	}
+	
+	public double getMutability(int index){
+		return brains[index].getMutability();
+	}
+	
+	/**
+	 * Draw the advanced info of the runner at the given index, see Runner.renderAdvancedInfo
+	 * @param index
+	 * @param g
+	 * @param x
+	 * @param y
+	 */
+	public void renderAdvancedInfo(int index, Graphics g, int x, int y){
+		Runner.renderAdvancedInfo(g, x, y, settings, runnerIDs[index], parentIDs[index], birthGens[index], storedFitness[index], getMutability(index));
+	}
+	
+	/**
+	 * Make a new runner with the values of the runner at the given index, and a copy of its brain, so it can be moved and tested without changing the simulation
+	 * @param index
+	 * @return
+	 */
+	public Runner getRunner(int index){
+		return new Runner(settings, track, runnerIDs[index], parentIDs[index], birthGens[index], storedFitness[index], brains[index].copy());
+	}
+	
+	/**
+	 * Make a new runner for every index, see getRunner
+	 * @return
+	 */
+	public Runner[] getRunners(){
+		Runner[] runners = new Runner[runnerIDs.length];
+		for(int i = 0; i < runners.length; i++) runners[i] = getRunner(i);
+		return runners;
+	}
+	
+	/**
+	 * Determine if the runner at the given index will die next generation, and be replaced by a new runner that will be tested
+	 * @param index
+	 * @return
+	 */
+	public boolean isToDie(int index){
+		return index >= 0 && index < toDie.length && toDie[index];
+	}
+	
+	/**
+	 * Get the fitness data of every generation up to this one, this list cannot be changed
+	 * @return
+	 */
+	public List<double[]> getFitnessData(){
+		return fitnessData;
+	}
+	
+	/**
+	 * Get the mutability data of every generation up to this one, this list cannot be changed
+	 * @return
+	 */
+	public List<double[]> getMutabilityData(){
+		return mutabilityData;
+	}
+	
+	/**
+	 * Get the number of generations in the history of this snapshot
+	 * @return
+	 */
+	public int getHistorySize(){
+		return historySize;
+	}
+	
+	/**
+	 * Get the worst, median, and best runners of the given generation from the history
+	 * @param gen
+	 * @return
+	 */
+	public Runner[] getHistory(int gen){
+		if(gen < 0 || gen >= historySize) throw new IndexOutOfBoundsException("Generation " + gen + " is not in the history of " + historySize + " generations");
+		return history.get(gen);
+	}
+	
+}
@@ -3,12 +3,18 @@ package sim;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
 import java.util.Scanner;
+import java.util.concurrent.atomic.LongAdder;
 
 import data.Settings;
 
@@ -21,14 +27,37 @@ public class Track{
 	 */
 	private Point2D.Double trackImagePos;
 	/**
-	 * The current image of the track without the runner
+	 * The tiles of the image of the track without the runner, null if the image has not been drawn since the track was created or loaded.
+	 * Used to draw the track, only the tiles that are on screen are ever drawn
+	 */
+	private TrackTiles tiles;
+	/**
+	 * True if the image of the track shows a generic runner at the starting point, see drawImageStartPoint
+	 */
+	private boolean drawStartPoint;
+	/**
+	 * The whole image of the track at full size, only made if getTrackImage is called, null otherwise
 	 */
 	private BufferedImage trackImage;
+	
+	/**
+	 * The distance past an area of the track image that a track line can be and still be drawn in the area, at least half the width of the line
+	 */
+	private static final int LINE_MARGIN = 8;
 	/**
 	 * A list of all the lines in this track. Each line represents a wall that the runner should avoid hitting
 	 */
 	private Line2D.Double[] trackLines;
 	private FitnessLine[] fitnessLines;
+	
+	/**
+	 * A grid holding the track lines, so that only the lines near a runner are checked, updated whenever the track lines change
+	 */
+	private WallGrid wallGrid;
+	/**
+	 * Finds what runners can see of the track lines, using wallGrid
+	 */
+	private VisionEngine vision;
 	/**
 	 * The position a runner should be placed when they enter the track
 	 */
@@ -39,14 +68,35 @@ public class Track{
 	 */
 	private double startingAngle;
 	
+	/**
+	 * Returned by getWallMoveDistance when a runner is not touching any wall
+	 */
+	public static final double NO_HIT = -1;
+	
+	/**
+	 * The extra distance added around the box of a runner before checking which lines it could touch, so rounding never causes a touching line to be skipped
+	 */
+	public static final double BOUNDS_MARGIN = 1e-6;
+	
+	/**
+	 * The number of exact tests of a runner touching a track line or fitness line that were skipped,
+	 * because the bounds of the line were too far from the runner. Added to by any number of threads at once
+	 */
+	private LongAdder skippedLineTests;
+	
 	public Track(Settings settings, Point2D.Double startingPoint, Line2D.Double... trackLines){
 		this.settings = settings;
 		
 		this.startingPoint = startingPoint;
 		this.trackLines = trackLines;
 		fitnessLines = new FitnessLine[0];
+		linesChanged();
 		
-		drawImage();
+		skippedLineTests = new LongAdder();
+		
+		//the image is only drawn once something needs it, so simulations without a window never draw it
+		tiles = null;
+		trackImage = null;
 	}
 	
 	/**
@@ -85,6 +135,32 @@ public class Track{
 	
 	public void setFitnessLines(FitnessLine... lines){
 		fitnessLines = lines;
+		linesChanged();
+	}
+	
+	/**
+	 * Must be called after any track line or fitness line is added, removed, or moved, so everything calculated from the lines is kept up to date
+	 */
+	public void linesChanged(){
+		wallGrid = new WallGrid(trackLines);
+		if(vision == null) vision = new VisionEngine(wallGrid);
+		else vision.setGrid(wallGrid);
+	}
+	
+	/**
+	 * Get the grid holding the track lines
+	 * @return
+	 */
+	public WallGrid getWallGrid(){
+		return wallGrid;
+	}
+	
+	/**
+	 * Get the engine that finds what runners can see of the track lines
+	 * @return
+	 */
+	public VisionEngine getVision(){
+		return vision;
 	}
 	
 	/**
@@ -92,23 +168,12 @@ public class Track{
 	 */
 	public void drawImageStartPoint(){
 		drawImage();
-
-		Graphics2D g = (Graphics2D)trackImage.getGraphics();
-
-		g.setColor(Color.BLACK);
-		g.fillOval((int)Math.round(startingPoint.x + getXOffset() - settings.getRunnerRadius()),
-				   (int)Math.round(startingPoint.y + getYOffset()- settings.getRunnerRadius()),
-				   (int)Math.round(settings.getRunnerRadius() * 2), (int)Math.round(settings.getRunnerRadius() * 2));
-		g.setColor(new Color(100, 100, 255));
-		g.fillOval((int)Math.round(startingPoint.x + getXOffset() + 2 - settings.getRunnerRadius()),
-				   (int)Math.round(startingPoint.y + getYOffset() + 2 - settings.getRunnerRadius()),
-				   (int)Math.round(settings.getRunnerRadius() * 2 - 4), (int)Math.round(settings.getRunnerRadius() * 2 - 4));
+		drawStartPoint = true;
 	}
 	
 	/**
-	 * Draws the given runner to the track image
-	 * @param r
-	 * @return
+	 * Find the size of the image of the track from the current lines, and forget anything drawn of the old image, so it is drawn again from the current lines.
+	 * The image itself is only drawn in tiles as they are needed
 	 */
 	public void drawImage(){
 		double lowX;
@@ -167,69 +232,148 @@ public class Track{
 		
 		trackImagePos = new Point2D.Double(lowX, lowY);
 		
-		//create image object
-		trackImage = new BufferedImage((int)Math.round(w), (int)Math.round(h), BufferedImage.TYPE_4BYTE_ABGR);
+		imageChanged();
+		tiles = new TrackTiles(settings, this, (int)Math.round(w), (int)Math.round(h));
+		drawStartPoint = false;
+	}
+	
+	/**
+	 * Forget everything drawn of the image of the track, the tiles and the whole image
+	 */
+	private void imageChanged(){
+		if(tiles != null) tiles.clear();
+		tiles = null;
+		trackImage = null;
+	}
+	
+	/**
+	 * Draw the part of the image of the track inside the given area to the given graphics object, at full size.
+	 * The area and the graphics object use the coordinates of the image, where 0, 0 is the upper left corner of the image
+	 * @param g
+	 * @param area
+	 */
+	void drawImageArea(Graphics2D g, Rectangle area){
+		int tileSize = settings.getTrackTileSize();
 		
-		Graphics2D g = (Graphics2D)trackImage.getGraphics();
-
-		//draw the tiled background
-		for(int i = 0; i < 1 + w / settings.getTrackTileSize(); i++){
-			for(int j = 0; j < 1 + h / settings.getTrackTileSize(); j++){
-				if(i % 2 == 0 && j % 2 == 0 || i % 2 == 1 && j % 2 == 1) g.setColor(new Color(150, 150, 150));
-				else g.setColor(new Color(200, 200, 200));
-				g.fillRect(settings.getTrackTileSize() * i, settings.getTrackTileSize() * j, settings.getTrackTileSize(), settings.getTrackTileSize());
+		//draw the tiled background, only the squares inside the area
+		Color dark = new Color(150, 150, 150);
+		Color light = new Color(200, 200, 200);
+		int lastI = (area.x + area.width) / tileSize;
+		int lastJ = (area.y + area.height) / tileSize;
+		for(int i = Math.max(0, area.x / tileSize); i <= lastI; i++){
+			for(int j = Math.max(0, area.y / tileSize); j <= lastJ; j++){
+				if(i % 2 == 0 && j % 2 == 0 || i % 2 == 1 && j % 2 == 1) g.setColor(dark);
+				else g.setColor(light);
+				g.fillRect(tileSize * i, tileSize * j, tileSize, tileSize);
 			}
 		}
 		
-		//draw the lines of the track
+		//draw the lines of the track, skipping lines too far from the area to be in it
 		g.setStroke(new BasicStroke(8f));
 		g.setColor(Color.BLACK);
-		for(Line2D.Double l : trackLines) g.drawLine((int)Math.round(l.x1 + getXOffset()), (int)Math.round(l.y1 + getYOffset()),
-													 (int)Math.round(l.x2 + getXOffset()), (int)Math.round(l.y2 + getYOffset()));
+		Rectangle lineArea = new Rectangle(area.x - LINE_MARGIN, area.y - LINE_MARGIN, area.width + LINE_MARGIN * 2, area.height + LINE_MARGIN * 2);
+		for(Line2D.Double l : trackLines){
+			int x1 = (int)Math.round(l.x1 + getXOffset());
+			int y1 = (int)Math.round(l.y1 + getYOffset());
+			int x2 = (int)Math.round(l.x2 + getXOffset());
+			int y2 = (int)Math.round(l.y2 + getYOffset());
+			if(lineArea.intersectsLine(x1, y1, x2, y2)) g.drawLine(x1, y1, x2, y2);
+		}
 		//draw the goal lines
 		for(FitnessLine f : fitnessLines) f.render(g, getXOffset(), getYOffset());
+		
+		if(drawStartPoint){
+			g.setColor(Color.BLACK);
+			g.fillOval((int)Math.round(startingPoint.x + getXOffset() - settings.getRunnerRadius()),
+					   (int)Math.round(startingPoint.y + getYOffset()- settings.getRunnerRadius()),
+					   (int)Math.round(settings.getRunnerRadius() * 2), (int)Math.round(settings.getRunnerRadius() * 2));
+			g.setColor(new Color(100, 100, 255));
+			g.fillOval((int)Math.round(startingPoint.x + getXOffset() + 2 - settings.getRunnerRadius()),
+					   (int)Math.round(startingPoint.y + getYOffset() + 2 - settings.getRunnerRadius()),
+					   (int)Math.round(settings.getRunnerRadius() * 2 - 4), (int)Math.round(settings.getRunnerRadius() * 2 - 4));
+		}
 	}
 	
+	/**
+	 * Get the whole image of the track at full size. This makes an image of the entire track, which can be very large, use render to draw the track
+	 * @return
+	 */
 	public BufferedImage getTrackImage(){
+		drawImageIfNeeded();
+		if(trackImage == null){
+			trackImage = new BufferedImage(tiles.getWidth(), tiles.getHeight(), BufferedImage.TYPE_4BYTE_ABGR);
+			Graphics2D g = (Graphics2D)trackImage.getGraphics();
+			drawImageArea(g, new Rectangle(0, 0, tiles.getWidth(), tiles.getHeight()));
+			g.dispose();
+		}
 		return trackImage;
 	}
-
+	
 	/**
-	 * Get the buffered image that contains the given runner. Must call drawImage before calling this method
-	 * @param r
+	 * Get the width of the image of the track at full size
 	 * @return
 	 */
-	public BufferedImage getTrackImageWithRunner(Runner r){
-		if(r == null) return trackImage;
-		
-		BufferedImage img = new BufferedImage(trackImage.getWidth(), trackImage.getHeight(), BufferedImage.TYPE_4BYTE_ABGR);
-		
-		Graphics2D g = (Graphics2D)img.getGraphics();
-		g.drawImage(trackImage, 0, 0, null);
-		
-		//draw the runner
-		 r.render(g, new Point2D.Double(getXOffset(), getYOffset()), true);
-		
-		return img;
+	public int getImageWidth(){
+		drawImageIfNeeded();
+		return tiles.getWidth();
 	}
-
+	
 	/**
-	 * Get the buffered image that contains the given runners
-	 * @param r
+	 * Get the height of the image of the track at full size
 	 * @return
 	 */
-	public BufferedImage getTrackImageWithRunners(Runner[] run){
-		if(run == null) return trackImage;
-		
-		BufferedImage img = new BufferedImage(trackImage.getWidth(), trackImage.getHeight(), BufferedImage.TYPE_4BYTE_ABGR);
-		
-		Graphics2D g = (Graphics2D)img.getGraphics();
-		g.drawImage(trackImage, 0, 0, null);
-		
-		//draw the runners
-		for(Runner r : run) r.render(g, new Point2D.Double(getXOffset(), getYOffset()), false);
+	public int getImageHeight(){
+		drawImageIfNeeded();
+		return tiles.getHeight();
+	}
+	
+	/**
+	 * Draws the track image if it has not been drawn since this track was created or loaded
+	 */
+	private void drawImageIfNeeded(){
+		if(tiles == null) drawImage();
+	}
+
+	/**
+	 * Draw the track and the given runners to the given graphics object, with the upper left corner of the track image at x, y, scaled by scale.
+	 * Only the tiles of the track image that are on screen are drawn, from the level that matches the scale, and the runners are drawn straight to the graphics object
+	 * @param g
+	 * @param run the runners to draw, can be null
+	 * @param drawLines true to draw the vision lines of the runners
+	 * @param x
+	 * @param y
+	 * @param scale
+	 */
+	public void render(Graphics2D g, Runner[] run, boolean drawLines, double x, double y, double scale){
+		drawImageIfNeeded();
+		int drawX = (int)Math.round(x);
+		int drawY = (int)Math.round(y);
+		tiles.render(g, drawX, drawY, scale);
+		if(run == null) return;
 		
-		return img;
+		//keep the runners inside the track image
+		Shape clip = g.getClip();
+		Stroke stroke = g.getStroke();
+		AffineTransform transform = g.getTransform();
+		g.clipRect(drawX, drawY, (int)Math.round(tiles.getWidth() * scale), (int)Math.round(tiles.getHeight() * scale));
+		g.translate(drawX, drawY);
+		g.scale(scale, scale);
+		drawRunners(g, run, drawLines, new Point2D.Double(getXOffset(), getYOffset()));
+		g.setTransform(transform);
+		g.setClip(clip);
+		g.setStroke(stroke);
+	}
+	
+	/**
+	 * Draw the given runners in one pass, with the same sprites and camera position for every runner
+	 * @param g
+	 * @param run
+	 * @param drawLines
+	 * @param cameraPos
+	 */
+	private void drawRunners(Graphics2D g, Runner[] run, boolean drawLines, Point2D.Double cameraPos){
+		RunnerSprites sprites = RunnerSprites.get(settings);
+		for(Runner r : run) r.render(g, cameraPos, drawLines, sprites);
 	}
 	
 	
@@ -238,6 +382,7 @@ public class Track{
 	 * @return
 	 */
 	public double getXOffset(){
+		drawImageIfNeeded();
 		return settings.getTrackTileSize() - trackImagePos.x;
 	}
 	
@@ -246,6 +391,7 @@ public class Track{
 	 * @return
 	 */
 	public double getYOffset(){
+		drawImageIfNeeded();
 		return settings.getTrackTileSize() - trackImagePos.y;
 	}
 	
@@ -290,6 +436,7 @@ public class Track{
 		for(int i = 0; i < trackLines.length; i++) lines[i] = trackLines[i];
 		lines[lines.length - 1] = l;
 		trackLines = lines;
+		linesChanged();
 	}
 	
 	/**
@@ -301,6 +448,7 @@ public class Track{
 		for(int i = 0; i < fitnessLines.length; i++) lines[i] = fitnessLines[i];
 		lines[lines.length - 1] = new FitnessLine(l.x1, l.y1, l.x2, l.y2, pos);
 		fitnessLines = lines;
+		linesChanged();
 	}
 	
 	/**
@@ -310,163 +458,11 @@ public class Track{
 	 * @param r
 	 */
 	public void collideWithRunner(Runner r){
-		//keeps track of the distance between the runner and a wall
-		double moveDistance = 0;
-		
-		boolean hitWall = false;
-		for(Line2D.Double line : trackLines){
-			//check to see if the runner touches the wall if they havn't already hit a wall
-			if(!hitWall){
-				double tanX1 = 0;
-				double tanY1 = 0;
-				double tanX2 = 0;
-				double tanY2 = 0;
-
-				//find slope and intercept of the wall line
-				double lineSlope = (line.y1 - line.y2) / (line.x1 - line.x2);
-				double lineB = line.y1 - lineSlope * line.x1;
-				
-				boolean wallVert = line.x1 == line.x2;
-				boolean wallHor = line.y1 == line.y2;
-				
-				//if the line is vertical
-				if(wallVert){
-					double miny = Math.min(line.y1, line.y2);
-					double maxy = Math.max(line.y1, line.y2);
-					moveDistance = Math.abs(r.getX() - line.x1);
-					hitWall = hitWall || r.getY() >= miny && r.getY() <= maxy && moveDistance < settings.getRunnerRadius();
-					if(hitWall){
-						tanX1 = r.getX() + settings.getRunnerRadius();
-						tanY1 = r.getY();
-						tanX2 = r.getX() - settings.getRunnerRadius();
-						tanY2 = r.getY();
-					}
-				}
-				//if the line is horizontal
-				else if(wallHor){
-					double minx = Math.min(line.x1, line.x2);
-					double maxx = Math.max(line.x1, line.x2);
-					moveDistance = Math.abs(r.getY() - line.y1);
-					hitWall = hitWall || r.getX() >= minx && r.getX() <= maxx && moveDistance < settings.getRunnerRadius();
-					if(hitWall){
-						tanX1 = r.getX();
-						tanY1 = r.getY() + settings.getRunnerRadius();
-						tanX2 = r.getX();
-						tanY2 = r.getY() - settings.getRunnerRadius();
-					}
-				}
-				//otherwise use this to test the distance to a horizontal line
-				else{
-					//find the slope and intercept of a line perpendicular to the wall line that intersects the center of the runner
-					double perpSlope = -1 / lineSlope;
-					double perpB = r.getY() - perpSlope * r.getX();
-					
-					//find the intersection point of those 2 lines
-					double intersectX = (lineB - perpB) / (perpSlope - lineSlope);
-					double intersectY = lineSlope * intersectX + lineB;
-					Point2D.Double intersect = new Point2D.Double(intersectX, intersectY);
-					
-					//find the distance that the runner is from the wall
-					double wallDist = r.getPos().distance(intersect);
-					
-					//find the length of the main line, used for determining if the intersection point of the wall line is actually on the line segment
-					double length = new Point2D.Double(line.x1, line.y1).distance(line.x2, line.y2);
-					
-					//if the runner is touching a line, then set hitWall to true,
-					//comparing the intersection distance to the line points is to ensure that the intersection point is on the line segment
-					hitWall = hitWall ||
-							  intersect.distance(line.x1, line.y1) < length &&
-							  intersect.distance(line.x2, line.y2) < length &&
-							  wallDist < settings.getRunnerRadius();
-					if(hitWall){
-						//find point that should end up tangent to the wall
-						//find the perpendicular line to the wall
-						
-						//find where that perpendicular line intersects the edge of the runner
-
-						//this math was used to figure out the tanRoot variable
-						//basically found the 2 intersection points of the circle of the runner and the perpendicular line to the wall line
-						//I can guarantee that the line circle intersects the wall as I have already tested for that
-						//the math for tanRoot, tanX1, and tanX2 comes from the result from WolframAlpha at this url:
-						//https://www.wolframalpha.com/input/?i=solve+for+x:+(x-h)%5E2+%2B+(mx%2Bb-k)%5E2%3Dr%5E2
-						//I tried to solve for x myself, but I got stuck and couldn't be bothered to try to figure it out myself, so I just let WolframAlpha do it for me
-						double tanRoot = Math.sqrt(
-								-Math.pow(perpB, 2) -
-								2 * perpB * r.getX() * perpSlope +
-								2 * perpB * r.getY() - 
-								Math.pow(r.getX(), 2) * Math.pow(perpSlope, 2) +
-								2 * r.getX() * r.getY() * perpSlope -
-								Math.pow(r.getY(), 2) + 
-								Math.pow(perpSlope, 2) * Math.pow(settings.getRunnerRadius(), 2) + 
-								Math.pow(settings.getRunnerRadius(), 2));
-						tanX1 = (tanRoot - perpSlope * perpB + r.getX() + r.getY() * perpSlope) / (Math.pow(perpSlope, 2) + 1);
-						tanY1 = perpSlope * tanX1 + perpB;
-						tanX2 = (-tanRoot - perpSlope * perpB + r.getX() + r.getY() * perpSlope) / (Math.pow(perpSlope, 2) + 1);
-						tanY2 = perpSlope * tanX2 + perpB;
-					}
-				}
-				if(hitWall){
-					
-					/*
-					 * determine which of those 2 points is the one that you need to find the distance to.
-					 * Of the 2 calculated points, the one closer to any distance moved in the same direction as the way the runner is facing will be the correct point
-					 */
-					Point2D.Double run = new Point2D.Double(
-							r.getX() + Math.cos(Math.toRadians(r.getCurrentAngle())) * r.getSpeed(),
-							r.getY() + Math.sin(Math.toRadians(r.getCurrentAngle())) * r.getSpeed());
-					boolean useTan1 = run.distance(tanX1, tanY1) < run.distance(tanX2, tanY2);
-					Point2D.Double usePoint;
-					if(useTan1) usePoint = new Point2D.Double(tanX1, tanY1);
-					else usePoint = new Point2D.Double(tanX2, tanY2);
-					
-//					System.out.println(tanX1 + " " + tanY1 + " " + tanX2 + " " + tanY2 + " " + usePoint.x);
-					
-					//find the distance from the tangent point to: the line that intersects the wall line and is parallel to the line at the angle the runner is facing
-					//that is the distance the runner has to move
-
-					//if the slope of the runner's direction angle is vertical
-					if(r.getCurrentAngle() % 180 == 90){
-						//if the wall line is vertical, should not happen because of the way the paralell lines would act
-						if(wallVert) moveDistance = 0;
-						//if the wall is horizontal
-						else if(wallHor) moveDistance = Math.abs(usePoint.y - line.y1);
-						//otherwise do the general case
-						else moveDistance = Math.abs(usePoint.y - (lineSlope * usePoint.x + lineB));
-					}
-					//if the slope of the runner's direction angle is horizontal
-					else if(r.getCurrentAngle() % 180 == 0){
-						//if the wall line is vertical
-						if(wallVert) moveDistance = Math.abs(usePoint.x - line.x1);
-						//if the wall is horizontal, should not happen because of the way the paralell lines would act
-						else if(wallHor) moveDistance = 0;
-						//otherwise do the general case
-						else moveDistance = Math.abs(usePoint.y - (lineSlope * usePoint.x + lineB));
-					}
-					//otherwise do the general case
-					else{
-						double parallelSlope = Math.sin(Math.toRadians(r.getCurrentAngle())) / Math.cos(Math.toRadians(r.getCurrentAngle()));
-						double parallelB = usePoint.y - usePoint.x * parallelSlope;
-						
-						//if the wall line is vertical
-						if(wallVert) moveDistance = usePoint.distance(line.x1, parallelSlope * line.x1 + parallelB);
-						//if the wall is horizontal
-						else if(wallHor) moveDistance = usePoint.distance((line.y1 - parallelB) / parallelSlope, line.y1);
-						//otherwise do the general case
-						else{
-							double parIntX = (parallelB - lineB) / (lineSlope - parallelSlope);
-							double parIntY = parIntX * parallelSlope + parallelB;
-							moveDistance = usePoint.distance(parIntX, parIntY);
-						}
-					}
-				}
-			}
-			
-			//if a line was hit, then quit looping
-			if(hitWall) break;
-		}
+		double moveDistance = getWallMoveDistance(r.getX(), r.getY(), r.getCurrentAngle(), r.getSpeed());
+		boolean hitWall = moveDistance != NO_HIT;
 		
 		//test for hitting fitness lines
-		for(FitnessLine l : fitnessLines) r.addFitness(settings.getRunnerFitnessGain() * l.crossedLine(r.getLastX(), r.getLastY(), r.getX(), r.getY(), settings.getRunnerRadius(), settings.getFitnessLinesGive()));
+		r.setFitness(addLineFitness(r.getFitness(), r.getLastX(), r.getLastY(), r.getX(), r.getY()));
 		
 		if(settings.getKillRunner()){
 			//if a line was hit, kill the runner
@@ -487,6 +483,262 @@ public class Track{
 		}
 	}
 	
+	/**
+	 * Find the first wall that a runner at the given position touches, and the distance the runner has to move back along its angle to no longer touch it
+	 * @param x the x of the center of the runner
+	 * @param y the y of the center of the runner
+	 * @param angle the angle the runner is facing, in degrees
+	 * @param speed the speed of the runner
+	 * @return the distance to move, or NO_HIT if the runner is not touching a wall
+	 */
+	public double getWallMoveDistance(double x, double y, double angle, double speed){
+		WallGrid grid = wallGrid;
+		Line2D.Double[] lines = grid.getLines();
+		double radius = settings.getRunnerRadius();
+		if(grid.getNumLines() == 0 || !grid.overlaps(x, y, radius)) return NO_HIT;
+		
+		//only the lines in the cells the runner overlaps can be touching the runner
+		int[] cellWalls = grid.getCellWalls();
+		int startX = grid.getColumn(x - radius);
+		int endX = grid.getColumn(x + radius);
+		int startY = grid.getRow(y - radius);
+		int endY = grid.getRow(y + radius);
+		
+		//a line can only touch the runner if its bounds overlap the box around the runner
+		double minX = x - radius - BOUNDS_MARGIN;
+		double minY = y - radius - BOUNDS_MARGIN;
+		double maxX = x + radius + BOUNDS_MARGIN;
+		double maxY = y + radius + BOUNDS_MARGIN;
+		int skipped = 0;
+		
+		//the first line in the track that the runner touches is the one used, so find the touched line with the lowest index
+		int hitIndex = lines.length;
+		double moveDistance = NO_HIT;
+		for(int cy = startY; cy <= endY; cy++){
+			for(int cx = startX; cx <= endX; cx++){
+				int end = grid.getCellEnd(cx, cy);
+				for(int c = grid.getCellStart(cx, cy); c < end; c++){
+					int index = cellWalls[c];
+					//the lines of each cell are in order, so no line after this one can be used
+					if(index >= hitIndex) break;
+					if(!grid.boundsOverlap(index, minX, minY, maxX, maxY)){
+						skipped++;
+						continue;
+					}
+					double d = getWallMoveDistance(lines[index], x, y, angle, speed);
+					if(d != NO_HIT){
+						hitIndex = index;
+						moveDistance = d;
+						break;
+					}
+				}
+			}
+		}
+		
+		if(skipped > 0) skippedLineTests.add(skipped);
+		return moveDistance;
+	}
+	
+	/**
+	 * Determine if a runner at the given position touches the given wall, and if it does, the distance the runner has to move back along its angle to no longer touch it
+	 * @param line the wall
+	 * @param x the x of the center of the runner
+	 * @param y the y of the center of the runner
+	 * @param angle the angle the runner is facing, in degrees
+	 * @param speed the speed of the runner
+	 * @return the distance to move, or NO_HIT if the runner is not touching the wall
+	 */
+	private double getWallMoveDistance(Line2D.Double line, double x, double y, double angle, double speed){
+		//keeps track of the distance between the runner and a wall
+		double moveDistance = 0;
+		
+		boolean hitWall = false;
+		double tanX1 = 0;
+		double tanY1 = 0;
+		double tanX2 = 0;
+		double tanY2 = 0;
+
+		//find slope and intercept of the wall line
+		double lineSlope = (line.y1 - line.y2) / (line.x1 - line.x2);
+		double lineB = line.y1 - lineSlope * line.x1;
+		
+		boolean wallVert = line.x1 == line.x2;
+		boolean wallHor = line.y1 == line.y2;
+		
+		//if the line is vertical
+		if(wallVert){
+			double miny = Math.min(line.y1, line.y2);
+			double maxy = Math.max(line.y1, line.y2);
+			moveDistance = Math.abs(x - line.x1);
+			hitWall = y >= miny && y <= maxy && moveDistance < settings.getRunnerRadius();
+			if(hitWall){
+				tanX1 = x + settings.getRunnerRadius();
+				tanY1 = y;
+				tanX2 = x - settings.getRunnerRadius();
+				tanY2 = y;
+			}
+		}
+		//if the line is horizontal
+		else if(wallHor){
+			double minx = Math.min(line.x1, line.x2);
+			double maxx = Math.max(line.x1, line.x2);
+			moveDistance = Math.abs(y - line.y1);
+			hitWall = x >= minx && x <= maxx && moveDistance < settings.getRunnerRadius();
+			if(hitWall){
+				tanX1 = x;
+				tanY1 = y + settings.getRunnerRadius();
+				tanX2 = x;
+				tanY2 = y - settings.getRunnerRadius();
+			}
+		}
+		//otherwise use this to test the distance to a horizontal line
+		else{
+			//find the slope and intercept of a line perpendicular to the wall line that intersects the center of the runner
+			double perpSlope = -1 / lineSlope;
+			double perpB = y - perpSlope * x;
+			
+			//find the intersection point of those 2 lines
+			double intersectX = (lineB - perpB) / (perpSlope - lineSlope);
+			double intersectY = lineSlope * intersectX + lineB;
+			Point2D.Double intersect = new Point2D.Double(intersectX, intersectY);
+			
+			//find the distance that the runner is from the wall
+			double wallDist = new Point2D.Double(x, y).distance(intersect);
+			
+			//find the length of the main line, used for determining if the intersection point of the wall line is actually on the line segment
+			double length = new Point2D.Double(line.x1, line.y1).distance(line.x2, line.y2);
+			
+			//if the runner is touching a line, then set hitWall to true,
+			//comparing the intersection distance to the line points is to ensure that the intersection point is on the line segment
+			hitWall = intersect.distance(line.x1, line.y1) < length &&
+					  intersect.distance(line.x2, line.y2) < length &&
+					  wallDist < settings.getRunnerRadius();
+			if(hitWall){
+				//find point that should end up tangent to the wall
+				//find the perpendicular line to the wall
+				
+				//find where that perpendicular line intersects the edge of the runner
+
+				//this math was used to figure out the tanRoot variable
+				//basically found the 2 intersection points of the circle of the runner and the perpendicular line to the wall line
+				//I can guarantee that the line circle intersects the wall as I have already tested for that
+				//the math for tanRoot, tanX1, and tanX2 comes from the result from WolframAlpha at this url:
+				//https://www.wolframalpha.com/input/?i=solve+for+x:+(x-h)%5E2+%2B+(mx%2Bb-k)%5E2%3Dr%5E2
+				//I tried to solve for x myself, but I got stuck and couldn't be bothered to try to figure it out myself, so I just let WolframAlpha do it for me
+				double tanRoot = Math.sqrt(
+						-Math.pow(perpB, 2) -
+						2 * perpB * x * perpSlope +
+						2 * perpB * y - 
+						Math.pow(x, 2) * Math.pow(perpSlope, 2) +
+						2 * x * y * perpSlope -
+						Math.pow(y, 2) + 
+						Math.pow(perpSlope, 2) * Math.pow(settings.getRunnerRadius(), 2) + 
+						Math.pow(settings.getRunnerRadius(), 2));
+				tanX1 = (tanRoot - perpSlope * perpB + x + y * perpSlope) / (Math.pow(perpSlope, 2) + 1);
+				tanY1 = perpSlope * tanX1 + perpB;
+				tanX2 = (-tanRoot - perpSlope * perpB + x + y * perpSlope) / (Math.pow(perpSlope, 2) + 1);
+				tanY2 = perpSlope * tanX2 + perpB;
+			}
+		}
+		if(hitWall){
+			
+			/*
+			 * determine which of those 2 points is the one that you need to find the distance to.
+			 * Of the 2 calculated points, the one closer to any distance moved in the same direction as the way the runner is facing will be the correct point
+			 */
+			Point2D.Double run = new Point2D.Double(
+					x + Math.cos(Math.toRadians(angle)) * speed,
+					y + Math.sin(Math.toRadians(angle)) * speed);
+			boolean useTan1 = run.distance(tanX1, tanY1) < run.distance(tanX2, tanY2);
+			Point2D.Double usePoint;
+			if(useTan1) usePoint = new Point2D.Double(tanX1, tanY1);
+			else usePoint = new Point2D.Double(tanX2, tanY2);
+			
+//					System.out.println(tanX1 + " " + tanY1 + " " + tanX2 + " " + tanY2 + " " + usePoint.x);
+			
+			//find the distance from the tangent point to: the line that intersects the wall line and is parallel to the line at the angle the runner is facing
+			//that is the distance the runner has to move
+
+			//if the slope of the runner's direction angle is vertical
+			if(angle % 180 == 90){
+				//if the wall line is vertical, should not happen because of the way the paralell lines would act
+				if(wallVert) moveDistance = 0;
+				//if the wall is horizontal
+				else if(wallHor) moveDistance = Math.abs(usePoint.y - line.y1);
+				//otherwise do the general case
+				else moveDistance = Math.abs(usePoint.y - (lineSlope * usePoint.x + lineB));
+			}
+			//if the slope of the runner's direction angle is horizontal
+			else if(angle % 180 == 0){
+				//if the wall line is vertical
+				if(wallVert) moveDistance = Math.abs(usePoint.x - line.x1);
+				//if the wall is horizontal, should not happen because of the way the paralell lines would act
+				else if(wallHor) moveDistance = 0;
+				//otherwise do the general case
+				else moveDistance = Math.abs(usePoint.y - (lineSlope * usePoint.x + lineB));
+			}
+			//otherwise do the general case
+			else{
+				double parallelSlope = Math.sin(Math.toRadians(angle)) / Math.cos(Math.toRadians(angle));
+				double parallelB = usePoint.y - usePoint.x * parallelSlope;
+				
+				//if the wall line is vertical
+				if(wallVert) moveDistance = usePoint.distance(line.x1, parallelSlope * line.x1 + parallelB);
+				//if the wall is horizontal
+				else if(wallHor) moveDistance = usePoint.distance((line.y1 - parallelB) / parallelSlope, line.y1);
+				//otherwise do the general case
+				else{
+					double parIntX = (parallelB - lineB) / (lineSlope - parallelSlope);
+					double parIntY = parIntX * parallelSlope + parallelB;
+					moveDistance = usePoint.distance(parIntX, parIntY);
+				}
+			}
+		}
+		
+		if(hitWall) return moveDistance;
+		return NO_HIT;
+	}
+	
+	/**
+	 * Add the fitness gained or lost from crossing the fitness lines of this track when moving from the last position to the new position
+	 * @param fitness the fitness before the move
+	 * @param lastX
+	 * @param lastY
+	 * @param x
+	 * @param y
+	 * @return the fitness after crossing the lines, added one line at a time
+	 */
+	public double addLineFitness(double fitness, double lastX, double lastY, double x, double y){
+		double radius = settings.getRunnerRadius();
+		
+		//the box around the runner at both positions, a line that does not overlap it cannot be touched by the runner at either position, so it cannot be crossed
+		double minX = Math.min(lastX, x) - radius - BOUNDS_MARGIN;
+		double minY = Math.min(lastY, y) - radius - BOUNDS_MARGIN;
+		double maxX = Math.max(lastX, x) + radius + BOUNDS_MARGIN;
+		double maxY = Math.max(lastY, y) + radius + BOUNDS_MARGIN;
+		int skipped = 0;
+		
+		for(FitnessLine l : fitnessLines){
+			if(!l.boundsOverlap(minX, minY, maxX, maxY)){
+				skipped++;
+				continue;
+			}
+			fitness += settings.getRunnerFitnessGain() * l.crossedLine(lastX, lastY, x, y, radius, settings.getFitnessLinesGive());
+		}
+		
+		if(skipped > 0) skippedLineTests.add(skipped);
+		return fitness;
+	}
+	
+	/**
+	 * Get the number of exact tests of a runner touching a track line or fitness line that were skipped since the count was last reset,
+	 * because the bounds of the line were too far from the runner, then reset the count to 0
+	 * @return
+	 */
+	public long takeSkippedLineTests(){
+		return skippedLineTests.sumThenReset();
+	}
+	
 	/**
 	 * Save this track to the given PrintWriter
 	 * @param write
@@ -524,9 +776,65 @@ public class Track{
 		//load fitness lines
 		fitnessLines = new FitnessLine[scan.nextInt()];
 		for(int i = 0; i < fitnessLines.length; i++) fitnessLines[i] = new FitnessLine(scan.nextDouble(), scan.nextDouble(), scan.nextDouble(), scan.nextDouble(), scan.nextInt() == 1);
+		linesChanged();
 		
-		//calculate things
-		drawImage();
+		//the image is redrawn the next time it is needed
+		imageChanged();
+	}
+	
+	/**
+	 * Get the number of bytes save(ByteBuffer) writes for this track
+	 * @return
+	 */
+	public int getSaveSize(){
+		return 8 * 3 + 4 + trackLines.length * 8 * 4 + 4 + fitnessLines.length * (8 * 4 + 1);
+	}
+	
+	/**
+	 * Save the data for this track to the given buffer, the same data as save(PrintWriter):
+	 * the starting point and angle, the points of each track line, then the points and direction of each fitness line
+	 * @param buffer
+	 */
+	public void save(ByteBuffer buffer){
+		buffer.putDouble(startingPoint.x);
+		buffer.putDouble(startingPoint.y);
+		buffer.putDouble(startingAngle);
+		
+		buffer.putInt(trackLines.length);
+		for(Line2D.Double l : trackLines){
+			buffer.putDouble(l.x1);
+			buffer.putDouble(l.y1);
+			buffer.putDouble(l.x2);
+			buffer.putDouble(l.y2);
+		}
+		
+		buffer.putInt(fitnessLines.length);
+		for(FitnessLine l : fitnessLines){
+			buffer.putDouble(l.x1);
+			buffer.putDouble(l.y1);
+			buffer.putDouble(l.x2);
+			buffer.putDouble(l.y2);
+			buffer.put((byte)Settings.boolToInt(l.isPositive()));
+		}
+	}
+	
+	/**
+	 * Load in the data for this track from the given buffer, in the format written by save(ByteBuffer)
+	 * @param buffer
+	 */
+	public void load(ByteBuffer buffer){
+		startingPoint = new Point2D.Double(buffer.getDouble(), buffer.getDouble());
+		startingAngle = buffer.getDouble();
+		
+		trackLines = new Line2D.Double[buffer.getInt()];
+		for(int i = 0; i < trackLines.length; i++) trackLines[i] = new Line2D.Double(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+		
+		fitnessLines = new FitnessLine[buffer.getInt()];
+		for(int i = 0; i < fitnessLines.length; i++) fitnessLines[i] = new FitnessLine(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.get() == 1);
+		linesChanged();
+		
+		//the image is redrawn the next time it is needed
+		imageChanged();
 	}
 	
 	/**
@@ -596,6 +904,7 @@ public class Track{
 			}
 		}
 		trackLines = lines;
+		linesChanged();
 	}
 
 	/**
@@ -612,6 +921,7 @@ public class Track{
 			}
 		}
 		fitnessLines = lines;
+		linesChanged();
 	}
 	
 	/**
@@ -654,6 +964,14 @@ public class Track{
 		return fitnessLines[index];
 	}
 	
+	/**
+	 * Get the array of lines that give and take fitness
+	 * @return
+	 */
+	public FitnessLine[] getFitnessLines(){
+		return fitnessLines;
+	}
+	
 	/**
 	 * Add the given x and y to the values of the line at the given index and type
 	 * @param x the amount to add on the x axis of both points of the line
@@ -675,6 +993,7 @@ public class Track{
 			fitnessLines[index].y2 += y;
 			fitnessLines[index].calculateInfo();
 		}
+		linesChanged();
 	}
 	
 	/**
@@ -852,6 +1171,7 @@ public class Track{
 			}
 			fitnessLines[index].calculateInfo();
 		}
+		linesChanged();
 	}
 	
 }
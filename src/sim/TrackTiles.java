@@ -0,0 +1,226 @@
+package sim;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import data.Settings;
+
+/**
+ * The image of a track, split into square image tiles of TILE_SIZE pixels, at several levels of zoom.
+ * Level 0 is the track at full size, and each level after is half the size of the level before, so zooming out draws from a smaller level
+ * instead of shrinking the whole image every frame. A tile is only drawn the first time it is needed, and only the tiles that are on screen are drawn.
+ * Drawn tiles are kept in one cache shared by every track, holding at most the TrackTileCacheSize setting of memory, forgetting the least recently used tiles first.
+ * A TrackTiles is made each time the image of a track changes, see Track.drawImage. Only used by the thread drawing the window
+ */
+public class TrackTiles{
+	
+	/**
+	 * The width and height of each image tile, in pixels
+	 */
+	public static final int TILE_SIZE = 256;
+	/**
+	 * The number of bytes used by one image tile
+	 */
+	public static final long TILE_BYTES = (long)TILE_SIZE * TILE_SIZE * 4;
+	
+	/**
+	 * The drawn tiles of every track, in order from least to most recently used
+	 */
+	private static final LinkedHashMap<TileKey, BufferedImage> cache = new LinkedHashMap<TileKey, BufferedImage>(64, .75f, true);
+	
+	/**
+	 * The number used for the next TrackTiles, so tiles in the cache from an old image of a track are never used for the new one
+	 */
+	private static int nextId = 0;
+	
+	/**
+	 * Identifies one tile in the cache
+	 */
+	private static class TileKey{
+		int id;
+		int level;
+		int x;
+		int y;
+		
+		TileKey(int id, int level, int x, int y){
+			this.id = id;
+			this.level = level;
+			this.x = x;
+			this.y = y;
+		}
+		
+		@Override
+		public boolean equals(Object o){
+			if(!(o instanceof TileKey)) return false;
+			TileKey k = (TileKey)o;
+			return id == k.id && level == k.level && x == k.x && y == k.y;
+		}
+		
+		@Override
+		public int hashCode(){
+			return ((id * 31 + level) * 31 + x) * 31 + y;
+		}
+	}
+	
+	private Settings settings;
+	
+	/**
+	 * The track these tiles are drawn from
+	 */
+	private Track track;
+	
+	/**
+	 * The number identifying the tiles of this TrackTiles in the cache
+	 */
+	private int id;
+	
+	/**
+	 * The width and height of the track image at level 0
+	 */
+	private int width;
+	private int height;
+	
+	/**
+	 * The smallest level, the first level where the whole image fits in one tile
+	 */
+	private int maxLevel;
+	
+	/**
+	 * Make the tiles for an image of the given size of the given track. No tiles are drawn until they are needed
+	 * @param settings
+	 * @param track
+	 * @param width
+	 * @param height
+	 */
+	public TrackTiles(Settings settings, Track track, int width, int height){
+		this.settings = settings;
+		this.track = track;
+		this.width = width;
+		this.height = height;
+		synchronized(cache){
+			id = nextId++;
+		}
+		maxLevel = 0;
+		while(((long)TILE_SIZE << maxLevel) < Math.max(width, height)) maxLevel++;
+	}
+	
+	public int getWidth(){
+		return width;
+	}
+	
+	public int getHeight(){
+		return height;
+	}
+	
+	/**
+	 * Draw the tiles of the image that are on the given graphics object, with the upper left corner of the image at x, y, scaled by scale.
+	 * Tiles outside of the clip of the graphics object, or the screen if there is no clip, are not drawn
+	 * @param g
+	 * @param x
+	 * @param y
+	 * @param scale
+	 */
+	public void render(Graphics2D g, double x, double y, double scale){
+		if(scale <= 0) return;
+		int level = getLevel(scale);
+		double tileWidth = (double)(TILE_SIZE << level);
+		
+		//find the area of the image that is on screen
+		Rectangle view = g.getClipBounds();
+		if(view == null) view = new Rectangle(0, 0, Settings.DEFAULT_SCREEN_WIDTH, Settings.DEFAULT_SCREEN_HEIGHT);
+		int firstX = Math.max(0, (int)Math.floor((view.x - x) / scale / tileWidth));
+		int firstY = Math.max(0, (int)Math.floor((view.y - y) / scale / tileWidth));
+		int lastX = Math.min((int)Math.ceil(width / tileWidth) - 1, (int)Math.floor((view.x + view.width - x) / scale / tileWidth));
+		int lastY = Math.min((int)Math.ceil(height / tileWidth) - 1, (int)Math.floor((view.y + view.height - y) / scale / tileWidth));
+		
+		for(int i = firstX; i <= lastX; i++){
+			//round both edges of each tile, so neighbouring tiles never leave a gap between them
+			int left = (int)Math.round(x + i * tileWidth * scale);
+			int right = (int)Math.round(x + (i + 1) * tileWidth * scale);
+			for(int j = firstY; j <= lastY; j++){
+				int top = (int)Math.round(y + j * tileWidth * scale);
+				int bottom = (int)Math.round(y + (j + 1) * tileWidth * scale);
+				g.drawImage(getTile(level, i, j), left, top, right - left, bottom - top, null);
+			}
+		}
+	}
+	
+	/**
+	 * Get the level to draw from when the image is scaled by the given scale, the smallest level that is not smaller than the scaled image
+	 * @param scale
+	 * @return
+	 */
+	public int getLevel(double scale){
+		int level = 0;
+		while(level < maxLevel && 1.0 / (1 << (level + 1)) >= scale) level++;
+		return level;
+	}
+	
+	/**
+	 * Get the tile at the given level and position, drawing it if it is not in the cache
+	 * @param level
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	private BufferedImage getTile(int level, int x, int y){
+		TileKey key = new TileKey(id, level, x, y);
+		synchronized(cache){
+			BufferedImage tile = cache.get(key);
+			if(tile != null) return tile;
+		}
+		
+		BufferedImage tile = drawTile(level, x, y);
+		synchronized(cache){
+			cache.put(key, tile);
+			//always keep at least the new tile, even if the setting is too small for one tile
+			long maxTiles = Math.max(1, settings.getTrackTileCacheSize() * 1024L * 1024L / TILE_BYTES);
+			Iterator<BufferedImage> it = cache.values().iterator();
+			while(cache.size() > maxTiles && it.hasNext()){
+				it.next();
+				it.remove();
+			}
+		}
+		return tile;
+	}
+	
+	/**
+	 * Draw a new tile
+	 * @param level
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	private BufferedImage drawTile(int level, int x, int y){
+		BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_4BYTE_ABGR);
+		Graphics2D g = (Graphics2D)tile.getGraphics();
+		
+		//move the graphics to the position of the tile in the full size image, then only draw the part of the image inside the tile
+		int size = TILE_SIZE << level;
+		g.scale(1.0 / (1 << level), 1.0 / (1 << level));
+		g.translate(-x * size, -y * size);
+		Rectangle area = new Rectangle(x * size, y * size, size, size).intersection(new Rectangle(0, 0, width, height));
+		g.clip(area);
+		track.drawImageArea(g, area);
+		
+		g.dispose();
+		return tile;
+	}
+	
+	/**
+	 * Forget every tile of this TrackTiles, call when the image of the track changes and these tiles will never be used again
+	 */
+	public void clear(){
+		synchronized(cache){
+			Iterator<Map.Entry<TileKey, BufferedImage>> it = cache.entrySet().iterator();
+			while(it.hasNext()){
+				if(it.next().getKey().id == id) it.remove();
+			}
+		}
+	}
+	
+}
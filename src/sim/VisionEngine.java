@@ -0,0 +1,99 @@
+package sim;
+
+import data.Settings;
+
+/**
+ * Finds the distances runners can see along their vision lines to the walls of a track.
+ * The geometry of each wall is calculated once, when the walls of the track change, rather than once for every vision line on every tick,
+ * and each vision line only checks the walls in the cells of the WallGrid it passes through.
+ * Nothing is allocated and nothing is changed while calculating, so the same engine can be used by any number of threads at once
+ */
+public class VisionEngine{
+	
+	/**
+	 * The number of vision lines each runner has, the first inputs of a runner's brain
+	 */
+	public static final int NUM_RAYS = 8;
+	
+	/**
+	 * The grid holding the walls the vision lines can see
+	 */
+	private WallGrid grid;
+	
+	/**
+	 * Create an engine for the walls in the given grid
+	 * @param grid
+	 */
+	public VisionEngine(WallGrid grid){
+		this.grid = grid;
+	}
+	
+	/**
+	 * Set the grid holding the walls, must be called whenever a wall is added, removed, or moved
+	 * @param grid
+	 */
+	public void setGrid(WallGrid grid){
+		this.grid = grid;
+	}
+	
+	public WallGrid getGrid(){
+		return grid;
+	}
+	
+	/**
+	 * Calculate the vision inputs of a runner, the distance to the closest wall along each vision line,
+	 * divided by the max view distance, so each input is at most 1
+	 * @param settings
+	 * @param x the x of the center of the runner
+	 * @param y the y of the center of the runner
+	 * @param angle the angle the runner is facing, in degrees
+	 * @param inputs the array to put the inputs in, the first NUM_RAYS values are set
+	 */
+	public void calculateVision(Settings settings, double x, double y, double angle, double[] inputs){
+		double maxView = settings.getRunnerMaxViewDistance();
+		double radius = settings.getRunnerRadius();
+		double[] visionAngles = settings.getRunnerVisionAngles();
+		WallGrid g = grid;
+		
+		for(int a = 0; a < NUM_RAYS; a++){
+			//the direction of the vision line, one unit long, so the distance along the line is the distance to the runner
+			double rad = Math.toRadians(angle + visionAngles[a]);
+			double rx = Math.cos(rad);
+			double ry = Math.sin(rad);
+			
+			//walls past the view distance are never seen, so the grid does not need to look for them
+			double distance = g.castRay(x, y, rx, ry, maxView + radius) - radius;
+			inputs[a] = Math.min(distance, maxView) / maxView;
+		}
+	}
+	
+	/**
+	 * Find the distance along a ray to a wall
+	 * @param walls the geometry of the walls, 4 values for each wall: the x and y of the first point,
+	 * 	then the x and y distance from the first point to the second point
+	 * @param i the index in walls of the first value of the wall
+	 * @param x the x the ray starts at
+	 * @param y the y the ray starts at
+	 * @param rx the x of the direction of the ray, the direction must be one unit long
+	 * @param ry the y of the direction of the ray, the direction must be one unit long
+	 * @return the distance to the wall, or positive infinity if the ray does not hit the wall
+	 */
+	public static double rayDistance(double[] walls, int i, double x, double y, double rx, double ry){
+		//the ray is (x, y) + t * (rx, ry), the wall is (x1, y1) + u * (dx, dy), they meet where t > 0 and 0 <= u <= 1
+		double dx = walls[i + 2];
+		double dy = walls[i + 3];
+		double denom = rx * dy - ry * dx;
+		//the ray and wall are parallel
+		if(denom == 0) return Double.POSITIVE_INFINITY;
+		
+		double wx = walls[i] - x;
+		double wy = walls[i + 1] - y;
+		double t = (wx * dy - wy * dx) / denom;
+		if(t <= 0) return Double.POSITIVE_INFINITY;
+		double u = (wx * ry - wy * rx) / denom;
+		if(u < 0 || u > 1) return Double.POSITIVE_INFINITY;
+		
+		return t;
+	}
+	
+}
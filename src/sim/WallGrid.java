@@ -0,0 +1,315 @@
+package sim;
+
+import java.awt.geom.Line2D;
+
+/**
+ * A uniform grid over the walls of a track, so that vision lines and collisions only need to check the walls near a runner.
+ * Each cell holds the indexes of every wall that passes through it, in increasing order.
+ * A grid never changes once it is made, a new grid is made whenever the walls change, so any number of threads can use one at once
+ */
+public class WallGrid{
+	
+	/**
+	 * The number of cells the grid aims to have for each wall
+	 */
+	public static final double CELLS_PER_WALL = 1;
+	/**
+	 * Grids with fewer walls than this are one cell, because checking a few walls is faster than walking through cells
+	 */
+	public static final int MIN_WALLS_TO_SPLIT = 32;
+	/**
+	 * The most cells a grid can have, no matter how many walls there are
+	 */
+	public static final int MAX_CELLS = 1 << 20;
+	/**
+	 * How far past the edge of each cell a wall can be while still being put in the cell, as a fraction of the cell size.
+	 * This makes sure rounding never causes a wall on the border of two cells to be missed
+	 */
+	private static final double CELL_MARGIN = 1e-6;
+	
+	/**
+	 * The walls this grid was made from
+	 */
+	private Line2D.Double[] lines;
+	
+	/**
+	 * The geometry of each wall, 4 values for each wall: the x and y of the first point,
+	 * then the x and y distance from the first point to the second point
+	 */
+	private double[] walls;
+	/**
+	 * The bounds of each wall, 4 values for each wall: the smallest x and y, then the largest x and y of the points of the wall
+	 */
+	private double[] bounds;
+	
+	/**
+	 * The position of the corner of the grid with the smallest x and y
+	 */
+	private double minX;
+	private double minY;
+	/**
+	 * The width and height of each cell
+	 */
+	private double cellSize;
+	/**
+	 * The number of cells on the x and y axis
+	 */
+	private int cols;
+	private int rows;
+	
+	/**
+	 * The walls in the cell at column x and row y are cellWalls[cellStart[y * cols + x]] up to, but not including, cellWalls[cellStart[y * cols + x + 1]]
+	 */
+	private int[] cellStart;
+	private int[] cellWalls;
+	
+	/**
+	 * Create a grid for the given walls
+	 * @param lines
+	 */
+	public WallGrid(Line2D.Double[] lines){
+		this.lines = lines;
+		
+		walls = new double[lines.length * 4];
+		bounds = new double[lines.length * 4];
+		for(int i = 0; i < lines.length; i++){
+			walls[i * 4] = lines[i].x1;
+			walls[i * 4 + 1] = lines[i].y1;
+			walls[i * 4 + 2] = lines[i].x2 - lines[i].x1;
+			walls[i * 4 + 3] = lines[i].y2 - lines[i].y1;
+			
+			bounds[i * 4] = Math.min(lines[i].x1, lines[i].x2);
+			bounds[i * 4 + 1] = Math.min(lines[i].y1, lines[i].y2);
+			bounds[i * 4 + 2] = Math.max(lines[i].x1, lines[i].x2);
+			bounds[i * 4 + 3] = Math.max(lines[i].y1, lines[i].y2);
+		}
+		
+		if(lines.length == 0){
+			cellSize = 1;
+			cols = 0;
+			rows = 0;
+			cellStart = new int[1];
+			cellWalls = new int[0];
+			return;
+		}
+		
+		//find the area the walls cover
+		double maxX = -Double.MAX_VALUE;
+		double maxY = -Double.MAX_VALUE;
+		minX = Double.MAX_VALUE;
+		minY = Double.MAX_VALUE;
+		for(Line2D.Double l : lines){
+			minX = Math.min(minX, Math.min(l.x1, l.x2));
+			minY = Math.min(minY, Math.min(l.y1, l.y2));
+			maxX = Math.max(maxX, Math.max(l.x1, l.x2));
+			maxY = Math.max(maxY, Math.max(l.y1, l.y2));
+		}
+		double width = Math.max(maxX - minX, 1);
+		double height = Math.max(maxY - minY, 1);
+		
+		//pick square cells so that there are about CELLS_PER_WALL cells for each wall
+		double targetCells = Math.min(MAX_CELLS, Math.max(1, lines.length * CELLS_PER_WALL));
+		if(lines.length < MIN_WALLS_TO_SPLIT) targetCells = 1;
+		cellSize = Math.sqrt(width * height / targetCells);
+		cellSize = Math.max(cellSize, Math.max(width, height) / Math.sqrt(MAX_CELLS));
+		cols = Math.max(1, (int)Math.ceil(width / cellSize));
+		rows = Math.max(1, (int)Math.ceil(height / cellSize));
+		
+		//count the walls in each cell, then fill in the cells, walls are added in order so each cell is sorted
+		cellStart = new int[cols * rows + 1];
+		for(int i = 0; i < lines.length; i++) addToCells(i, null);
+		for(int c = 0; c < cols * rows; c++) cellStart[c + 1] += cellStart[c];
+		cellWalls = new int[cellStart[cols * rows]];
+		int[] filled = new int[cols * rows];
+		for(int i = 0; i < lines.length; i++) addToCells(i, filled);
+	}
+	
+	/**
+	 * Find each cell the given wall passes through. If filled is null, the count of walls in each cell is added to cellStart,
+	 * otherwise the wall is put in each cell, and filled holds the number of walls already put in each cell
+	 * @param index
+	 * @param filled
+	 */
+	private void addToCells(int index, int[] filled){
+		Line2D.Double l = lines[index];
+		double margin = cellSize * CELL_MARGIN;
+		int startX = getColumn(Math.min(l.x1, l.x2) - margin);
+		int endX = getColumn(Math.max(l.x1, l.x2) + margin);
+		int startY = getRow(Math.min(l.y1, l.y2) - margin);
+		int endY = getRow(Math.max(l.y1, l.y2) + margin);
+		
+		for(int cy = startY; cy <= endY; cy++){
+			for(int cx = startX; cx <= endX; cx++){
+				if(!l.intersects(minX + cx * cellSize - margin, minY + cy * cellSize - margin, cellSize + margin * 2, cellSize + margin * 2)) continue;
+				int cell = cy * cols + cx;
+				if(filled == null) cellStart[cell + 1]++;
+				else{
+					cellWalls[cellStart[cell] + filled[cell]] = index;
+					filled[cell]++;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Get the walls this grid was made from
+	 * @return
+	 */
+	public Line2D.Double[] getLines(){
+		return lines;
+	}
+	
+	/**
+	 * Get the number of walls in this grid
+	 * @return
+	 */
+	public int getNumLines(){
+		return lines.length;
+	}
+	
+	/**
+	 * Determine if the bounds of the wall at the given index overlap the given box, if they do not, no circle inside the box can touch the wall
+	 * @param index
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 * @return
+	 */
+	public boolean boundsOverlap(int index, double minX, double minY, double maxX, double maxY){
+		int i = index * 4;
+		return bounds[i] <= maxX && bounds[i + 2] >= minX && bounds[i + 1] <= maxY && bounds[i + 3] >= minY;
+	}
+	
+	/**
+	 * Get the column that the given x is in, limited to the columns of the grid
+	 * @param x
+	 * @return
+	 */
+	public int getColumn(double x){
+		return Math.max(0, Math.min(cols - 1, (int)Math.floor((x - minX) / cellSize)));
+	}
+	
+	/**
+	 * Get the row that the given y is in, limited to the rows of the grid
+	 * @param y
+	 * @return
+	 */
+	public int getRow(double y){
+		return Math.max(0, Math.min(rows - 1, (int)Math.floor((y - minY) / cellSize)));
+	}
+	
+	/**
+	 * Determine if any cell of the grid overlaps the square with the given center and distance from the center to each side
+	 * @param x
+	 * @param y
+	 * @param size
+	 * @return
+	 */
+	public boolean overlaps(double x, double y, double size){
+		return x + size >= minX && x - size <= minX + cols * cellSize &&
+			   y + size >= minY && y - size <= minY + rows * cellSize;
+	}
+	
+	/**
+	 * Get the index in getCellWalls of the first wall in the given cell
+	 * @param column
+	 * @param row
+	 * @return
+	 */
+	public int getCellStart(int column, int row){
+		return cellStart[row * cols + column];
+	}
+	
+	/**
+	 * Get the index in getCellWalls one after the last wall in the given cell
+	 * @param column
+	 * @param row
+	 * @return
+	 */
+	public int getCellEnd(int column, int row){
+		return cellStart[row * cols + column + 1];
+	}
+	
+	/**
+	 * Get the array holding the wall indexes of every cell, see getCellStart and getCellEnd
+	 * @return
+	 */
+	public int[] getCellWalls(){
+		return cellWalls;
+	}
+	
+	/**
+	 * Find the distance from the given point to the closest wall in the given direction, only checking the walls in the cells the ray passes through
+	 * @param x the x the ray starts at
+	 * @param y the y the ray starts at
+	 * @param rx the x of the direction of the ray, the direction must be one unit long
+	 * @param ry the y of the direction of the ray, the direction must be one unit long
+	 * @param maxDistance walls further than this distance do not need to be found, so the cells past it are not checked
+	 * @return the distance to the wall, or positive infinity if the ray hits no wall. Walls further than maxDistance may or may not be found
+	 */
+	public double castRay(double x, double y, double rx, double ry, double maxDistance){
+		if(cols == 0) return Double.POSITIVE_INFINITY;
+		
+		//find where the ray enters and leaves the grid
+		double enter = 0;
+		double exit = maxDistance;
+		double maxX = minX + cols * cellSize;
+		double maxY = minY + rows * cellSize;
+		if(rx == 0){
+			if(x < minX || x > maxX) return Double.POSITIVE_INFINITY;
+		}
+		else{
+			double t1 = (minX - x) / rx;
+			double t2 = (maxX - x) / rx;
+			enter = Math.max(enter, Math.min(t1, t2));
+			exit = Math.min(exit, Math.max(t1, t2));
+		}
+		if(ry == 0){
+			if(y < minY || y > maxY) return Double.POSITIVE_INFINITY;
+		}
+		else{
+			double t1 = (minY - y) / ry;
+			double t2 = (maxY - y) / ry;
+			enter = Math.max(enter, Math.min(t1, t2));
+			exit = Math.min(exit, Math.max(t1, t2));
+		}
+		if(enter > exit) return Double.POSITIVE_INFINITY;
+		
+		//walk through the cells along the ray, one cell border at a time
+		int cx = getColumn(x + rx * enter);
+		int cy = getRow(y + ry * enter);
+		int stepX = rx > 0 ? 1 : -1;
+		int stepY = ry > 0 ? 1 : -1;
+		double deltaX = rx == 0 ? Double.POSITIVE_INFINITY : cellSize / Math.abs(rx);
+		double deltaY = ry == 0 ? Double.POSITIVE_INFINITY : cellSize / Math.abs(ry);
+		double nextX = rx == 0 ? Double.POSITIVE_INFINITY : (minX + (cx + (rx > 0 ? 1 : 0)) * cellSize - x) / rx;
+		double nextY = ry == 0 ? Double.POSITIVE_INFINITY : (minY + (cy + (ry > 0 ? 1 : 0)) * cellSize - y) / ry;
+		
+		double closest = Double.POSITIVE_INFINITY;
+		while(true){
+			int start = cellStart[cy * cols + cx];
+			int end = cellStart[cy * cols + cx + 1];
+			for(int c = start; c < end; c++){
+				double t = VisionEngine.rayDistance(walls, cellWalls[c] * 4, x, y, rx, ry);
+				if(t < closest) closest = t;
+			}
+			
+			//a wall hit inside this cell is closer than any wall in the cells after it
+			double cellExit = Math.min(nextX, nextY);
+			if(closest <= cellExit || cellExit > exit) return closest;
+			
+			if(nextX < nextY){
+				cx += stepX;
+				if(cx < 0 || cx >= cols) return closest;
+				nextX += deltaX;
+			}
+			else{
+				cy += stepY;
+				if(cy < 0 || cy >= rows) return closest;
+				nextY += deltaY;
+			}
+		}
+	}
+	
+}